@@ -0,0 +1,95 @@
+package com.seemenu.benchmarks;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The backend launched as a child process on a free port, for the load tests
+ */
+final class BackendProcess implements AutoCloseable {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(90);
+
+    private final Process process;
+    private final String rootUrl;
+    private final String apiUrl;
+
+    private BackendProcess(Process process, int port) {
+        this.process = process;
+        this.rootUrl = "http://127.0.0.1:" + port;
+        this.apiUrl = rootUrl + "/api/menu";
+    }
+
+    /**
+     * Starts the command with the given environment and waits until /api/menu/health answers
+     */
+    static BackendProcess start(List<String> command, Map<String, String> environment, HttpClient client)
+            throws Exception {
+        int port = freePort();
+        ProcessBuilder builder = new ProcessBuilder(command).inheritIO();
+        builder.environment().put("SERVER_PORT", String.valueOf(port));
+        builder.environment().putAll(environment);
+
+        BackendProcess backend = new BackendProcess(builder.start(), port);
+        try {
+            backend.awaitHealthy(client);
+        } catch (Exception e) {
+            backend.close();
+            throw e;
+        }
+        return backend;
+    }
+
+    /**
+     * URL of the server itself, e.g. rootUrl() + "/actuator/prometheus"
+     */
+    String rootUrl() {
+        return rootUrl;
+    }
+
+    /**
+     * Base URL of the menu API, e.g. apiUrl() + "/upload"
+     */
+    String apiUrl() {
+        return apiUrl;
+    }
+
+    private void awaitHealthy(HttpClient client) throws Exception {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        HttpRequest health = HttpRequest.newBuilder(URI.create(apiUrl + "/health")).build();
+        while (System.nanoTime() < deadline) {
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (ConnectException e) {
+                // not listening yet
+            }
+            Thread.sleep(250);
+        }
+        throw new IllegalStateException("Backend did not become healthy within " + STARTUP_TIMEOUT);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(5, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.seemenu.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result (-rf json) with a recorded baseline and fails on regressions
+ * A benchmark regresses when its score is more than -Dtime.tolerance (default 0.25) slower than the baseline,
+ * or, with -prof gc, allocates more than -Dalloc.tolerance (default 0.10) more bytes per operation. Allocation
+ * per operation hardly depends on the machine, so it is the reliable signal when the baseline was recorded
+ * elsewhere; time is only comparable on the same hardware. Benchmarks missing from either file are listed.
+ * <p>
+ * Baselines are kept as a summary (score, error, unit and bytes per operation of each benchmark) rather than the
+ * full JMH output with its raw iterations and percentiles; "summarize" writes one from a JMH result. Either form is
+ * accepted on both sides of a comparison.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar com.seemenu.benchmarks.BaselineCheck baselines/hot-paths.json result.json
+ * <br>
+ * or: java -cp target/benchmarks.jar com.seemenu.benchmarks.BaselineCheck summarize result.json baseline.json
+ */
+public final class BaselineCheck {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && "summarize".equals(args[0])) {
+            summarize(args[1], args[2]);
+            return;
+        }
+        if (args.length != 2) {
+            System.err.println("Usage: BaselineCheck <baseline.json> <result.json>");
+            System.err.println("       BaselineCheck summarize <result.json> <baseline.json>");
+            System.exit(2);
+        }
+        double timeTolerance = Double.parseDouble(System.getProperty("time.tolerance", "0.25"));
+        double allocTolerance = Double.parseDouble(System.getProperty("alloc.tolerance", "0.10"));
+
+        Map<String, Score> baseline = load(args[0]);
+        Map<String, Score> result = load(args[1]);
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %8s %14s %14s %8s%n",
+                "Benchmark", "Baseline", "Now", "Time", "Base B/op", "Now B/op", "Alloc");
+        for (Map.Entry<String, Score> entry : result.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s (not in baseline)%n", entry.getKey());
+                continue;
+            }
+            Score now = entry.getValue();
+            double timeBefore = before.score();
+            double timeNow = now.score();
+            double allocBefore = before.allocBytesPerOp();
+            double allocNow = now.allocBytesPerOp();
+
+            boolean slower = timeNow > timeBefore * (1 + timeTolerance);
+            // Small absolute slack: per-operation allocation of a few bytes is JIT noise, not a regression
+            boolean allocates = !Double.isNaN(allocBefore) && !Double.isNaN(allocNow)
+                    && allocNow > allocBefore * (1 + allocTolerance) + 64;
+            if (slower || allocates) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %8s %14.0f %14.0f %8s%n", entry.getKey(),
+                    timeBefore, timeNow, change(timeBefore, timeNow, slower),
+                    allocBefore, allocNow, change(allocBefore, allocNow, allocates));
+        }
+        baseline.keySet().stream()
+                .filter(key -> !result.containsKey(key))
+                .forEach(key -> System.out.printf("%-70s (not run)%n", key));
+
+        System.out.printf("%n%d regression(s) -> %s%n", regressions, regressions == 0 ? "PASS" : "FAIL");
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes the summary of a JMH result, as kept under baselines/
+     */
+    private static void summarize(String resultPath, String summaryPath) throws IOException {
+        JsonNode runs = objectMapper.readTree(new File(resultPath));
+        ObjectNode summary = objectMapper.createObjectNode();
+        JsonNode first = runs.path(0);
+        summary.put("recordedWith", "JMH " + first.path("jmhVersion").asText() + ", JDK "
+                + first.path("jdkVersion").asText() + ", " + first.path("threads").asInt() + " thread(s)");
+        ObjectNode benchmarks = summary.putObject("benchmarks");
+        load(resultPath).forEach((key, score) -> {
+            ObjectNode entry = benchmarks.putObject(key);
+            entry.put("score", round(score.score()));
+            entry.put("error", round(score.error()));
+            entry.put("unit", score.unit());
+            if (!Double.isNaN(score.allocBytesPerOp())) {
+                entry.put("allocBytesPerOp", Math.round(score.allocBytesPerOp()));
+            }
+        });
+        objectMapper.writeValue(new File(summaryPath), summary);
+        System.out.printf("Summarized %d benchmark(s) into %s%n", benchmarks.size(), summaryPath);
+    }
+
+    /**
+     * Results keyed by benchmark method and parameters, e.g. "ResponseParsingBenchmark.parse(dishes=50)", from
+     * a JMH result or a summary
+     */
+    private static Map<String, Score> load(String path) throws IOException {
+        JsonNode root = objectMapper.readTree(new File(path));
+        Map<String, Score> results = new LinkedHashMap<>();
+        if (root.isObject()) {
+            root.path("benchmarks").fields().forEachRemaining(entry -> {
+                JsonNode score = entry.getValue();
+                results.put(entry.getKey(), new Score(score.path("score").asDouble(), score.path("error").asDouble(),
+                        score.path("unit").asText(), score.path("allocBytesPerOp").asDouble(Double.NaN)));
+            });
+            return results;
+        }
+        for (JsonNode run : root) {
+            String benchmark = run.path("benchmark").asText();
+            Map<String, String> params = new TreeMap<>();
+            run.path("params").fields()
+                    .forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            String key = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1)
+                    + (params.isEmpty() ? "" : params.toString().replace('{', '(').replace('}', ')'));
+            JsonNode primary = run.path("primaryMetric");
+            results.put(key, new Score(primary.path("score").asDouble(), primary.path("scoreError").asDouble(),
+                    primary.path("scoreUnit").asText(),
+                    run.path("secondaryMetrics").path(ALLOC_NORM).path("score").asDouble(Double.NaN)));
+        }
+        return results;
+    }
+
+    /**
+     * Four significant digits are more than the run-to-run noise of any benchmark here
+     */
+    private static double round(double value) {
+        if (value == 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+            return value;
+        }
+        double scale = Math.pow(10, 3 - (int) Math.floor(Math.log10(Math.abs(value))));
+        return Math.round(value * scale) / scale;
+    }
+
+    private static String change(double before, double now, boolean regressed) {
+        if (Double.isNaN(before) || Double.isNaN(now) || before == 0) {
+            return "-";
+        }
+        return String.format("%+.0f%%%s", (now / before - 1) * 100, regressed ? "!" : "");
+    }
+
+    private record Score(double score, double error, String unit, double allocBytesPerOp) {
+    }
+
+    private BaselineCheck() {
+    }
+}
@@ -0,0 +1,147 @@
+package com.seemenu.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput and token usage of micro-batched model calls against one call per menu
+ * Starts a stub model whose latency grows with the number of menus in a call, launches the backend against it
+ * once with menu.batching off and once with it on, with the model concurrency limit pinned (as a per-key
+ * concurrency budget would), and sends the same distinct small uploads at a fixed concurrency. Reports
+ * throughput, client-side p50/p95, upstream calls and the prompt and completion tokens the stub billed; passes
+ * when batching raises throughput, lowers prompt tokens and every upload comes back with its own dishes.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar com.seemenu.benchmarks.BatchingLoadTest java -cp ... com.seemenu.SeeMenuApplication
+ * Tune with -Drequests=96 -Dconcurrency=16 -Dupstream.concurrency=4 -Dupstream.latency-ms=400
+ * -Dupstream.per-menu-ms=300 -Dbatch.max-size=4 -Dbatch.window-ms=50
+ */
+public final class BatchingLoadTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int DISHES = 3;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: BatchingLoadTest <backend command...>");
+            System.exit(2);
+        }
+        int requests = Integer.getInteger("requests", 96);
+        int concurrency = Integer.getInteger("concurrency", 16);
+
+        Result single = run(args, false, requests, concurrency);
+        Result batched = run(args, true, requests, concurrency);
+
+        System.out.printf("%n%-9s %10s %8s %8s %9s %14s %14s %7s%n",
+                "", "menus/s", "p50", "p95", "upstream", "prompt tok", "output tok", "failed");
+        single.print("single");
+        batched.print("batched");
+        System.out.printf("%nPrompt tokens per menu: %.0f single, %.0f batched (%.1f menus per call)%n",
+                (double) single.promptTokens / requests, (double) batched.promptTokens / requests,
+                (double) requests / batched.upstreamCalls);
+        boolean passed = single.failed == 0 && batched.failed == 0
+                && batched.throughput() > single.throughput() && batched.promptTokens < single.promptTokens;
+        System.out.println(passed ? "PASS" : "FAIL");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static Result run(String[] command, boolean batching, int requests, int concurrency) throws Exception {
+        String upstreamConcurrency = String.valueOf(Integer.getInteger("upstream.concurrency", 4));
+        HttpClient client = HttpClient.newHttpClient();
+        try (StubModelServer model = StubModelServer.start(DISHES,
+                Duration.ofMillis(Integer.getInteger("upstream.latency-ms", 400)),
+                Duration.ofMillis(Integer.getInteger("upstream.per-menu-ms", 300)));
+             BackendProcess backend = BackendProcess.start(List.of(command), Map.of(
+                     "OPENAI_API_KEY", "load-test",
+                     "OPENAI_BASEURL", model.baseUrl(),
+                     "OPENAI_LIMITER_INITIAL_LIMIT", upstreamConcurrency,
+                     "OPENAI_LIMITER_MAX_LIMIT", upstreamConcurrency,
+                     "OPENAI_LIMITER_MAX_QUEUE", String.valueOf(requests),
+                     "OPENAI_LIMITER_MAX_WAIT", "60s",
+                     "MENU_BATCHING_ENABLED", String.valueOf(batching),
+                     "MENU_BATCHING_MAX_SIZE", String.valueOf(Integer.getInteger("batch.max-size", 4)),
+                     "MENU_BATCHING_WINDOW", Integer.getInteger("batch.window-ms", 50) + "ms"), client)) {
+
+            List<byte[]> uploads = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                uploads.add(Menus.distinct(i));
+            }
+
+            Semaphore slots = new Semaphore(concurrency);
+            AtomicInteger failed = new AtomicInteger();
+            long[] latencies = new long[requests];
+            List<CompletableFuture<Void>> pending = new ArrayList<>();
+            long begin = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                HttpRequest upload = HttpRequest.newBuilder(URI.create(backend.apiUrl() + "/upload"))
+                        .header("Content-Type", "image/jpeg")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(uploads.get(i)))
+                        .build();
+                slots.acquire();
+                long start = System.nanoTime();
+                pending.add(client.sendAsync(upload, HttpResponse.BodyHandlers.ofString())
+                        .thenAccept(response -> {
+                            latencies[index] = (System.nanoTime() - start) / 1_000_000;
+                            if (response.statusCode() != 200 || dishes(response.body()) != DISHES) {
+                                failed.incrementAndGet();
+                            }
+                        })
+                        .whenComplete((ignored, e) -> slots.release()));
+            }
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).get(10, TimeUnit.MINUTES);
+            long elapsedMillis = (System.nanoTime() - begin) / 1_000_000;
+            return new Result(latencies, elapsedMillis, model.requests(), model.promptTokens(),
+                    model.completionTokens(), failed.get());
+        }
+    }
+
+    private static int dishes(String body) {
+        try {
+            JsonNode response = objectMapper.readTree(body);
+            return response.path("dishes").size();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private record Result(long[] latencies, long elapsedMillis, int upstreamCalls, long promptTokens,
+                          long completionTokens, int failed) {
+
+        private Result {
+            latencies = latencies.clone();
+            Arrays.sort(latencies);
+        }
+
+        private double throughput() {
+            return latencies.length * 1000.0 / elapsedMillis;
+        }
+
+        private long percentile(double p) {
+            return latencies[Math.min(latencies.length - 1, (int) Math.ceil(p * latencies.length) - 1)];
+        }
+
+        private void print(String label) {
+            System.out.printf("%-9s %10.2f %5d ms %5d ms %9d %14d %14d %7d%n", label, throughput(),
+                    percentile(0.5), percentile(0.95), upstreamCalls, promptTokens, completionTokens, failed);
+        }
+    }
+
+    private BatchingLoadTest() {
+    }
+}
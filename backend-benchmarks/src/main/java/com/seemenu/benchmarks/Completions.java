@@ -0,0 +1,132 @@
+package com.seemenu.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Canned chat-completion responses shaped like the model's real output
+ */
+final class Completions {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int PROMPT_TOKENS = 1105;
+    // What a high-detail menu photo costs as input: four 512px tiles at 768px short side, plus the base
+    static final int IMAGE_TOKENS = 765;
+
+    /**
+     * The assistant message content: {"dishes": [...]} with the given number of dishes
+     */
+    static String dishesJson(int dishes) {
+        ObjectNode root = objectMapper.createObjectNode();
+        addDishes(root.putArray("dishes"), dishes);
+        return root.toString();
+    }
+
+    /**
+     * The content of a multi-image call: {"menus": [{"image": n, "dishes": [...]}, ...]}
+     */
+    static String menusJson(int images, int dishes) {
+        ObjectNode root = objectMapper.createObjectNode();
+        ArrayNode menus = root.putArray("menus");
+        for (int image = 1; image <= images; image++) {
+            ObjectNode menu = menus.addObject();
+            menu.put("image", image);
+            addDishes(menu.putArray("dishes"), dishes);
+        }
+        return root.toString();
+    }
+
+    private static void addDishes(ArrayNode array, int dishes) {
+        for (int i = 0; i < dishes; i++) {
+            ObjectNode dish = array.addObject();
+            dish.put("name", "Dish " + i);
+            dish.put("description", "Slow-braised house special number " + i + " with seasonal vegetables");
+            dish.put("price", String.format("$%d.%02d", 8 + i % 20, (i * 37) % 100));
+            dish.putArray("ingredients").add("chicken").add("garlic").add("soy sauce");
+            dish.putArray("allergens").add(i % 2 == 0 ? "soy" : "gluten");
+            dish.putArray("dietaryInfo").add(i % 3 == 0 ? "vegetarian" : "spicy");
+        }
+    }
+
+    /**
+     * A complete non-streaming chat-completions response wrapping the given content
+     */
+    static String completion(String content) {
+        return completion(content, PROMPT_TOKENS);
+    }
+
+    /**
+     * The same with the given prompt token count in its usage
+     */
+    static String completion(String content, long promptTokens) {
+        return completion(content, promptTokens, "stop");
+    }
+
+    /**
+     * The same ending for the given reason: "length" when the content was cut off at max_tokens
+     */
+    static String completion(String content, long promptTokens, String finishReason) {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("id", "chatcmpl-stub");
+        root.put("object", "chat.completion");
+        ObjectNode choice = root.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("message").put("role", "assistant").put("content", content);
+        choice.put("finish_reason", finishReason);
+        // About what a high-detail 1024px image plus the prompt costs; roughly 4 characters per output token
+        int completionTokens = content.length() / 4;
+        root.putObject("usage")
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+        return root.toString();
+    }
+
+    /**
+     * One server-sent chunk of a streaming response carrying part of the content
+     */
+    static String chunk(String content) {
+        ObjectNode root = chunkRoot();
+        ObjectNode choice = root.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("delta").put("content", content);
+        choice.putNull("finish_reason");
+        return root.toString();
+    }
+
+    /**
+     * The chunk ending a streamed choice, with an empty delta and the given finish reason
+     */
+    static String finalChunk(String finishReason) {
+        ObjectNode root = chunkRoot();
+        ObjectNode choice = root.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("delta");
+        choice.put("finish_reason", finishReason);
+        return root.toString();
+    }
+
+    /**
+     * The last chunk sent when stream_options.include_usage is set: no choices, only usage
+     */
+    static String usageChunk(long promptTokens, long completionTokens) {
+        ObjectNode root = chunkRoot();
+        root.putArray("choices");
+        root.putObject("usage")
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+        return root.toString();
+    }
+
+    private static ObjectNode chunkRoot() {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("id", "chatcmpl-stub");
+        root.put("object", "chat.completion.chunk");
+        return root;
+    }
+
+    private Completions() {
+    }
+}
@@ -0,0 +1,125 @@
+package com.seemenu.benchmarks;
+
+import com.seemenu.knowledge.DishKnowledge;
+import com.seemenu.knowledge.DishKnowledgeTable;
+import com.seemenu.knowledge.DishNames;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dish-name lookups in the memory-mapped dish knowledge table, and opening it on a cold start
+ * "knownDish" queries an indexed name with its words in another order and decodes the match, "unknownDish" a name
+ * made of the same words in an unseen combination, "open" maps the table file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DishKnowledgeBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    private static final String[] STYLES = {"Spicy", "Crispy", "Grilled", "Braised", "Smoked", "Roasted", "Sweet",
+            "Garlic", "Lemon", "Sichuan", "Thai", "Classic", "House", "Teriyaki", "Cajun", "Tandoori", "Honey",
+            "Pesto", "Truffle", "Curry"};
+    private static final String[] PROTEINS = {"Chicken", "Beef", "Pork", "Shrimp", "Tofu", "Salmon", "Lamb",
+            "Duck", "Tuna", "Cod", "Mushroom", "Eggplant", "Chickpea", "Scallop", "Squid", "Turkey", "Halloumi",
+            "Paneer", "Crab", "Lentil", "Octopus", "Venison", "Mussel", "Tempeh", "Seitan"};
+    private static final String[] DISHES = {"Noodles", "Fried Rice", "Salad", "Tacos", "Burger", "Curry",
+            "Skewers", "Stir Fry", "Soup", "Risotto", "Pasta", "Sandwich", "Wrap", "Bowl", "Dumplings", "Pizza",
+            "Stew", "Pie", "Omelette", "Quesadilla", "Ramen", "Bao", "Flatbread", "Gratin", "Tagine", "Paella",
+            "Casserole", "Kebab", "Spring Rolls", "Burrito"};
+    private static final String[] SIDES = {"", "with Rice", "with Fries", "with Greens", "with Naan", "with Slaw",
+            "with Chips", "with Beans", "with Corn", "with Potatoes", "with Couscous", "with Quinoa", "with Salsa",
+            "with Aioli", "with Pickles", "with Kimchi", "with Polenta", "with Bread", "with Yogurt", "with Mash"};
+
+    @Param({"10000", "100000"})
+    private int dishes;
+
+    private Path file;
+    private DishKnowledgeTable table;
+    private String[] knownQueries;
+    private String[] unknownQueries;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void writeTable() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        int combinations = STYLES.length * PROTEINS.length * DISHES.length * SIDES.length;
+        // Every other combination is indexed; the rest stay unseen for the miss queries
+        List<DishKnowledge> entries = new ArrayList<>(dishes);
+        for (int i = 0; i < dishes; i++) {
+            entries.add(new DishKnowledge(name(2 * i % combinations), List.of("chicken", "garlic", "soy sauce"),
+                    List.of("soy"), List.of("spicy")));
+        }
+        file = Files.createTempFile("dish-knowledge", ".idx");
+        DishKnowledgeTable.write(file, entries);
+        table = DishKnowledgeTable.open(file);
+
+        knownQueries = new String[QUERIES];
+        unknownQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            List<String> words = new ArrayList<>(List.of(entries.get(random.nextInt(dishes)).name().split(" ")));
+            Collections.reverse(words);
+            knownQueries[i] = DishNames.key(String.join(" ", words));
+            unknownQueries[i] = DishNames.key(name(2 * random.nextInt(dishes) + 1));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTable() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public DishKnowledge knownDish() {
+        return table.find(knownQueries[next()]);
+    }
+
+    @Benchmark
+    public DishKnowledge unknownDish() {
+        return table.find(unknownQueries[next()]);
+    }
+
+    @Benchmark
+    public int open() throws IOException {
+        return DishKnowledgeTable.open(file).size();
+    }
+
+    private static String name(int combination) {
+        int side = combination % SIDES.length;
+        combination /= SIDES.length;
+        int dish = combination % DISHES.length;
+        combination /= DISHES.length;
+        int protein = combination % PROTEINS.length;
+        int style = combination / PROTEINS.length;
+        return (STYLES[style] + " " + PROTEINS[protein] + " " + DISHES[dish] + " " + SIDES[side]).trim();
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (QUERIES - 1);
+        return cursor;
+    }
+}
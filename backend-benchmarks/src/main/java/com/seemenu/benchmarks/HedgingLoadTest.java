@@ -0,0 +1,130 @@
+package com.seemenu.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Tail-latency test for hedged model calls across two backends with a heavy-tailed latency distribution
+ * Starts two stub models that answer after a log-normal latency with a fraction of stalled calls, launches the
+ * backend against both (the second as menu.analyzer.backends[0]) once with hedging off and once with it on,
+ * and sends the same distinct uploads at a fixed concurrency. Reports client-side p50/p95/p99 and the number of
+ * upstream calls; passes when hedging lowers p99 and every upload comes back with dishes.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar com.seemenu.benchmarks.HedgingLoadTest java -cp ... com.seemenu.SeeMenuApplication
+ * Tune with -Drequests=200 -Dconcurrency=4 -Dupstream.median-ms=300 -Dupstream.slow-fraction=0.04 -Dupstream.slow-ms=3000
+ */
+public final class HedgingLoadTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int DISHES = 3;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: HedgingLoadTest <backend command...>");
+            System.exit(2);
+        }
+        int requests = Integer.getInteger("requests", 200);
+        int concurrency = Integer.getInteger("concurrency", 4);
+        Supplier<Duration> latency = StubModelServer.heavyTail(
+                Duration.ofMillis(Integer.getInteger("upstream.median-ms", 300)), 0.3,
+                Double.parseDouble(System.getProperty("upstream.slow-fraction", "0.04")),
+                Duration.ofMillis(Integer.getInteger("upstream.slow-ms", 3000)));
+
+        Result unhedged = run(args, false, requests, concurrency, latency);
+        Result hedged = run(args, true, requests, concurrency, latency);
+
+        System.out.printf("%n%-10s %8s %8s %8s %8s %10s %8s%n", "", "p50", "p95", "p99", "max", "upstream", "failed");
+        unhedged.print("unhedged");
+        hedged.print("hedged");
+        boolean passed = hedged.failed == 0 && unhedged.failed == 0 && hedged.percentile(0.99) < unhedged.percentile(0.99);
+        System.out.println(passed ? "PASS" : "FAIL");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static Result run(String[] command, boolean hedging, int requests, int concurrency,
+                              Supplier<Duration> latency) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        try (StubModelServer primary = StubModelServer.start(DISHES, latency);
+             StubModelServer secondary = StubModelServer.start(DISHES, latency);
+             BackendProcess backend = BackendProcess.start(List.of(command), Map.of(
+                     "OPENAI_API_KEY", "load-test",
+                     "OPENAI_BASEURL", primary.baseUrl(),
+                     "MENU_ANALYZER_BACKENDS_0_NAME", "secondary",
+                     "MENU_ANALYZER_BACKENDS_0_BASEURL", secondary.baseUrl(),
+                     "MENU_ANALYZER_HEDGE_ENABLED", String.valueOf(hedging),
+                     // Short run: start trusting observed latency sooner than in production
+                     "MENU_ANALYZER_MIN_SAMPLES", "10",
+                     "MENU_ANALYZER_HEDGE_MIN_DELAY", "100ms"), client)) {
+
+            Semaphore slots = new Semaphore(concurrency);
+            AtomicInteger failed = new AtomicInteger();
+            long[] latencies = new long[requests];
+            List<CompletableFuture<Void>> pending = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                HttpRequest upload = HttpRequest.newBuilder(URI.create(backend.apiUrl() + "/upload"))
+                        .header("Content-Type", "image/jpeg")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(Menus.distinct(i)))
+                        .build();
+                slots.acquire();
+                long start = System.nanoTime();
+                pending.add(client.sendAsync(upload, HttpResponse.BodyHandlers.ofString())
+                        .thenAccept(response -> {
+                            latencies[index] = (System.nanoTime() - start) / 1_000_000;
+                            if (response.statusCode() != 200 || dishes(response.body()) != DISHES) {
+                                failed.incrementAndGet();
+                            }
+                        })
+                        .whenComplete((ignored, e) -> slots.release()));
+            }
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).get(10, TimeUnit.MINUTES);
+            return new Result(latencies, primary.requests() + secondary.requests(), failed.get());
+        }
+    }
+
+    private static int dishes(String body) {
+        try {
+            JsonNode response = objectMapper.readTree(body);
+            return response.path("dishes").size();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private record Result(long[] latencies, int upstreamCalls, int failed) {
+
+        private Result {
+            latencies = latencies.clone();
+            Arrays.sort(latencies);
+        }
+
+        private long percentile(double p) {
+            return latencies[Math.min(latencies.length - 1, (int) Math.ceil(p * latencies.length) - 1)];
+        }
+
+        private void print(String label) {
+            System.out.printf("%-10s %6d ms %5d ms %5d ms %5d ms %10d %8d%n", label, percentile(0.5),
+                    percentile(0.95), percentile(0.99), latencies[latencies.length - 1], upstreamCalls, failed);
+        }
+    }
+
+    private HedgingLoadTest() {
+    }
+}
@@ -0,0 +1,32 @@
+package com.seemenu.benchmarks;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Upload images for the load tests
+ */
+final class Menus {
+
+    /**
+     * Random noise per seed: distinct content and perceptual hashes, so every upload needs its own model call
+     */
+    static byte[] distinct(int seed) throws IOException {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(256, 320, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", jpeg);
+        return jpeg.toByteArray();
+    }
+
+    private Menus() {
+    }
+}
@@ -0,0 +1,189 @@
+package com.seemenu.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Smoke test for the Lambda custom-runtime build (target/bootstrap from mvn -Pnative native:compile)
+ * Starts a stub Lambda Runtime API and a stub model, launches the given command as the runtime,
+ * sends one menu upload through API Gateway's event format and checks the dishes that come back.
+ * Reports time to first event poll (cold start), first-invocation latency and peak RSS.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar com.seemenu.benchmarks.NativeSmokeTest ../backend/target/bootstrap
+ * Any command works, e.g. the AOT-processed JVM build: java -Dspring.aot.enabled=true -cp ... com.seemenu.SeeMenuApplication
+ */
+public final class NativeSmokeTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int DISHES = 3;
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: NativeSmokeTest <runtime command...>");
+            System.exit(2);
+        }
+
+        try (StubModelServer model = StubModelServer.start(DISHES, Duration.ZERO);
+             RuntimeApi runtimeApi = new RuntimeApi(uploadEvent())) {
+
+            ProcessBuilder builder = new ProcessBuilder(List.of(args)).inheritIO();
+            builder.environment().put("AWS_LAMBDA_RUNTIME_API", runtimeApi.address());
+            builder.environment().put("OPENAI_API_KEY", "smoke-test");
+            builder.environment().put("OPENAI_BASEURL", model.baseUrl());
+
+            long start = System.nanoTime();
+            Process runtime = builder.start();
+            try {
+                long firstPoll = runtimeApi.firstPoll.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+                String response = runtimeApi.response.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+                long done = System.nanoTime();
+                long peakRss = peakRssKb(runtime.pid());
+
+                JsonNode body = objectMapper.readTree(objectMapper.readTree(response).path("body").asText());
+                int dishes = body.path("dishes").size();
+                boolean passed = body.path("success").asBoolean() && dishes == DISHES && model.requests() == 1;
+
+                System.out.printf("%nCold start (launch to first event poll): %d ms%n", (firstPoll - start) / 1_000_000);
+                System.out.printf("First invocation: %d ms%n", (done - firstPoll) / 1_000_000);
+                System.out.printf("Peak RSS: %s%n", peakRss >= 0 ? (peakRss / 1024) + " MB" : "n/a");
+                System.out.printf("Dishes: %d, model calls: %d -> %s%n", dishes, model.requests(), passed ? "PASS" : "FAIL");
+                if (!passed) {
+                    System.out.println(response);
+                    System.exit(1);
+                }
+            } finally {
+                runtime.destroy();
+                if (!runtime.waitFor(5, TimeUnit.SECONDS)) {
+                    runtime.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    /**
+     * API Gateway (REST, proxy integration) event for a binary menu upload
+     */
+    private static byte[] uploadEvent() throws IOException {
+        BufferedImage menu = new BufferedImage(800, 1000, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = menu.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 800, 1000);
+        g.setColor(Color.BLACK);
+        for (int i = 0; i < DISHES; i++) {
+            g.drawString("Dish " + i + " ........ $" + (8 + i), 80, 120 + i * 60);
+        }
+        g.dispose();
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(menu, "jpeg", jpeg);
+
+        ObjectNode event = objectMapper.createObjectNode();
+        event.put("resource", "/{proxy+}");
+        event.put("path", "/prod/api/menu/upload");
+        event.put("httpMethod", "POST");
+        event.putObject("headers").put("Content-Type", "image/jpeg").put("X-Filename", "menu.jpg");
+        event.putObject("multiValueHeaders")
+                .set("Content-Type", objectMapper.createArrayNode().add("image/jpeg"));
+        event.putObject("requestContext").put("stage", "prod").putObject("identity");
+        event.put("body", Base64.getEncoder().encodeToString(jpeg.toByteArray()));
+        event.put("isBase64Encoded", true);
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    private static long peakRssKb(long pid) {
+        try {
+            return Files.readAllLines(Path.of("/proc/" + pid + "/status")).stream()
+                    .filter(line -> line.startsWith("VmHWM:"))
+                    .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                    .findFirst()
+                    .orElse(-1L);
+        } catch (IOException e) {
+            return -1; // not Linux
+        }
+    }
+
+    /**
+     * Minimal Lambda Runtime API: hands out one event, then holds further polls open
+     */
+    private static final class RuntimeApi implements AutoCloseable {
+
+        private final HttpServer server;
+        private final byte[] event;
+        private final AtomicBoolean delivered = new AtomicBoolean();
+        final CompletableFuture<Long> firstPoll = new CompletableFuture<>();
+        final CompletableFuture<String> response = new CompletableFuture<>();
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+        RuntimeApi(byte[] event) throws IOException {
+            this.event = event;
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/2018-06-01/runtime/", this::handle);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+        }
+
+        String address() {
+            return "127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            try (exchange; InputStream body = exchange.getRequestBody()) {
+                if (path.endsWith("/invocation/next")) {
+                    firstPoll.complete(System.nanoTime());
+                    if (!delivered.compareAndSet(false, true)) {
+                        closed.join(); // one invocation only; the runtime is stopped while it waits here
+                        return;
+                    }
+                    exchange.getResponseHeaders().set("Lambda-Runtime-Aws-Request-Id", "smoke-1");
+                    exchange.getResponseHeaders().set("Lambda-Runtime-Deadline-Ms",
+                            String.valueOf(System.currentTimeMillis() + TIMEOUT.toMillis()));
+                    exchange.sendResponseHeaders(200, event.length);
+                    exchange.getResponseBody().write(event);
+                } else if (path.endsWith("/response")) {
+                    response.complete(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+                    exchange.sendResponseHeaders(202, -1);
+                } else if (path.endsWith("/error")) {
+                    IllegalStateException failure = new IllegalStateException(
+                            path + ": " + new String(body.readAllBytes(), StandardCharsets.UTF_8));
+                    firstPoll.completeExceptionally(failure); // init errors arrive before any poll
+                    response.completeExceptionally(failure);
+                    exchange.sendResponseHeaders(202, -1);
+                } else {
+                    exchange.sendResponseHeaders(404, -1);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            closed.complete(null);
+            server.stop(0);
+        }
+    }
+
+    private NativeSmokeTest() {
+    }
+}
@@ -0,0 +1,85 @@
+package com.seemenu.benchmarks;
+
+import com.seemenu.cache.MultiIndexHashTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency of the perceptual-hash multi-index hash table at production-scale index sizes
+ * "nearHit" queries a re-photographed copy (a few bits flipped), "miss" queries an unseen menu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NearDuplicateLookupBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "500000"})
+    private int indexedMenus;
+
+    @Param({"6"})
+    private int maxDistance;
+
+    private MultiIndexHashTable<String> index;
+    private long[] nearQueries;
+    private long[] missQueries;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void buildIndex() {
+        SplittableRandom random = new SplittableRandom(42);
+        long[] indexed = new long[indexedMenus];
+
+        index = new MultiIndexHashTable<>();
+        for (int i = 0; i < indexedMenus; i++) {
+            indexed[i] = random.nextLong();
+            index.add(indexed[i], "menu-" + i);
+        }
+
+        nearQueries = new long[QUERIES];
+        missQueries = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long hash = indexed[random.nextInt(indexedMenus)];
+            // Flip up to maxDistance - 1 bits, like a re-compressed or slightly shifted photo
+            int flips = 1 + random.nextInt(Math.max(1, maxDistance - 1));
+            for (int f = 0; f < flips; f++) {
+                hash ^= 1L << random.nextInt(64);
+            }
+            nearQueries[i] = hash;
+            missQueries[i] = random.nextLong();
+        }
+    }
+
+    @Benchmark
+    public Optional<MultiIndexHashTable.Match<String>> nearHit() {
+        return index.findNearest(nearQueries[next()], maxDistance);
+    }
+
+    @Benchmark
+    public Optional<MultiIndexHashTable.Match<String>> miss() {
+        return index.findNearest(missQueries[next()], maxDistance);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (QUERIES - 1);
+        return cursor;
+    }
+}
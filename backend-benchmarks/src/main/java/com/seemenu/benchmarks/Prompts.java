@@ -0,0 +1,38 @@
+package com.seemenu.benchmarks;
+
+/**
+ * Prompt text of representative size for request-building benchmarks
+ */
+final class Prompts {
+
+    static final String ANALYSIS = """
+            Analyze this restaurant menu image and extract detailed information about each dish.
+
+            For each dish, provide:
+            1. Name of the dish
+            2. Description (if available)
+            3. Price
+            4. List of ingredients (if mentioned or can be inferred)
+            5. Common allergens (dairy, gluten, nuts, shellfish, etc.)
+            6. Dietary information (vegetarian, vegan, gluten-free, etc.)
+
+            Return your response as a JSON object with a "dishes" array containing this structure:
+            {
+              "dishes": [
+                {
+                  "name": "Dish Name",
+                  "description": "Brief description",
+                  "price": "$XX.XX",
+                  "ingredients": ["ingredient1", "ingredient2"],
+                  "allergens": ["allergen1", "allergen2"],
+                  "dietaryInfo": ["vegetarian", "gluten-free"]
+                }
+              ]
+            }
+
+            IMPORTANT: Return valid JSON only, no markdown code blocks or additional text.
+            """;
+
+    private Prompts() {
+    }
+}
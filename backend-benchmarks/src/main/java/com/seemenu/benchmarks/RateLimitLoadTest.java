@@ -0,0 +1,88 @@
+package com.seemenu.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test for the model concurrency limiter against a rate-limited stub model
+ * Launches the backend with the given command, fires a burst of concurrent uploads of distinct menus (so the
+ * result cache and coalescing do not absorb them) and checks that each one either returns dishes or a 503 with
+ * Retry-After. An empty "could not extract" analysis or any other status fails the run.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar com.seemenu.benchmarks.RateLimitLoadTest java -cp ... com.seemenu.SeeMenuApplication
+ * Tune with -Drequests=48 -Dupstream.max-concurrent=4 -Dupstream.latency-ms=1500
+ */
+public final class RateLimitLoadTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int DISHES = 3;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: RateLimitLoadTest <backend command...>");
+            System.exit(2);
+        }
+        int requests = Integer.getInteger("requests", 48);
+        int upstreamLimit = Integer.getInteger("upstream.max-concurrent", 4);
+        Duration latency = Duration.ofMillis(Integer.getInteger("upstream.latency-ms", 1500));
+
+        HttpClient client = HttpClient.newHttpClient();
+        try (StubModelServer model = StubModelServer.startRateLimited(DISHES, latency, upstreamLimit,
+                Duration.ofMillis(500));
+             BackendProcess backend = BackendProcess.start(List.of(args),
+                     Map.of("OPENAI_API_KEY", "load-test", "OPENAI_BASEURL", model.baseUrl()), client)) {
+
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                HttpRequest upload = HttpRequest.newBuilder(URI.create(backend.apiUrl() + "/upload"))
+                        .header("Content-Type", "image/jpeg")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(Menus.distinct(i)))
+                        .build();
+                responses.add(client.sendAsync(upload, HttpResponse.BodyHandlers.ofString()));
+            }
+
+            int analyzed = 0;
+            int shed = 0;
+            List<String> failures = new ArrayList<>();
+            for (CompletableFuture<HttpResponse<String>> pending : responses) {
+                HttpResponse<String> response = pending.get(5, TimeUnit.MINUTES);
+                JsonNode body = objectMapper.readTree(response.body());
+                if (response.statusCode() == 200 && body.path("dishes").size() == DISHES) {
+                    analyzed++;
+                } else if (response.statusCode() == 503 && response.headers().firstValue("Retry-After").isPresent()) {
+                    shed++;
+                } else {
+                    failures.add(response.statusCode() + " " + response.body());
+                }
+            }
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.printf("%nRequests: %d in %d ms (upstream allows %d concurrent, %d ms each)%n",
+                    requests, elapsed, upstreamLimit, latency.toMillis());
+            System.out.printf("Analyzed: %d, shed with 503 + Retry-After: %d, other: %d%n",
+                    analyzed, shed, failures.size());
+            System.out.printf("Upstream: %d completions, %d answered 429, peak %d in flight, %d connections%n",
+                    model.requests(), model.rateLimited(), model.peakInFlight(), model.connections());
+            failures.stream().limit(5).forEach(failure -> System.out.println("  " + failure));
+            System.out.println(failures.isEmpty() && analyzed > 0 ? "PASS" : "FAIL");
+            if (!failures.isEmpty() || analyzed == 0) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private RateLimitLoadTest() {
+    }
+}
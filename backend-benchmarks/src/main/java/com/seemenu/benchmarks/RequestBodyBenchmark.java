@@ -0,0 +1,111 @@
+package com.seemenu.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seemenu.openai.ChatCompletionRequest;
+import com.seemenu.openai.ChatCompletionRequestWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap cost of building the chat-completions request body for one image
+ * "mapTree" is the original path (Base64 String, data: URL concatenation, HashMap tree, Jackson),
+ * "streaming" is ChatCompletionRequestWriter. Run with -prof gc and compare gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBodyBenchmark {
+
+    @Param({"500", "2000", "8000"})
+    private int imageKb;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ChatCompletionRequestWriter writer = new ChatCompletionRequestWriter();
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    private byte[] image;
+    private ChatCompletionRequest request;
+
+    @Setup(Level.Trial)
+    public void createImage() {
+        image = new byte[imageKb * 1024];
+        new Random(42).nextBytes(image);
+        request = ChatCompletionRequest.builder()
+                .model("gpt-4o")
+                .maxTokens(2000)
+                .temperature(0.3)
+                .prompt(Prompts.ANALYSIS)
+                .image(new ChatCompletionRequest.Image(image, "image/jpeg"))
+                .build();
+    }
+
+    @Benchmark
+    public byte[] mapTree() throws Exception {
+        String base64Image = Base64.getEncoder().encodeToString(image);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", "gpt-4o");
+        requestBody.put("max_tokens", 2000);
+        requestBody.put("temperature", 0.3);
+        requestBody.put("response_format", Map.of("type", "json_object"));
+
+        List<Map<String, Object>> content = new ArrayList<>();
+        Map<String, Object> textContent = new HashMap<>();
+        textContent.put("type", "text");
+        textContent.put("text", Prompts.ANALYSIS);
+        content.add(textContent);
+
+        Map<String, Object> imageContent = new HashMap<>();
+        imageContent.put("type", "image_url");
+        Map<String, String> imageUrl = new HashMap<>();
+        imageUrl.put("url", "data:image/jpeg;base64," + base64Image);
+        imageContent.put("image_url", imageUrl);
+        content.add(imageContent);
+
+        Map<String, Object> userMessage = new HashMap<>();
+        userMessage.put("role", "user");
+        userMessage.put("content", content);
+        requestBody.put("messages", List.of(userMessage));
+
+        return objectMapper.writeValueAsBytes(requestBody);
+    }
+
+    @Benchmark
+    public long streaming() {
+        // Consume and release each buffer as a network write would
+        return writer.write(request, bufferFactory)
+                .map(this::drain)
+                .reduce(0L, Long::sum)
+                .block();
+    }
+
+    private long drain(DataBuffer buffer) {
+        int bytes = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return bytes;
+    }
+}
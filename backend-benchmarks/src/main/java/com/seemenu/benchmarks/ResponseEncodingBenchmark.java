@@ -0,0 +1,135 @@
+package com.seemenu.benchmarks;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.decoder.Decoder;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.seemenu.dto.CompactMenuResponse;
+import com.seemenu.dto.MenuAnalysisResponse;
+import com.seemenu.openai.DishResponseParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writing and reading the upload response in each format a client can negotiate
+ * "json" is the default response, "gzip" and "br" the same JSON compressed the way the server does it
+ * (deflate level 6, brotli quality 4), "cbor" and "smile" the compact form with dictionary-encoded tags.
+ * Decoding ends with a MenuAnalysisResponse, so the compact forms include expanding the tags.
+ * Running the class itself (rather than through JMH) prints the encoded sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseEncodingBenchmark {
+
+    private static final int[] SIZES = {5, 50, 500};
+    private static final String[] FORMATS = {"json", "gzip", "br", "cbor", "smile"};
+
+    @Param({"5", "50", "500"})
+    private int dishes;
+
+    @Param({"json", "gzip", "br", "cbor", "smile"})
+    private String format;
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final ObjectMapper cbor = new CBORMapper();
+    private final ObjectMapper smile = new SmileMapper();
+    private final Encoder.Parameters brotli = new Encoder.Parameters().setQuality(4);
+
+    private MenuAnalysisResponse response;
+    private byte[] encoded;
+
+    @Setup
+    public void createResponse() throws Exception {
+        Brotli4jLoader.ensureAvailability();
+        response = MenuAnalysisResponse.builder()
+                .success(true)
+                .message("Menu analyzed successfully! Found " + dishes + " dish(es).")
+                .dishes(new DishResponseParser(json).parse(Completions.dishesJson(dishes)))
+                .build();
+        encoded = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return switch (format) {
+            case "json" -> json.writeValueAsBytes(response);
+            case "gzip" -> gzip(json.writeValueAsBytes(response));
+            case "br" -> Encoder.compress(json.writeValueAsBytes(response), brotli);
+            case "cbor" -> cbor.writeValueAsBytes(CompactMenuResponse.of(response));
+            case "smile" -> smile.writeValueAsBytes(CompactMenuResponse.of(response));
+            default -> throw new IllegalArgumentException(format);
+        };
+    }
+
+    @Benchmark
+    public MenuAnalysisResponse decode() throws IOException {
+        return switch (format) {
+            case "json" -> json.readValue(encoded, MenuAnalysisResponse.class);
+            case "gzip" -> json.readValue(gunzip(encoded), MenuAnalysisResponse.class);
+            case "br" -> json.readValue(Decoder.decompress(encoded).getDecompressedData(),
+                    MenuAnalysisResponse.class);
+            case "cbor" -> cbor.readValue(encoded, CompactMenuResponse.class).toResponse();
+            case "smile" -> smile.readValue(encoded, CompactMenuResponse.class).toResponse();
+            default -> throw new IllegalArgumentException(format);
+        };
+    }
+
+    /**
+     * Prints the encoded size of the response in every format, for each menu size
+     */
+    public static void main(String[] args) throws Exception {
+        StringBuilder table = new StringBuilder(String.format("%-8s", "dishes"));
+        for (String format : FORMATS) {
+            table.append(String.format("%10s", format));
+        }
+        for (int size : SIZES) {
+            table.append(String.format("%n%-8d", size));
+            for (String format : FORMATS) {
+                ResponseEncodingBenchmark benchmark = new ResponseEncodingBenchmark();
+                benchmark.dishes = size;
+                benchmark.format = format;
+                benchmark.createResponse();
+                table.append(String.format("%10d", benchmark.encoded.length));
+            }
+        }
+        System.out.println(table);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try (OutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return gzip.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.seemenu.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seemenu.model.DishInfo;
+import com.seemenu.openai.DishResponseParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning a buffered completion into dishes, from a small menu to a very long one
+ * "tree" is the original path (readTree of the envelope, then of the content, then a has/get walk per dish),
+ * "streaming" is DishResponseParser on the same completion and "parse" its content-only part. Run with -prof gc
+ * for bytes allocated per menu.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseParsingBenchmark {
+
+    @Param({"5", "50", "500"})
+    private int dishes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DishResponseParser parser = new DishResponseParser(objectMapper);
+
+    private String content;
+    private String completion;
+
+    @Setup
+    public void createContent() {
+        // The parser logs per menu at INFO; measure parsing, not console output
+        ((Logger) LoggerFactory.getLogger("com.seemenu")).setLevel(Level.WARN);
+
+        content = Completions.dishesJson(dishes);
+        completion = Completions.completion("```json\n" + content + "\n```");
+    }
+
+    @Benchmark
+    public List<DishInfo> tree() throws Exception {
+        JsonNode responseNode = objectMapper.readTree(completion);
+        String response = responseNode.path("choices").get(0).path("message").path("content").asText();
+
+        String cleaned = response.trim();
+        if (cleaned.startsWith("```json")) {
+            cleaned = cleaned.substring(7);
+        } else if (cleaned.startsWith("```")) {
+            cleaned = cleaned.substring(3);
+        }
+        if (cleaned.endsWith("```")) {
+            cleaned = cleaned.substring(0, cleaned.length() - 3);
+        }
+
+        JsonNode rootNode = objectMapper.readTree(cleaned.trim());
+        JsonNode dishesNode = rootNode.isArray() ? rootNode : rootNode.get("dishes");
+        List<DishInfo> result = new ArrayList<>();
+        for (JsonNode node : dishesNode) {
+            DishInfo dish = new DishInfo();
+            if (node.has("name")) {
+                dish.setName(node.get("name").asText());
+            }
+            if (node.has("description")) {
+                dish.setDescription(node.get("description").asText());
+            }
+            if (node.has("price")) {
+                dish.setPrice(node.get("price").asText());
+            }
+            if (node.has("ingredients") && node.get("ingredients").isArray()) {
+                List<String> ingredients = new ArrayList<>();
+                node.get("ingredients").forEach(item -> ingredients.add(item.asText()));
+                dish.setIngredients(ingredients);
+            }
+            if (node.has("allergens") && node.get("allergens").isArray()) {
+                List<String> allergens = new ArrayList<>();
+                node.get("allergens").forEach(item -> allergens.add(item.asText()));
+                dish.setAllergens(allergens);
+            }
+            if (node.has("dietaryInfo") && node.get("dietaryInfo").isArray()) {
+                List<String> dietaryInfo = new ArrayList<>();
+                node.get("dietaryInfo").forEach(item -> dietaryInfo.add(item.asText()));
+                dish.setDietaryInfo(dietaryInfo);
+            }
+            result.add(dish);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<DishInfo> streaming() throws Exception {
+        return parser.parse(parser.readCompletion(completion).content());
+    }
+
+    @Benchmark
+    public List<DishInfo> parse() throws Exception {
+        return parser.parse(content);
+    }
+}
@@ -0,0 +1,55 @@
+package com.seemenu.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seemenu.dto.MenuAnalysisResponse;
+import com.seemenu.model.DishInfo;
+import com.seemenu.openai.DishResponseParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing the MenuAnalysisResponse JSON that every upload answers with
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    @Param({"5", "50", "500"})
+    private int dishes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MenuAnalysisResponse response;
+
+    @Setup
+    public void createResponse() throws Exception {
+        List<DishInfo> menu = new DishResponseParser(objectMapper).parse(Completions.dishesJson(dishes));
+
+        response = MenuAnalysisResponse.builder()
+                .success(true)
+                .message("Menu analyzed successfully! Found " + dishes + " dish(es).")
+                .dishes(menu)
+                .build();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
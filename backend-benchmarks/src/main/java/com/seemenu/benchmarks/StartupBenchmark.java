@@ -0,0 +1,55 @@
+package com.seemenu.benchmarks;
+
+import com.seemenu.StreamLambdaHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lambda cold start measured locally: building the Spring context through StreamLambdaHandler with the
+ * lambda profile, and the first API Gateway request after it. Each fork is a fresh JVM, so every sample
+ * is a true cold start; raise the fork count (-f) for steadier numbers.
+ * No OpenAI key is needed because it is only resolved on the first model call.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+
+    private static final String HEALTH_EVENT = """
+            {"resource":"/{proxy+}","path":"/prod/api/menu/health","httpMethod":"GET",
+             "headers":{"Host":"localhost"},"multiValueHeaders":{"Host":["localhost"]},
+             "requestContext":{"stage":"prod","identity":{}},"isBase64Encoded":false}
+            """;
+
+    /**
+     * Handler class initialization, i.e. what the Lambda init phase (or SnapStart snapshot) pays
+     */
+    @Benchmark
+    public Class<?> handlerInit() throws ClassNotFoundException {
+        return Class.forName("com.seemenu.StreamLambdaHandler", true, getClass().getClassLoader());
+    }
+
+    /**
+     * Initialization plus the first request, as seen by the first caller of a cold function
+     */
+    @Benchmark
+    public byte[] firstRequest() throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        new StreamLambdaHandler().handleRequest(
+                new ByteArrayInputStream(HEALTH_EVENT.getBytes(StandardCharsets.UTF_8)), response, null);
+        return response.toByteArray();
+    }
+}
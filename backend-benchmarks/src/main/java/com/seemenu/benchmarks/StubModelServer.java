@@ -0,0 +1,645 @@
+package com.seemenu.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Local stand-in for the OpenAI chat-completions endpoint
+ * Point the backend at it with openai.base-url (env OPENAI_BASEURL) = {@link #baseUrl()}.
+ * A rate-limited instance answers 429 with OpenAI's rate-limit headers while too many calls are in flight;
+ * latency can be fixed or drawn per call from a distribution (see {@link #heavyTail}).
+ * Multi-image calls are answered with one "menus" section per image. Reported usage is estimated from the
+ * request: about 4 characters per text token plus {@link Completions#IMAGE_TOKENS} per image.
+ * <p>
+ * Instead of canned dishes it can replay chat-completion responses recorded from a real model (see
+ * {@link Builder#replay} and {@link Builder#record}), fail a fraction of calls with 500 or 429, and answer
+ * calls with "stream": true as server-sent chunks at a fixed token rate. Answers longer than the call's max_tokens
+ * are cut off there with finish_reason "length", as a model does. {@link #main} runs it standalone,
+ * configured like the load tests with -Dupstream.* properties (see {@link #fromSystemProperties}).
+ */
+public final class StubModelServer implements AutoCloseable {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    static {
+        // Streamed chunks are a few bytes each; send each at once instead of letting Nagle's algorithm coalesce them
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger rateLimited = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicInteger streamed = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+    // The exchange's stream is drained after scanning, so the parser must not close it
+    private final JsonFactory jsonFactory = new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    private final int dishes;
+    private final Supplier<Duration> latency;
+    private final Duration perMenu;
+    private final int maxConcurrent;
+    private final Duration retryAfter;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final int chunkChars;
+    private final Duration chunkInterval;
+    private final List<Answer> recordings;
+    private final AtomicInteger replayed = new AtomicInteger();
+    private final String recordFrom;
+    private final Path recordTo;
+    private final AtomicInteger recorded;
+    private final HttpClient upstream;
+
+    private StubModelServer(Builder builder) throws IOException {
+        this.dishes = builder.dishes;
+        this.latency = builder.latency;
+        this.perMenu = builder.perMenu;
+        this.maxConcurrent = builder.maxConcurrent;
+        this.retryAfter = builder.retryAfter;
+        this.errorRate = builder.errorRate;
+        this.rateLimitRate = builder.rateLimitRate;
+        this.chunkChars = builder.chunkChars;
+        this.chunkInterval = builder.chunkInterval;
+        this.recordFrom = builder.recordFrom;
+        this.recordTo = builder.recordFrom != null ? builder.directory : null;
+        if (recordTo != null) {
+            Files.createDirectories(recordTo);
+        }
+        this.recordings = builder.directory != null && recordTo == null ? load(builder.directory) : List.of();
+        this.recorded = new AtomicInteger(recordTo != null ? load(recordTo).size() : 0);
+        this.upstream = recordFrom != null ? HttpClient.newHttpClient() : null;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", builder.port), 0);
+        server.createContext("/v1/chat/completions", this::complete);
+        server.createContext("/v1/models", this::unauthorized);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A builder configured from system properties with the given prefix, e.g. "upstream.":
+     * dishes (3), median-ms (300), sigma (0.3), slow-fraction (0), slow-ms (3000), per-menu-ms (0),
+     * max-concurrent (unlimited), retry-after-ms (1000), error-rate (0), rate-limit-rate (0), chunk-chars (4),
+     * chunk-ms (10), port (any free one), replay (a directory of recorded responses) and record-from (the real
+     * API's base URL; recordings go to the replay directory)
+     */
+    public static Builder fromSystemProperties(String prefix) {
+        Builder builder = builder()
+                .dishes(Integer.getInteger(prefix + "dishes", 3))
+                .latency(heavyTail(Duration.ofMillis(Integer.getInteger(prefix + "median-ms", 300)),
+                        Double.parseDouble(System.getProperty(prefix + "sigma", "0.3")),
+                        Double.parseDouble(System.getProperty(prefix + "slow-fraction", "0")),
+                        Duration.ofMillis(Integer.getInteger(prefix + "slow-ms", 3000))))
+                .perMenu(Duration.ofMillis(Integer.getInteger(prefix + "per-menu-ms", 0)))
+                .rateLimit(Integer.getInteger(prefix + "max-concurrent", Integer.MAX_VALUE),
+                        Duration.ofMillis(Integer.getInteger(prefix + "retry-after-ms", 1000)))
+                .errorRate(Double.parseDouble(System.getProperty(prefix + "error-rate", "0")))
+                .rateLimitRate(Double.parseDouble(System.getProperty(prefix + "rate-limit-rate", "0")))
+                .streaming(Integer.getInteger(prefix + "chunk-chars", 4),
+                        Duration.ofMillis(Integer.getInteger(prefix + "chunk-ms", 10)))
+                .port(Integer.getInteger(prefix + "port", 0));
+        String replay = System.getProperty(prefix + "replay");
+        String recordFrom = System.getProperty(prefix + "record-from");
+        if (recordFrom != null) {
+            if (replay == null) {
+                throw new IllegalArgumentException(prefix + "record-from needs " + prefix + "replay to write to");
+            }
+            builder.record(recordFrom, Path.of(replay));
+        } else if (replay != null) {
+            builder.replay(Path.of(replay));
+        }
+        return builder;
+    }
+
+    /**
+     * Runs the stub until the process is stopped, configured by -Dupstream.* properties
+     * Start the backend with OPENAI_BASEURL set to the printed URL. Counts are printed on exit.
+     */
+    public static void main(String[] args) throws Exception {
+        StubModelServer stub = fromSystemProperties("upstream.").start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stub.close();
+            System.out.printf("%d completions (%d streamed), %d answered 429, %d answered 500, "
+                            + "%d prompt and %d completion tokens%n", stub.requests(), stub.streamed(),
+                    stub.rateLimited(), stub.errors(), stub.promptTokens(), stub.completionTokens());
+        }));
+        System.out.println("Stub model listening on " + stub.baseUrl()
+                + (stub.recordFrom != null ? ", recording " + stub.recordFrom + " to " + stub.recordTo
+                : stub.recordings.isEmpty() ? "" : ", replaying " + stub.recordings.size() + " recorded responses"));
+        Thread.currentThread().join();
+    }
+
+    public static StubModelServer start(int dishes, Duration latency) throws IOException {
+        return builder().dishes(dishes).latency(latency).start();
+    }
+
+    /**
+     * Answers each call after latency plus perMenu for every image in it, like a model whose output (one dish
+     * list per menu) dominates the response time
+     */
+    public static StubModelServer start(int dishes, Duration latency, Duration perMenu) throws IOException {
+        return builder().dishes(dishes).latency(latency).perMenu(perMenu).start();
+    }
+
+    /**
+     * Answers each call after a latency drawn from the given distribution
+     */
+    public static StubModelServer start(int dishes, Supplier<Duration> latency) throws IOException {
+        return builder().dishes(dishes).latency(latency).start();
+    }
+
+    /**
+     * Rejects calls beyond maxConcurrent in flight with 429, asking clients to wait retryAfter
+     */
+    public static StubModelServer startRateLimited(int dishes, Duration latency, int maxConcurrent, Duration retryAfter)
+            throws IOException {
+        return builder().dishes(dishes).latency(latency).rateLimit(maxConcurrent, retryAfter).start();
+    }
+
+    /**
+     * Log-normal latency around median, plus a slowFraction of calls that take slow instead
+     * Shaped like a hosted model: most answers cluster tightly, a few stall behind a busy replica.
+     */
+    public static Supplier<Duration> heavyTail(Duration median, double sigma, double slowFraction, Duration slow) {
+        return () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < slowFraction) {
+                return slow;
+            }
+            return Duration.ofMillis(Math.round(median.toMillis() * Math.exp(sigma * random.nextGaussian())));
+        };
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    /**
+     * Calls answered with a completion
+     */
+    public int requests() {
+        return requests.get();
+    }
+
+    /**
+     * Calls answered with 429
+     */
+    public int rateLimited() {
+        return rateLimited.get();
+    }
+
+    /**
+     * Calls failed with 500 by the configured error rate
+     */
+    public int errors() {
+        return errors.get();
+    }
+
+    /**
+     * Completions sent as server-sent chunks
+     */
+    public int streamed() {
+        return streamed.get();
+    }
+
+    /**
+     * Most calls that were being answered at the same time
+     */
+    public int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    /**
+     * Input tokens reported in the usage of all answered calls
+     */
+    public long promptTokens() {
+        return promptTokens.get();
+    }
+
+    /**
+     * Output tokens reported in the usage of all answered calls
+     */
+    public long completionTokens() {
+        return completionTokens.get();
+    }
+
+    /**
+     * Distinct client connections seen, including the backend's pre-warmed ones
+     */
+    public int connections() {
+        return connections.size();
+    }
+
+    private void complete(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress());
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            // Recording forwards the request, so it is kept rather than only scanned
+            byte[] request = recordFrom != null ? body.readAllBytes() : null;
+            Prompt prompt = scanPrompt(request != null ? new ByteArrayInputStream(request) : body);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (inFlight.incrementAndGet() > maxConcurrent || random.nextDouble() < rateLimitRate) {
+                rateLimit(exchange);
+                return;
+            }
+            peakInFlight.accumulateAndGet(inFlight.get(), Math::max);
+            int images = Math.max(1, prompt.images());
+            Answer answer;
+            if (recordFrom != null) {
+                answer = record(exchange, request);
+                if (answer == null) {
+                    return;
+                }
+            } else {
+                Thread.sleep(latency.get().plus(perMenu.multipliedBy(images)).toMillis());
+                if (random.nextDouble() < errorRate) {
+                    serverError(exchange);
+                    return;
+                }
+                answer = answer(prompt, images).limit(prompt.maxTokens());
+            }
+
+            requests.incrementAndGet();
+            promptTokens.addAndGet(answer.promptTokens());
+            completionTokens.addAndGet(answer.completionTokens());
+            if (prompt.stream()) {
+                stream(exchange, answer);
+            } else {
+                send(exchange, 200, answer.body());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * The next recorded response if there are any, canned dishes otherwise
+     * A multi-image call gets one section per image, each holding the dishes of the next recording.
+     */
+    private Answer answer(Prompt prompt, int images) throws IOException {
+        long inputTokens = (prompt.textChars() + 3) / 4 + (long) images * Completions.IMAGE_TOKENS;
+        String content;
+        if (recordings.isEmpty()) {
+            content = images == 1 ? Completions.dishesJson(dishes) : Completions.menusJson(images, dishes);
+        } else if (images == 1) {
+            return nextRecording();
+        } else {
+            ObjectNode root = objectMapper.createObjectNode();
+            ArrayNode menus = root.putArray("menus");
+            for (int image = 1; image <= images; image++) {
+                JsonNode recorded = objectMapper.readTree(nextRecording().content());
+                menus.addObject().put("image", image).set("dishes", recorded.path("dishes"));
+            }
+            content = root.toString();
+        }
+        return new Answer(Completions.completion(content, inputTokens), content, inputTokens, content.length() / 4,
+                "stop");
+    }
+
+    private Answer nextRecording() {
+        return recordings.get(Math.floorMod(replayed.getAndIncrement(), recordings.size()));
+    }
+
+    /**
+     * Forwards the call without streaming to the real API and saves a successful response for replay
+     * Errors are passed back as they are, and null returned.
+     */
+    private Answer record(HttpExchange exchange, byte[] request) throws IOException, InterruptedException {
+        ObjectNode call = (ObjectNode) objectMapper.readTree(request);
+        call.remove("stream");
+        call.remove("stream_options");
+        HttpRequest.Builder forward = HttpRequest.newBuilder(URI.create(recordFrom + "/chat/completions"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(2))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(call)));
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization != null) {
+            forward.header("Authorization", authorization);
+        }
+        HttpResponse<String> response = upstream.send(forward.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            send(exchange, response.statusCode(), response.body());
+            return null;
+        }
+        Path file = recordTo.resolve(String.format("completion-%04d.json", recorded.incrementAndGet()));
+        Files.writeString(file, response.body());
+        return parse(response.body());
+    }
+
+    /**
+     * Sends the content as server-sent chunks of chunkChars characters, chunkInterval apart, then the usage
+     * The first chunk goes out after the call's latency, like a model's time to first token.
+     */
+    private void stream(HttpExchange exchange, Answer answer) throws IOException, InterruptedException {
+        streamed.incrementAndGet();
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        String content = answer.content();
+        for (int start = 0; start < content.length(); start += chunkChars) {
+            if (start > 0) {
+                Thread.sleep(chunkInterval.toMillis());
+            }
+            event(out, Completions.chunk(content.substring(start, Math.min(content.length(), start + chunkChars))));
+        }
+        event(out, Completions.finalChunk(answer.finishReason()));
+        event(out, Completions.usageChunk(answer.promptTokens(), answer.completionTokens()));
+        event(out, "[DONE]");
+    }
+
+    private static void event(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] response = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, response.length);
+        exchange.getResponseBody().write(response);
+    }
+
+    /**
+     * Number of images and characters of text in a chat-completions request, its max_tokens (0 if none) and
+     * whether it asks for streaming
+     */
+    private Prompt scanPrompt(InputStream body) throws IOException {
+        int images = 0;
+        int textChars = 0;
+        boolean stream = false;
+        int maxTokens = 0;
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.FIELD_NAME) {
+                    continue;
+                }
+                String field = parser.currentName();
+                if ("image_url".equals(field)) {
+                    images++;
+                } else if ("text".equals(field) && parser.nextToken() == JsonToken.VALUE_STRING) {
+                    textChars += parser.getTextLength();
+                } else if ("stream".equals(field) && parser.getParsingContext().getParent().inRoot()) {
+                    stream = parser.nextToken() == JsonToken.VALUE_TRUE;
+                } else if ("max_tokens".equals(field) && parser.getParsingContext().getParent().inRoot()
+                        && parser.nextToken() == JsonToken.VALUE_NUMBER_INT) {
+                    maxTokens = parser.getIntValue();
+                }
+            }
+        } catch (JsonParseException e) {
+            // Not a chat-completions body; answer it like a single-image call
+        }
+        body.transferTo(OutputStream.nullOutputStream());
+        return new Prompt(images, textChars, stream, maxTokens);
+    }
+
+    /**
+     * What OpenAI answers without an API key; the backend's connection pre-warming calls this
+     */
+    private void unauthorized(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress());
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            body.transferTo(OutputStream.nullOutputStream());
+            byte[] error = ("{\"error\":{\"message\":\"You didn't provide an API key.\","
+                    + "\"type\":\"invalid_request_error\"}}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(401, error.length);
+            exchange.getResponseBody().write(error);
+        }
+    }
+
+    private void serverError(HttpExchange exchange) throws IOException {
+        errors.incrementAndGet();
+        send(exchange, 500, "{\"error\":{\"message\":\"The server had an error while processing your request.\","
+                + "\"type\":\"server_error\"}}");
+    }
+
+    private void rateLimit(HttpExchange exchange) throws IOException {
+        rateLimited.incrementAndGet();
+        byte[] error = ("{\"error\":{\"message\":\"Rate limit reached\",\"type\":\"requests\","
+                + "\"code\":\"rate_limit_exceeded\"}}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("retry-after-ms", String.valueOf(retryAfter.toMillis()));
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf((retryAfter.toMillis() + 999) / 1000));
+        exchange.getResponseHeaders().set("x-ratelimit-remaining-requests", "0");
+        exchange.getResponseHeaders().set("x-ratelimit-reset-requests", retryAfter.toMillis() + "ms");
+        exchange.sendResponseHeaders(429, error.length);
+        exchange.getResponseBody().write(error);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * The recorded chat-completion responses in a directory (*.json), in file name order
+     */
+    private static List<Answer> load(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Answer> answers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".json")).sorted().toList()) {
+                answers.add(parse(Files.readString(file)));
+            }
+        }
+        return answers;
+    }
+
+    private static Answer parse(String body) throws IOException {
+        JsonNode response = objectMapper.readTree(body);
+        JsonNode usage = response.path("usage");
+        JsonNode choice = response.path("choices").path(0);
+        String content = choice.path("message").path("content").asText();
+        return new Answer(body, content, usage.path("prompt_tokens").asLong(),
+                usage.path("completion_tokens").asLong(content.length() / 4),
+                choice.path("finish_reason").asText("stop"));
+    }
+
+    private record Prompt(int images, int textChars, boolean stream, int maxTokens) {
+    }
+
+    /**
+     * A completion to send: the whole response body, and its content and usage for streaming it
+     */
+    private record Answer(String body, String content, long promptTokens, long completionTokens,
+                          String finishReason) {
+
+        /**
+         * This answer cut off after maxTokens completion tokens (about 4 characters each), if it is longer
+         */
+        Answer limit(int maxTokens) {
+            if (maxTokens <= 0 || completionTokens <= maxTokens) {
+                return this;
+            }
+            String cut = content.substring(0, Math.min(content.length(), maxTokens * 4));
+            return new Answer(Completions.completion(cut, promptTokens, "length"), cut, promptTokens, maxTokens,
+                    "length");
+        }
+    }
+
+    /**
+     * Options of a stub; defaults answer at once with 3 canned dishes and never fail
+     */
+    public static final class Builder {
+
+        private int port;
+        private int dishes = 3;
+        private Supplier<Duration> latency = () -> Duration.ZERO;
+        private Duration perMenu = Duration.ZERO;
+        private int maxConcurrent = Integer.MAX_VALUE;
+        private Duration retryAfter = Duration.ofSeconds(1);
+        private double errorRate;
+        private double rateLimitRate;
+        private int chunkChars = 4;
+        private Duration chunkInterval = Duration.ofMillis(10);
+        private Path directory;
+        private String recordFrom;
+
+        private Builder() {
+        }
+
+        /**
+         * Port to listen on; 0 (the default) picks a free one
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Dishes per menu in canned answers
+         */
+        public Builder dishes(int dishes) {
+            this.dishes = dishes;
+            return this;
+        }
+
+        public Builder latency(Duration latency) {
+            return latency(() -> latency);
+        }
+
+        /**
+         * Time before each answer (or before its first chunk), drawn per call
+         */
+        public Builder latency(Supplier<Duration> latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Added to the latency for every image in the call
+         */
+        public Builder perMenu(Duration perMenu) {
+            this.perMenu = perMenu;
+            return this;
+        }
+
+        /**
+         * Answers 429 while more than maxConcurrent calls are in flight, asking clients to wait retryAfter
+         */
+        public Builder rateLimit(int maxConcurrent, Duration retryAfter) {
+            this.maxConcurrent = maxConcurrent;
+            this.retryAfter = retryAfter;
+            return this;
+        }
+
+        /**
+         * Fraction of calls answered 500 after their latency
+         */
+        public Builder errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * Fraction of calls answered 429 at once, regardless of concurrency
+         */
+        public Builder rateLimitRate(double rateLimitRate) {
+            this.rateLimitRate = rateLimitRate;
+            return this;
+        }
+
+        /**
+         * Streamed answers carry chunkChars characters per chunk (about one token at 4), chunkInterval apart
+         */
+        public Builder streaming(int chunkChars, Duration chunkInterval) {
+            this.chunkChars = Math.max(1, chunkChars);
+            this.chunkInterval = chunkInterval;
+            return this;
+        }
+
+        /**
+         * Answers with the chat-completion responses saved in directory, in turn, instead of canned dishes
+         */
+        public Builder replay(Path directory) {
+            this.directory = directory;
+            this.recordFrom = null;
+            return this;
+        }
+
+        /**
+         * Forwards every call to the real API at baseUrl with the caller's Authorization header, and saves each
+         * successful response to directory for a later {@link #replay}; latency and failure rates do not apply
+         */
+        public Builder record(String baseUrl, Path directory) {
+            this.directory = directory;
+            this.recordFrom = baseUrl;
+            return this;
+        }
+
+        public StubModelServer start() throws IOException {
+            StubModelServer stub = new StubModelServer(this);
+            if (directory != null && recordFrom == null && stub.recordings.isEmpty()) {
+                stub.close();
+                throw new IllegalArgumentException("No recorded responses (*.json) in " + directory);
+            }
+            return stub;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.seemenu.benchmarks;
+
+import ch.qos.logback.classic.Logger;
+import com.seemenu.controller.MenuController;
+import com.seemenu.dto.MenuAnalysisResponse;
+import com.seemenu.metrics.PipelineMetrics;
+import com.seemenu.model.DishInfo;
+import com.seemenu.service.MenuService;
+import com.seemenu.upload.ImageUploadReader;
+import com.seemenu.upload.ReactiveUploadBodyResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.result.method.annotation.ArgumentResolverConfigurer;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MenuController's binary upload endpoints on the WebFlux stack, without a socket and without the analysis
+ * Each call goes through reading the body (delivered in 64KB buffers, like Netty's) with ImageUploadReader, the
+ * controller (for "pages", splitting the body into two pages) and JSON encoding of a canned 20-dish response.
+ * Run with -prof gc: bodies up to the 1MB spill threshold are copied onto the heap once, larger ones are
+ * written to a memory-mapped file and gc.alloc.rate.norm stays flat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadHandlingBenchmark {
+
+    private static final int DISHES = 20;
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    @Param({"500", "2000", "8000"})
+    private int imageKb;
+
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    private AnnotationConfigApplicationContext context;
+    private HttpHandler httpHandler;
+    private List<ByteBuffer> chunks;
+    private String pageLengths;
+
+    @Setup(Level.Trial)
+    public void createHandler() {
+        // WebFlux logs every exchange at DEBUG without a logging configuration
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+
+        byte[] image = new byte[imageKb * 1024];
+        new Random(42).nextBytes(image);
+        // Both pages start with a JPEG signature, or the upload is rejected before reaching the controller
+        markJpeg(image, 0);
+        markJpeg(image, image.length / 2);
+        chunks = new ArrayList<>();
+        for (int offset = 0; offset < image.length; offset += CHUNK_BYTES) {
+            chunks.add(ByteBuffer.wrap(image, offset, Math.min(CHUNK_BYTES, image.length - offset)).slice());
+        }
+        pageLengths = (image.length / 2) + "," + (image.length - image.length / 2);
+
+        context = new AnnotationConfigApplicationContext();
+        // menu.upload.* defaults are DataSize strings
+        context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+        context.registerBean(ImageUploadReader.class);
+        context.registerBean(MenuController.class, () -> new MenuController(new CannedMenuService(),
+                new PipelineMetrics(new SimpleMeterRegistry())));
+        context.register(WebConfig.class);
+        context.refresh();
+        httpHandler = WebHttpHandlerBuilder.applicationContext(context).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public int upload() {
+        return exchange(MockServerHttpRequest.post("/api/menu/upload")
+                .contentType(MediaType.IMAGE_JPEG)
+                .header("X-Filename", "menu.jpg")
+                .contentLength(imageKb * 1024L)
+                .body(body()));
+    }
+
+    @Benchmark
+    public int pages() {
+        return exchange(MockServerHttpRequest.post("/api/menu/upload/pages")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header("X-Page-Lengths", pageLengths)
+                .contentLength(imageKb * 1024L)
+                .body(body()));
+    }
+
+    private Flux<DataBuffer> body() {
+        return Flux.fromIterable(chunks).map(chunk -> bufferFactory.wrap(chunk.duplicate()));
+    }
+
+    private static void markJpeg(byte[] image, int offset) {
+        image[offset] = (byte) 0xFF;
+        image[offset + 1] = (byte) 0xD8;
+        image[offset + 2] = (byte) 0xFF;
+    }
+
+    /**
+     * Handles the request and returns the response size, as the server would write it
+     */
+    private int exchange(MockServerHttpRequest request) {
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        httpHandler.handle(request, response).block();
+        if (response.getStatusCode() != HttpStatus.OK) {
+            throw new IllegalStateException("Upload answered " + response.getStatusCode());
+        }
+        return response.getBody()
+                .map(buffer -> {
+                    int bytes = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                })
+                .reduce(0, Integer::sum)
+                .block();
+    }
+
+    /**
+     * The upload binding the application registers (see ReactiveWebConfig)
+     */
+    @Configuration
+    @EnableWebFlux
+    static class WebConfig implements WebFluxConfigurer {
+
+        @Autowired
+        private ImageUploadReader imageUploadReader;
+
+        @Override
+        public void configureArgumentResolvers(ArgumentResolverConfigurer configurer) {
+            configurer.addCustomResolver(new ReactiveUploadBodyResolver(imageUploadReader));
+        }
+    }
+
+    /**
+     * Answers every upload with the same result, so only the web layer is measured
+     */
+    private static final class CannedMenuService extends MenuService {
+
+        private final MenuAnalysisResponse response;
+
+        CannedMenuService() {
+            super(null, null, null, null, null, null, null, null, null, null);
+            List<DishInfo> dishes = new ArrayList<>();
+            for (int i = 0; i < DISHES; i++) {
+                dishes.add(DishInfo.builder()
+                        .name("Dish " + i)
+                        .description("Slow-braised house special number " + i + " with seasonal vegetables")
+                        .price("$" + (8 + i) + ".00")
+                        .ingredients(List.of("chicken", "garlic", "soy sauce"))
+                        .allergens(List.of("soy"))
+                        .dietaryInfo(List.of("spicy"))
+                        .build());
+            }
+            response = MenuAnalysisResponse.builder()
+                    .success(true)
+                    .message("Menu analyzed successfully! Found " + DISHES + " dish(es).")
+                    .dishes(dishes)
+                    .build();
+        }
+
+        @Override
+        public Mono<MenuAnalysisResponse> analyzeMenu(MultipartFile file) {
+            return Mono.just(response);
+        }
+
+        @Override
+        public Mono<MenuAnalysisResponse> analyzeMenuPages(List<MultipartFile> pages) {
+            return Mono.just(response);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.seemenu.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.DoubleStream;
+import java.util.stream.Stream;
+
+/**
+ * Capacity test for menu uploads against a local model stub, without calling OpenAI
+ * Starts a StubModelServer configured by -Dupstream.* (latency distribution, error and 429 rates, replayed
+ * recordings, streaming rate; see {@link StubModelServer#fromSystemProperties}), launches the backend against it
+ * with /actuator/prometheus exposed, sends warm-up uploads and then the measured run at a fixed concurrency.
+ * Reports throughput, client-side p50/p95/p99, response statuses, the stub's call counts, and the backend's
+ * heap and GC activity during the measured run as its own JVM meters report them. With -Dendpoint=stream the
+ * uploads go to /upload/stream and the time to the first dish is reported as well.
+ * <p>
+ * With -Dbackend.url=http://localhost:8080 and no command, an already running backend is driven instead; start
+ * the stub for it with StubModelServer's main. -Dreport=file also writes the results as JSON.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar com.seemenu.benchmarks.UploadLoadTest java -Xmx512m -cp ... com.seemenu.SeeMenuApplication
+ * Tune with -Drequests=500 -Dconcurrency=16 -Dwarmup=50 -Dunique=500 -Dupstream.median-ms=300 -Dupstream.error-rate=0.01
+ */
+public final class UploadLoadTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Pattern DISH_COUNT = Pattern.compile("\"dishCount\":(\\d+)");
+    // Failed transfers, in the status tally
+    private static final int NO_RESPONSE = -1;
+
+    public static void main(String[] args) throws Exception {
+        String backendUrl = System.getProperty("backend.url");
+        if (args.length == 0 && backendUrl == null) {
+            System.err.println("Usage: UploadLoadTest <backend command...>  (or -Dbackend.url=<running backend>)");
+            System.exit(2);
+        }
+        int requests = Integer.getInteger("requests", 500);
+        int concurrency = Integer.getInteger("concurrency", 16);
+        int warmup = Integer.getInteger("warmup", 50);
+        // Fewer distinct images than requests makes the rest repeats, answered from the backend's caches
+        int unique = Integer.getInteger("unique", requests);
+        boolean stream = "stream".equals(System.getProperty("endpoint", "upload"));
+
+        List<byte[]> images = new ArrayList<>();
+        for (int i = 0; i < Math.min(unique, requests); i++) {
+            images.add(Menus.distinct(i));
+        }
+        List<byte[]> warmupImages = new ArrayList<>();
+        for (int i = 0; i < warmup; i++) {
+            warmupImages.add(Menus.distinct(-1 - i));
+        }
+
+        HttpClient client = HttpClient.newHttpClient();
+        try (StubModelServer model = backendUrl == null ? StubModelServer.fromSystemProperties("upstream.").start() : null;
+             BackendProcess backend = backendUrl == null ? BackendProcess.start(List.of(args), Map.of(
+                     "OPENAI_API_KEY", "load-test",
+                     "OPENAI_BASEURL", model.baseUrl(),
+                     "MANAGEMENT_ENDPOINTS_WEB_EXPOSURE_INCLUDE", "health,prometheus"), client) : null) {
+            String root = backendUrl != null ? backendUrl.replaceAll("/+$", "") : backend.rootUrl();
+            Target target = new Target(client, root + "/api/menu" + (stream ? "/upload/stream" : "/upload"), stream);
+
+            if (warmup > 0) {
+                run(target, warmupImages, warmup, concurrency);
+            }
+            JvmStats before = JvmStats.scrape(client, root);
+            HeapSampler sampler = new HeapSampler(client, root);
+            Result result;
+            try {
+                result = run(target, images, requests, concurrency);
+            } finally {
+                sampler.close();
+            }
+            JvmStats after = JvmStats.scrape(client, root);
+
+            print(result, stream, concurrency, model, before, after, sampler, requests);
+            String report = System.getProperty("report");
+            if (report != null) {
+                write(Path.of(report), result, stream, concurrency, model, before, after, sampler, requests);
+            }
+        }
+    }
+
+    private static Result run(Target target, List<byte[]> images, int requests, int concurrency) throws Exception {
+        Semaphore slots = new Semaphore(concurrency);
+        Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+        AtomicInteger failed = new AtomicInteger();
+        long[] latencies = new long[requests];
+        long[] firstDish = new long[requests];
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        long begin = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int index = i;
+            byte[] image = images.get(i % images.size());
+            slots.acquire();
+            long start = System.nanoTime();
+            pending.add(target.send(image, start)
+                    .handle((outcome, e) -> {
+                        latencies[index] = (System.nanoTime() - start) / 1_000_000;
+                        int status = e == null ? outcome.status() : NO_RESPONSE;
+                        statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+                        if (e != null || status != 200 || outcome.dishes() <= 0) {
+                            failed.incrementAndGet();
+                        }
+                        firstDish[index] = e == null ? outcome.firstDishMillis() : latencies[index];
+                        return (Void) null;
+                    })
+                    .whenComplete((ignored, e) -> slots.release()));
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).get(30, TimeUnit.MINUTES);
+        long elapsedMillis = (System.nanoTime() - begin) / 1_000_000;
+        Map<Integer, Integer> tally = new TreeMap<>();
+        statuses.forEach((status, count) -> tally.put(status, count.get()));
+        return new Result(latencies, firstDish, elapsedMillis, tally, failed.get());
+    }
+
+    private static void print(Result result, boolean stream, int concurrency, StubModelServer model,
+                              JvmStats before, JvmStats after, HeapSampler sampler, int requests) {
+        System.out.printf("%n%d uploads at concurrency %d in %.1f s: %.2f uploads/s, %d failed%n", requests,
+                concurrency, result.elapsedMillis() / 1000.0, result.throughput(), result.failed());
+        System.out.printf("latency      p50 %6d ms  p95 %6d ms  p99 %6d ms  max %6d ms%n",
+                Result.percentile(result.latencies(), 0.5), Result.percentile(result.latencies(), 0.95),
+                Result.percentile(result.latencies(), 0.99), result.latencies()[result.latencies().length - 1]);
+        if (stream) {
+            System.out.printf("first dish   p50 %6d ms  p95 %6d ms  p99 %6d ms%n",
+                    Result.percentile(result.firstDish(), 0.5), Result.percentile(result.firstDish(), 0.95),
+                    Result.percentile(result.firstDish(), 0.99));
+        }
+        StringBuilder statuses = new StringBuilder("statuses    ");
+        result.statuses().forEach((status, count) ->
+                statuses.append(' ').append(status == NO_RESPONSE ? "no response" : status).append(": ").append(count));
+        System.out.println(statuses);
+        if (model != null) {
+            System.out.printf("model stub   %d completions (%d streamed), %d answered 429, %d answered 500, "
+                            + "peak %d in flight%n", model.requests(), model.streamed(), model.rateLimited(),
+                    model.errors(), model.peakInFlight());
+        }
+        if (before == null || after == null) {
+            System.out.println("backend JVM  not reported: /actuator/prometheus is not exposed");
+            return;
+        }
+        double allocated = after.allocatedBytes() - before.allocatedBytes();
+        double pauses = after.gcPauses() - before.gcPauses();
+        System.out.printf("backend heap peak %.0f MB of %.0f MB max (sampled every %d ms), %.1f MB allocated per upload%n",
+                sampler.peak() / 1e6, after.heapMax() / 1e6, HeapSampler.PERIOD_MILLIS, allocated / requests / 1e6);
+        System.out.printf("backend GC   %.0f pauses, %.0f ms in total (%.2f%% of the run), longest recent %.0f ms%n",
+                pauses, (after.gcPauseSeconds() - before.gcPauseSeconds()) * 1000,
+                (after.gcPauseSeconds() - before.gcPauseSeconds()) * 100_000 / result.elapsedMillis(),
+                after.gcPauseMaxSeconds() * 1000);
+    }
+
+    private static void write(Path file, Result result, boolean stream, int concurrency, StubModelServer model,
+                              JvmStats before, JvmStats after, HeapSampler sampler, int requests) throws IOException {
+        ObjectNode report = objectMapper.createObjectNode();
+        report.put("endpoint", stream ? "upload/stream" : "upload");
+        report.put("requests", requests);
+        report.put("concurrency", concurrency);
+        report.put("elapsedMillis", result.elapsedMillis());
+        report.put("throughput", result.throughput());
+        report.put("failed", result.failed());
+        ObjectNode latency = report.putObject("latencyMillis");
+        latency.put("p50", Result.percentile(result.latencies(), 0.5));
+        latency.put("p95", Result.percentile(result.latencies(), 0.95));
+        latency.put("p99", Result.percentile(result.latencies(), 0.99));
+        latency.put("max", result.latencies()[result.latencies().length - 1]);
+        if (stream) {
+            ObjectNode firstDish = report.putObject("firstDishMillis");
+            firstDish.put("p50", Result.percentile(result.firstDish(), 0.5));
+            firstDish.put("p95", Result.percentile(result.firstDish(), 0.95));
+            firstDish.put("p99", Result.percentile(result.firstDish(), 0.99));
+        }
+        ObjectNode statuses = report.putObject("statuses");
+        result.statuses().forEach((status, count) -> statuses.put(String.valueOf(status), count));
+        if (model != null) {
+            report.putObject("upstream")
+                    .put("completions", model.requests())
+                    .put("streamed", model.streamed())
+                    .put("rateLimited", model.rateLimited())
+                    .put("errors", model.errors())
+                    .put("peakInFlight", model.peakInFlight());
+        }
+        if (before != null && after != null) {
+            report.putObject("jvm")
+                    .put("heapPeakBytes", sampler.peak())
+                    .put("heapMaxBytes", (long) after.heapMax())
+                    .put("allocatedBytesPerUpload", (long) (after.allocatedBytes() - before.allocatedBytes()) / requests)
+                    .put("gcPauses", (long) (after.gcPauses() - before.gcPauses()))
+                    .put("gcPauseMillis", (after.gcPauseSeconds() - before.gcPauseSeconds()) * 1000);
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+        System.out.println("Report written to " + file);
+    }
+
+    /**
+     * The endpoint under test; an upload completes with its status, dish count and time to the first dish
+     */
+    private record Target(HttpClient client, String url, boolean stream) {
+
+        // Streamed bodies are read line by line off the client's threads
+        private static final ExecutorService readers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stream-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        CompletableFuture<Outcome> send(byte[] image, long start) {
+            HttpRequest upload = HttpRequest.newBuilder(URI.create(url))
+                    .header("Content-Type", "image/jpeg")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(image))
+                    .build();
+            if (!stream) {
+                return client.sendAsync(upload, HttpResponse.BodyHandlers.ofString())
+                        .thenApply(response -> new Outcome(response.statusCode(), dishes(response.body()),
+                                (System.nanoTime() - start) / 1_000_000));
+            }
+            return client.sendAsync(upload, HttpResponse.BodyHandlers.ofLines())
+                    .thenApplyAsync(response -> read(response, start), readers);
+        }
+
+        private static Outcome read(HttpResponse<Stream<String>> response, long start) {
+            long firstDish = -1;
+            int dishes = -1;
+            try (Stream<String> lines = response.body()) {
+                for (String line : (Iterable<String>) lines::iterator) {
+                    if (firstDish < 0 && line.startsWith("event:") && line.substring(6).trim().equals("dish")) {
+                        firstDish = (System.nanoTime() - start) / 1_000_000;
+                    }
+                    Matcher count = DISH_COUNT.matcher(line);
+                    if (line.startsWith("data:") && count.find()) {
+                        dishes = Integer.parseInt(count.group(1));
+                    }
+                }
+            }
+            return new Outcome(response.statusCode(), dishes,
+                    firstDish >= 0 ? firstDish : (System.nanoTime() - start) / 1_000_000);
+        }
+
+        private static int dishes(String body) {
+            try {
+                JsonNode response = objectMapper.readTree(body);
+                return response.path("dishes").size();
+            } catch (Exception e) {
+                return -1;
+            }
+        }
+    }
+
+    private record Outcome(int status, int dishes, long firstDishMillis) {
+    }
+
+    private record Result(long[] latencies, long[] firstDish, long elapsedMillis, Map<Integer, Integer> statuses,
+                          int failed) {
+
+        private Result {
+            latencies = latencies.clone();
+            Arrays.sort(latencies);
+            firstDish = firstDish.clone();
+            Arrays.sort(firstDish);
+        }
+
+        private double throughput() {
+            return latencies.length * 1000.0 / elapsedMillis;
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+        }
+    }
+
+    /**
+     * The backend's JVM meters from /actuator/prometheus; GC counts and allocation are cumulative
+     * Allocation is jvm.gc.memory.allocated, which only grows at young collections, so it lags by up to one.
+     */
+    private record JvmStats(double heapUsed, double heapMax, double gcPauses, double gcPauseSeconds,
+                            double gcPauseMaxSeconds, double allocatedBytes) {
+
+        /**
+         * The current values, or null if the endpoint is not exposed
+         */
+        static JvmStats scrape(HttpClient client, String root) {
+            String text;
+            try {
+                HttpResponse<String> response = client.send(
+                        HttpRequest.newBuilder(URI.create(root + "/actuator/prometheus")).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    return null;
+                }
+                text = response.body();
+            } catch (IOException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            return new JvmStats(
+                    sum(text, "jvm_memory_used_bytes", "area=\"heap\""),
+                    sum(text, "jvm_memory_max_bytes", "area=\"heap\""),
+                    sum(text, "jvm_gc_pause_seconds_count", null),
+                    sum(text, "jvm_gc_pause_seconds_sum", null),
+                    max(text, "jvm_gc_pause_seconds_max"),
+                    sum(text, "jvm_gc_memory_allocated_bytes_total", null));
+        }
+
+        private static double sum(String text, String metric, String label) {
+            return values(text, metric, label).sum();
+        }
+
+        private static double max(String text, String metric) {
+            return values(text, metric, null).max().orElse(0);
+        }
+
+        /**
+         * Values of all series of the metric, optionally only those with the given label="value"
+         */
+        private static DoubleStream values(String text, String metric, String label) {
+            return text.lines()
+                    .filter(line -> line.startsWith(metric + "{") || line.startsWith(metric + " "))
+                    .filter(line -> label == null || line.contains(label))
+                    // Pools without a limit report -1 as their max
+                    .mapToDouble(line -> Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1)))
+                    .filter(value -> value >= 0);
+        }
+    }
+
+    /**
+     * Polls the backend's heap use during the measured run and keeps the highest value seen
+     */
+    private static final class HeapSampler implements AutoCloseable {
+
+        static final int PERIOD_MILLIS = 250;
+
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        private final AtomicLong peak = new AtomicLong();
+
+        HeapSampler(HttpClient client, String root) {
+            scheduler.scheduleAtFixedRate(() -> {
+                JvmStats stats = JvmStats.scrape(client, root);
+                if (stats != null) {
+                    peak.accumulateAndGet((long) stats.heapUsed(), Math::max);
+                }
+            }, 0, PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        long peak() {
+            return peak.get();
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private UploadLoadTest() {
+    }
+}
@@ -0,0 +1,149 @@
+package com.seemenu;
+
+import com.amazonaws.serverless.proxy.internal.servlet.AwsHttpServletResponse;
+import com.amazonaws.serverless.proxy.internal.servlet.AwsProxyHttpServletResponseWriter;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seemenu.metrics.EmfMeterRegistry;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.cloud.function.serverless.web.ServerlessHttpServletRequest;
+import org.springframework.cloud.function.serverless.web.ServerlessMVC;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Event loop for the Lambda custom runtime (provided.al2023), started by SeeMenuApplication.main in the native image
+ * Builds the servlet context with the lambda profile, polls the Lambda Runtime API and serves each API Gateway
+ * proxy event through ServerlessMVC, the same in-process dispatch StreamLambdaHandler uses on the Java runtime.
+ * The container handler itself cannot be used here: it requires a context type that AOT-generated code does not create.
+ */
+public final class LambdaRuntimeBootstrap {
+
+    private static final String RUNTIME_API_VERSION = "2018-06-01";
+    private static final String BASE_PATH = "/prod";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AwsProxyHttpServletResponseWriter responseWriter = new AwsProxyHttpServletResponseWriter();
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final String runtimeUrl;
+
+    private LambdaRuntimeBootstrap(String runtimeApi) {
+        this.runtimeUrl = "http://" + runtimeApi + "/" + RUNTIME_API_VERSION + "/runtime";
+    }
+
+    static void run(String runtimeApi, String[] args) throws IOException, InterruptedException {
+        // The container library starts its own Runtime API loop when _HANDLER names a class it cannot load;
+        // that loop ignores isBase64Encoded, so point it at the handler class and keep this loop the only poller
+        System.setProperty("_HANDLER", StreamLambdaHandler.class.getName());
+        new LambdaRuntimeBootstrap(runtimeApi).loop(args);
+    }
+
+    private void loop(String[] args) throws IOException, InterruptedException {
+        ServerlessMVC mvc;
+        try {
+            SpringApplication application = new SpringApplication(SeeMenuApplication.class);
+            application.setWebApplicationType(WebApplicationType.SERVLET);
+            application.setAdditionalProfiles("lambda");
+            mvc = ServerlessMVC.INSTANCE((ServletWebServerApplicationContext) application.run(args));
+        } catch (RuntimeException e) {
+            post("/init/error", error(e));
+            throw e;
+        }
+
+        while (true) {
+            HttpResponse<byte[]> event = client.send(
+                    HttpRequest.newBuilder(URI.create(runtimeUrl + "/invocation/next")).GET().build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+
+            String requestId = event.headers().firstValue("Lambda-Runtime-Aws-Request-Id").orElseThrow();
+            event.headers().firstValue("Lambda-Runtime-Trace-Id")
+                    .ifPresent(traceId -> System.setProperty("com.amazonaws.xray.traceHeader", traceId));
+            long deadline = event.headers().firstValue("Lambda-Runtime-Deadline-Ms")
+                    .map(Long::parseLong)
+                    .orElse(Long.MAX_VALUE);
+
+            try {
+                AwsProxyRequest proxyRequest = objectMapper.readValue(event.body(), AwsProxyRequest.class);
+                AwsProxyResponse response = handle(toServletRequest(proxyRequest, mvc), mvc, deadline);
+                post("/invocation/" + requestId + "/response", objectMapper.writeValueAsBytes(response));
+            } catch (Exception e) {
+                post("/invocation/" + requestId + "/error", error(e));
+            } finally {
+                // After the response, so it is not delayed; before the next poll, which may freeze the sandbox
+                EmfMeterRegistry.endInvocation();
+            }
+        }
+    }
+
+    /**
+     * Dispatches one request; async (Mono/Flux) handlers complete the response latch from another thread
+     */
+    private AwsProxyResponse handle(ServerlessHttpServletRequest request, ServerlessMVC mvc, long deadline)
+            throws Exception {
+        CountDownLatch completed = new CountDownLatch(1);
+        AwsHttpServletResponse response = new AwsHttpServletResponse(request, completed);
+        mvc.service(request, response);
+        if (!completed.await(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException("Request did not complete before the invocation deadline");
+        }
+        return responseWriter.writeResponse(response, null);
+    }
+
+    /**
+     * Maps an API Gateway proxy event onto a servlet request, with the stage prefix stripped as StreamLambdaHandler does
+     */
+    private ServerlessHttpServletRequest toServletRequest(AwsProxyRequest proxyRequest, ServerlessMVC mvc) {
+        String path = proxyRequest.getPath();
+        if (path.startsWith(BASE_PATH + "/")) {
+            path = path.substring(BASE_PATH.length());
+        }
+
+        ServerlessHttpServletRequest request =
+                new ServerlessHttpServletRequest(mvc.getServletContext(), proxyRequest.getHttpMethod(), path);
+        if (proxyRequest.getMultiValueHeaders() != null) {
+            proxyRequest.getMultiValueHeaders().forEach((name, values) ->
+                    values.forEach(value -> request.addHeader(name, value)));
+            request.setContentType(proxyRequest.getMultiValueHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        }
+        if (proxyRequest.getMultiValueQueryStringParameters() != null) {
+            proxyRequest.getMultiValueQueryStringParameters().forEach((name, values) ->
+                    values.forEach(value -> request.addParameter(name, value)));
+        }
+
+        String body = proxyRequest.getBody();
+        if (body != null) {
+            request.setContent(proxyRequest.isBase64Encoded()
+                    ? Base64.getMimeDecoder().decode(body)
+                    : body.getBytes(StandardCharsets.UTF_8));
+        }
+        return request;
+    }
+
+    private void post(String path, byte[] body) throws IOException, InterruptedException {
+        client.send(HttpRequest.newBuilder(URI.create(runtimeUrl + path))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+    }
+
+    private byte[] error(Throwable e) throws IOException {
+        e.printStackTrace();
+        return objectMapper.writeValueAsBytes(Map.of(
+                "errorMessage", String.valueOf(e.getMessage()),
+                "errorType", e.getClass().getName()));
+    }
+}
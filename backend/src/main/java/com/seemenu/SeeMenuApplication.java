@@ -1,12 +1,29 @@
 package com.seemenu;
 
+import com.seemenu.config.NativeHints;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(NativeHints.class)
 public class SeeMenuApplication {
 
-    public static void main(String[] args) {
-        SpringApplication.run(SeeMenuApplication.class, args);
+    public static void main(String[] args) throws Exception {
+        // Native image on the Lambda custom runtime: serve events from the Runtime API instead of a web server.
+        // Starting from here keeps SeeMenuApplication as the main class Spring AOT generated code for.
+        String runtimeApi = System.getenv("AWS_LAMBDA_RUNTIME_API");
+        if (runtimeApi != null && !runtimeApi.isEmpty()) {
+            LambdaRuntimeBootstrap.run(runtimeApi, args);
+            return;
+        }
+
+        SpringApplication application = new SpringApplication(SeeMenuApplication.class);
+        // Outside Lambda, serve from WebFlux/Netty so in-flight analyses do not pin request threads.
+        // StreamLambdaHandler never calls main() and keeps the servlet stack the Lambda container needs.
+        // Override with spring.main.web-application-type=servlet if needed.
+        application.setWebApplicationType(WebApplicationType.REACTIVE);
+        application.run(args);
     }
 }
@@ -0,0 +1,87 @@
+package com.seemenu;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seemenu.cache.PerceptualHasher;
+import com.seemenu.config.OpenAiApiKey;
+import com.seemenu.dto.MenuAnalysisResponse;
+import com.seemenu.image.ImagePreprocessor;
+import com.seemenu.model.DishInfo;
+import com.seemenu.openai.UpstreamConnectionPool;
+import com.seemenu.service.MenuAnalyzer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * SnapStart/CRaC hooks
+ * Before the checkpoint, exercises the per-request code paths so the snapshot holds loaded, initialized classes;
+ * after restore, resolves the API key so it is never part of the snapshot, and reopens model connections.
+ * On JVMs without CRaC the hooks are never called and this bean does nothing.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SnapStartPrimer implements Resource {
+
+    private final MenuAnalyzer menuAnalyzer;
+    private final ImagePreprocessor imagePreprocessor;
+    private final PerceptualHasher perceptualHasher;
+    private final OpenAiApiKey openAiApiKey;
+    private final ObjectMapper objectMapper;
+    private final UpstreamConnectionPool connectionPool;
+
+    @PostConstruct
+    void register() {
+        // The global context holds resources weakly; the Spring singleton keeps this one reachable
+        Core.getGlobalContext().register(this);
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) throws Exception {
+        long start = System.nanoTime();
+
+        menuAnalyzer.warmUp();
+        imagePreprocessor.warmUp();
+        perceptualHasher.hash(new BufferedImage(72, 64, BufferedImage.TYPE_INT_RGB));
+
+        // Response serialization uses Spring's mapper, not the analyzer's
+        MenuAnalysisResponse response = MenuAnalysisResponse.builder()
+                .success(true)
+                .message("warm-up")
+                .dishes(List.of(DishInfo.builder()
+                        .name("warm-up")
+                        .price("$0")
+                        .allergens(List.of("nuts"))
+                        .build()))
+                .build();
+        objectMapper.readValue(objectMapper.writeValueAsBytes(response), MenuAnalysisResponse.class);
+
+        // TLS provider and Reactor Netty client classes; connections opened at startup would be stale after restore
+        connectionPool.warmUp();
+        connectionPool.closeAll();
+
+        openAiApiKey.warmUp();
+        openAiApiKey.clear();
+
+        log.info("Primed request path for checkpoint in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        try {
+            openAiApiKey.get();
+        } catch (RuntimeException e) {
+            // Not fatal here; the first model call resolves it again and reports the failure
+            log.warn("Could not resolve OpenAI API key after restore: {}", e.getMessage());
+        }
+        // In the background: the first request opens its own connection if it gets there first
+        connectionPool.prewarm().subscribe();
+    }
+}
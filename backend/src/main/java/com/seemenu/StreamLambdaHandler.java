@@ -1,11 +1,14 @@
 package com.seemenu;
 
 import com.amazonaws.serverless.exceptions.ContainerInitializationException;
+import com.amazonaws.serverless.proxy.InitializationWrapper;
 import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
 import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
 import com.amazonaws.serverless.proxy.spring.SpringBootLambdaContainerHandler;
+import com.amazonaws.serverless.proxy.spring.SpringBootProxyHandlerBuilder;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.seemenu.metrics.EmfMeterRegistry;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -14,22 +17,26 @@ import java.io.OutputStream;
 /**
  * Lambda handler for Spring Boot application
  * Uses AWS Serverless Java Container to run Spring Boot in Lambda
+ * The context is built once in the static initializer, which SnapStart captures in its snapshot.
  */
 public class StreamLambdaHandler implements RequestStreamHandler {
     private static SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler;
 
     static {
         try {
-            // Initialize Spring Boot application
-            handler = SpringBootLambdaContainerHandler.getAwsProxyHandler(SeeMenuApplication.class);
+            // Activate the lambda profile before the context starts; activating it afterwards
+            // forces a second full initialization on the first request
+            handler = new SpringBootProxyHandlerBuilder<AwsProxyRequest>()
+                    .defaultProxy()
+                    .initializationWrapper(new InitializationWrapper())
+                    .servletApplication()
+                    .springBootApplication(SeeMenuApplication.class)
+                    .profiles("lambda")
+                    .buildAndInitialize();
 
             // Strip the API Gateway stage from the path
             handler.stripBasePath("/prod");
 
-            // Enable binary content support for multipart uploads
-            // This is critical for API Gateway to properly handle file uploads
-            handler.activateSpringProfiles("lambda");
-
         } catch (ContainerInitializationException e) {
             // If we fail to initialize, rethrow as runtime
             e.printStackTrace();
@@ -40,6 +47,11 @@ public class StreamLambdaHandler implements RequestStreamHandler {
     @Override
     public void handleRequest(InputStream inputStream, OutputStream outputStream, Context context)
             throws IOException {
-        handler.proxyStream(inputStream, outputStream, context);
+        try {
+            handler.proxyStream(inputStream, outputStream, context);
+        } finally {
+            // The sandbox may be frozen as soon as this returns
+            EmfMeterRegistry.endInvocation();
+        }
     }
 }
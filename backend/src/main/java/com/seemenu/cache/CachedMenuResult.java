@@ -0,0 +1,16 @@
+package com.seemenu.cache;
+
+import com.seemenu.model.DishInfo;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedMenuResult {
+    private List<DishInfo> dishes;
+    private long createdAt; // epoch millis, used for TTL checks
+}
@@ -0,0 +1,120 @@
+package com.seemenu.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk store, one JSON file per entry
+ * Lambda keeps /tmp between warm invocations, so results survive across requests
+ */
+@Slf4j
+public class DiskMenuResultStore implements MenuResultStore {
+
+    private static final String SUFFIX = ".json";
+
+    private final Path directory;
+    private final int maxEntries;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public DiskMenuResultStore(Path directory, int maxEntries) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create cache directory " + directory, e);
+        }
+    }
+
+    @Override
+    public Optional<CachedMenuResult> get(String key) {
+        Path file = fileFor(key);
+        try {
+            CachedMenuResult result = objectMapper.readValue(file.toFile(), CachedMenuResult.class);
+            // Touch the file so eviction is least-recently-used rather than oldest-written
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(result);
+        } catch (NoSuchFileException | FileNotFoundException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Discarding unreadable cache entry {}: {}", file, e.getMessage());
+            remove(key);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void put(String key, CachedMenuResult result) {
+        try {
+            // Write to a temp file and move so concurrent readers never see a partial entry
+            Path tmp = Files.createTempFile(directory, key, ".tmp");
+            objectMapper.writeValue(tmp.toFile(), result);
+            Files.move(tmp, fileFor(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evictOverflow();
+        } catch (IOException e) {
+            log.warn("Could not write cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        try {
+            Files.deleteIfExists(fileFor(key));
+        } catch (IOException e) {
+            log.warn("Could not delete cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    @Override
+    public int size() {
+        return listEntries().size();
+    }
+
+    private void evictOverflow() throws IOException {
+        List<Path> files = listEntries();
+        if (files.size() <= maxEntries) {
+            return;
+        }
+        files.sort(Comparator.comparingLong(this::lastModified));
+        for (Path file : files.subList(0, files.size() - maxEntries)) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private List<Path> listEntries() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(SUFFIX))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.warn("Could not list cache directory {}: {}", directory, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+}
@@ -0,0 +1,43 @@
+package com.seemenu.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-process LRU store, the default backing store for the result cache
+ */
+public class InMemoryMenuResultStore implements MenuResultStore {
+
+    private final Map<String, CachedMenuResult> entries;
+
+    public InMemoryMenuResultStore(int maxEntries) {
+        // Access-ordered map evicts the least recently used entry once full
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedMenuResult> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Optional<CachedMenuResult> get(String key) {
+        return Optional.ofNullable(entries.get(key));
+    }
+
+    @Override
+    public synchronized void put(String key, CachedMenuResult result) {
+        entries.put(key, result);
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,133 @@
+package com.seemenu.cache;
+
+import com.seemenu.model.DishInfo;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache of menu analyses
+ * Keys are SHA-256 hashes of the uploaded bytes, so identical uploads skip the AI call
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MenuResultCache implements MeterBinder {
+
+    private final MenuResultStore menuResultStore;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Value("${menu.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${menu.cache.ttl:24h}")
+    private Duration ttl;
+
+    /**
+     * Key for the content from the buffer's position on; hashed in place, so a memory-mapped upload is not copied
+     */
+    public String keyFor(ByteBuffer image) {
+        MessageDigest digest = sha256();
+        digest.update(image.duplicate());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Key for a multi-page upload; page order matters
+     */
+    public String keyFor(List<ByteBuffer> pages) {
+        MessageDigest digest = sha256();
+        for (ByteBuffer page : pages) {
+            // Length prefix keeps different page splits of the same bytes apart
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(page.remaining()).array());
+            digest.update(page.duplicate());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public Optional<List<DishInfo>> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Optional<CachedMenuResult> entry = menuResultStore.get(key);
+        if (entry.isPresent() && isExpired(entry.get())) {
+            menuResultStore.remove(key);
+            entry = Optional.empty();
+        }
+
+        if (entry.isEmpty()) {
+            misses.incrementAndGet();
+            log.debug("Cache miss for {}", key);
+            return Optional.empty();
+        }
+
+        hits.incrementAndGet();
+        log.info("Cache hit for {} (hits={}, misses={})", key, hits.get(), misses.get());
+        return Optional.of(entry.get().getDishes());
+    }
+
+    public void put(String key, List<DishInfo> dishes) {
+        if (!enabled || dishes.isEmpty()) {
+            // Failed analyses are not cached so the next upload gets a fresh attempt
+            return;
+        }
+        menuResultStore.put(key, new CachedMenuResult(dishes, System.currentTimeMillis()));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return menuResultStore.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("seemenu.cache.lookups", hits, AtomicLong::get)
+                .description("Result cache lookups by outcome")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("seemenu.cache.lookups", misses, AtomicLong::get)
+                .description("Result cache lookups by outcome")
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("seemenu.cache.entries", this, MenuResultCache::size)
+                .description("Cached menu analyses")
+                .register(registry);
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to ship SHA-256
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private boolean isExpired(CachedMenuResult entry) {
+        return System.currentTimeMillis() - entry.getCreatedAt() > ttl.toMillis();
+    }
+}
@@ -0,0 +1,18 @@
+package com.seemenu.cache;
+
+import java.util.Optional;
+
+/**
+ * Backing store for cached menu analyses
+ * Implementations are responsible for enforcing their own size bound
+ */
+public interface MenuResultStore {
+
+    Optional<CachedMenuResult> get(String key);
+
+    void put(String key, CachedMenuResult result);
+
+    void remove(String key);
+
+    int size();
+}
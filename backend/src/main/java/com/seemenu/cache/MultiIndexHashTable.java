@@ -0,0 +1,126 @@
+package com.seemenu.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Hamming-distance index over 64-bit perceptual hashes using multi-index hashing
+ * Each hash is split into four 16-bit chunks, each indexed in its own table. By the pigeonhole
+ * principle, two hashes within distance r share at least one chunk within r / 4 bits, so a query
+ * only probes the handful of buckets near its own chunks instead of scanning every entry.
+ * Not thread-safe; callers synchronize access
+ */
+public class MultiIndexHashTable<V> {
+
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    @SuppressWarnings("unchecked")
+    private final Map<Integer, List<Entry<V>>>[] tables = new Map[CHUNKS];
+    private final Map<Long, Entry<V>> entries = new HashMap<>();
+
+    public MultiIndexHashTable() {
+        for (int i = 0; i < CHUNKS; i++) {
+            tables[i] = new HashMap<>();
+        }
+    }
+
+    public void add(long hash, V value) {
+        Entry<V> existing = entries.get(hash);
+        if (existing != null) {
+            // Same hash, keep the most recent value
+            existing.value = value;
+            return;
+        }
+
+        Entry<V> entry = new Entry<>(hash, value);
+        entries.put(hash, entry);
+        for (int i = 0; i < CHUNKS; i++) {
+            tables[i].computeIfAbsent(chunk(hash, i), k -> new ArrayList<>(2)).add(entry);
+        }
+    }
+
+    /**
+     * Finds the closest entry within maxDistance of the given hash
+     */
+    public Optional<Match<V>> findNearest(long hash, int maxDistance) {
+        Entry<V> exact = entries.get(hash);
+        if (exact != null) {
+            return Optional.of(new Match<>(exact.value, 0));
+        }
+
+        int[] flipMasks = flipMasks(maxDistance / CHUNKS);
+        Entry<V> best = null;
+        int bestDistance = maxDistance + 1;
+
+        for (int i = 0; i < CHUNKS; i++) {
+            int queryChunk = chunk(hash, i);
+            for (int mask : flipMasks) {
+                List<Entry<V>> bucket = tables[i].get(queryChunk ^ mask);
+                if (bucket == null) {
+                    continue;
+                }
+                for (Entry<V> candidate : bucket) {
+                    int distance = PerceptualHasher.distance(hash, candidate.hash);
+                    if (distance < bestDistance) {
+                        best = candidate;
+                        bestDistance = distance;
+                    }
+                }
+            }
+        }
+
+        return best == null ? Optional.empty() : Optional.of(new Match<>(best.value, bestDistance));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        for (Map<Integer, List<Entry<V>>> table : tables) {
+            table.clear();
+        }
+    }
+
+    private static int chunk(long hash, int index) {
+        return (int) (hash >>> (index * CHUNK_BITS)) & CHUNK_MASK;
+    }
+
+    /**
+     * All 16-bit masks with at most maxBits bits set, i.e. every chunk within maxBits of a query chunk
+     */
+    private static int[] flipMasks(int maxBits) {
+        List<Integer> masks = new ArrayList<>();
+        collectMasks(0, 0, maxBits, masks);
+        return masks.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void collectMasks(int mask, int fromBit, int bitsLeft, List<Integer> masks) {
+        masks.add(mask);
+        if (bitsLeft == 0) {
+            return;
+        }
+        for (int bit = fromBit; bit < CHUNK_BITS; bit++) {
+            collectMasks(mask | (1 << bit), bit + 1, bitsLeft - 1, masks);
+        }
+    }
+
+    public record Match<V>(V value, int distance) {
+    }
+
+    private static final class Entry<V> {
+        private final long hash;
+        private V value;
+
+        private Entry(long hash, V value) {
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+}
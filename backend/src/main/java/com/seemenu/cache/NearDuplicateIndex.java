@@ -0,0 +1,84 @@
+package com.seemenu.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maps perceptual hashes of analyzed menus to their result cache keys
+ * Lets a re-photographed menu reuse the analysis of a visually similar earlier upload
+ */
+@Component
+@Slf4j
+public class NearDuplicateIndex implements MeterBinder {
+
+    private final MultiIndexHashTable<String> index = new MultiIndexHashTable<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong matches = new AtomicLong();
+
+    @Value("${menu.cache.phash.enabled:true}")
+    private boolean enabled;
+
+    @Value("${menu.cache.phash.max-distance:6}")
+    private int maxDistance;
+
+    @Value("${menu.cache.phash.max-entries:100000}")
+    private int maxEntries;
+
+    public Optional<String> findSimilar(long perceptualHash) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Optional<MultiIndexHashTable.Match<String>> match;
+        lock.readLock().lock();
+        try {
+            match = index.findNearest(perceptualHash, maxDistance);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        match.ifPresent(m -> {
+            matches.incrementAndGet();
+            log.info("Found near-duplicate menu {} at distance {}", m.value(), m.distance());
+        });
+        return match.map(MultiIndexHashTable.Match::value);
+    }
+
+    public void add(long perceptualHash, String cacheKey) {
+        if (!enabled) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (index.size() >= maxEntries) {
+                // Entries are never removed individually; start over rather than grow without bound
+                log.info("Near-duplicate index reached {} entries, clearing", index.size());
+                index.clear();
+            }
+            index.add(perceptualHash, cacheKey);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long getMatches() {
+        return matches.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("seemenu.cache.near_duplicate.matches", this, NearDuplicateIndex::getMatches)
+                .description("Uploads served from the analysis of a perceptually similar menu")
+                .register(registry);
+    }
+}
@@ -0,0 +1,62 @@
+package com.seemenu.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * 64-bit difference hash (dHash) of a menu photo
+ * Re-photographed or re-compressed copies of the same menu land within a few bits of each other
+ */
+@Component
+public class PerceptualHasher {
+
+    private static final int HASH_WIDTH = 9;  // 9 columns give 8 horizontal differences per row
+    private static final int HASH_HEIGHT = 8;
+    private static final int OVERSAMPLE = 8;  // intermediate scale that is box-averaged down to 9x8
+
+    public long hash(BufferedImage image) {
+        double[] luminance = downscaleToGray(image);
+
+        long hash = 0L;
+        for (int y = 0; y < HASH_HEIGHT; y++) {
+            for (int x = 0; x < HASH_WIDTH - 1; x++) {
+                hash <<= 1;
+                if (luminance[y * HASH_WIDTH + x] > luminance[y * HASH_WIDTH + x + 1]) {
+                    hash |= 1L;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private double[] downscaleToGray(BufferedImage image) {
+        int width = HASH_WIDTH * OVERSAMPLE;
+        int height = HASH_HEIGHT * OVERSAMPLE;
+
+        BufferedImage small = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = small.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        // Box-average each OVERSAMPLE x OVERSAMPLE block to smooth out JPEG noise
+        int[] pixels = small.getRaster().getPixels(0, 0, width, height, (int[]) null);
+        double[] cells = new double[HASH_WIDTH * HASH_HEIGHT];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                cells[(y / OVERSAMPLE) * HASH_WIDTH + x / OVERSAMPLE] += pixels[y * width + x];
+            }
+        }
+        return cells;
+    }
+}
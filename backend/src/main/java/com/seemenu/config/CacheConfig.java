@@ -0,0 +1,39 @@
+package com.seemenu.config;
+
+import com.seemenu.cache.DiskMenuResultStore;
+import com.seemenu.cache.InMemoryMenuResultStore;
+import com.seemenu.cache.MenuResultStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Result cache configuration
+ * "memory" keeps entries in-process; "disk" writes them under /tmp so they survive warm Lambda invocations
+ */
+@Configuration
+@Slf4j
+public class CacheConfig {
+
+    @Value("${menu.cache.store:memory}")
+    private String store;
+
+    @Value("${menu.cache.max-entries:500}")
+    private int maxEntries;
+
+    @Value("${menu.cache.directory:/tmp/seemenu-cache}")
+    private String directory;
+
+    @Bean
+    public MenuResultStore menuResultStore() {
+        if ("disk".equalsIgnoreCase(store)) {
+            log.info("Using on-disk menu result cache at {} (max {} entries)", directory, maxEntries);
+            return new DiskMenuResultStore(Path.of(directory), maxEntries);
+        }
+        log.info("Using in-memory menu result cache (max {} entries)", maxEntries);
+        return new InMemoryMenuResultStore(maxEntries);
+    }
+}
@@ -0,0 +1,38 @@
+package com.seemenu.config;
+
+import com.seemenu.jobs.DiskMenuJobQueue;
+import com.seemenu.jobs.InMemoryMenuJobQueue;
+import com.seemenu.jobs.MenuJobQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Job API configuration
+ * "memory" keeps jobs in-process; "disk" writes them to a local directory so queued jobs survive a restart
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(value = "menu.jobs.enabled", havingValue = "true", matchIfMissing = true)
+public class JobConfig {
+
+    @Value("${menu.jobs.store:memory}")
+    private String store;
+
+    @Value("${menu.jobs.directory:/tmp/seemenu-jobs}")
+    private String directory;
+
+    @Bean
+    public MenuJobQueue menuJobQueue() {
+        if ("disk".equalsIgnoreCase(store)) {
+            log.info("Using on-disk menu job queue at {}", directory);
+            return new DiskMenuJobQueue(Path.of(directory));
+        }
+        log.info("Using in-memory menu job queue");
+        return new InMemoryMenuJobQueue();
+    }
+}
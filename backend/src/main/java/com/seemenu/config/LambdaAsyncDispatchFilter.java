@@ -0,0 +1,49 @@
+package com.seemenu.config;
+
+import com.amazonaws.serverless.proxy.internal.servlet.AwsAsyncContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lets Mono/Flux controller results complete inside the Lambda container
+ * The container only re-dispatches an async request if its result is ready when the first pass returns,
+ * so the invoke thread waits here until Spring dispatches the result or completes a streamed response.
+ * Outside Lambda the async context is not the container's and this filter does nothing.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class LambdaAsyncDispatchFilter extends OncePerRequestFilter {
+
+    private static final long POLL_INTERVAL_NANOS = 1_000_000;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        chain.doFilter(request, response);
+
+        if (!request.isAsyncStarted() || !(request.getAsyncContext() instanceof AwsAsyncContext asyncContext)) {
+            return;
+        }
+
+        // The container's dispatch() only raises a flag (listeners fire on its own re-dispatch), so watch the flag.
+        // A millisecond of polling is noise next to a model call; Lambda's timeout bounds the wait.
+        while (!asyncContext.isDispatchStarted() && !asyncContext.isCompleted()) {
+            LockSupport.parkNanos(POLL_INTERVAL_NANOS);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
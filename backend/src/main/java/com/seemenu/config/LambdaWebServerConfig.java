@@ -0,0 +1,24 @@
+package com.seemenu.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.web.servlet.server.ServletWebServerFactory;
+import org.springframework.cloud.function.serverless.web.ServerlessAutoConfiguration.ServerlessServletWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Serves the servlet stack in-process when the context is not built by the container handler
+ * StreamLambdaHandler registers its own factory; the native custom runtime and Spring AOT processing start from
+ * SeeMenuApplication, where Tomcat would otherwise be picked. Requests then go through ServerlessMVC.
+ */
+@Configuration
+@Profile("lambda")
+public class LambdaWebServerConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(ServletWebServerFactory.class)
+    public ServerlessServletWebServerFactory serverlessServletWebServerFactory() {
+        return new ServerlessServletWebServerFactory();
+    }
+}
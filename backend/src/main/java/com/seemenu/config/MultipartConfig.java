@@ -1,6 +1,8 @@
 package com.seemenu.config;
 
 import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.web.servlet.MultipartConfigFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,10 +13,16 @@ import org.springframework.web.multipart.support.StandardServletMultipartResolve
 /**
  * Multipart configuration for Lambda environment
  * Forces Spring to enable multipart parsing in aws-serverless-java-container
+ * Only applies to the servlet stack; the reactive stack has no MultipartResolver
  */
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class MultipartConfig {
 
+    // The same limit binary uploads get from ImageUploadReader
+    @Value("${menu.upload.max-size:10MB}")
+    private DataSize maxUploadSize;
+
     /**
      * Configure multipart file upload settings
      * Important: Lambda requires temp files to be under /tmp
@@ -22,8 +30,8 @@ public class MultipartConfig {
     @Bean
     public MultipartConfigElement multipartConfigElement() {
         MultipartConfigFactory factory = new MultipartConfigFactory();
-        factory.setMaxFileSize(DataSize.ofMegabytes(10));
-        factory.setMaxRequestSize(DataSize.ofMegabytes(10));
+        factory.setMaxFileSize(maxUploadSize);
+        factory.setMaxRequestSize(maxUploadSize);
         // Lambda requires temp files under /tmp (writable location)
         factory.setLocation("/tmp");
         return factory.createMultipartConfig();
@@ -0,0 +1,58 @@
+package com.seemenu.config;
+
+import com.amazonaws.serverless.proxy.model.AlbContext;
+import com.amazonaws.serverless.proxy.model.ApiGatewayAuthorizerContext;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.CognitoAuthorizerClaims;
+import com.amazonaws.serverless.proxy.model.ErrorModel;
+import com.seemenu.StreamLambdaHandler;
+import com.seemenu.cache.CachedMenuResult;
+import com.seemenu.dto.CompactMenuResponse;
+import com.seemenu.dto.MenuAnalysisResponse;
+import com.seemenu.model.DishInfo;
+import com.seemenu.openai.AdaptiveConcurrencyLimiter;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection hints for the GraalVM native image (mvn -Pnative native:compile)
+ * Spring AOT only infers hints for plain controller signatures; types reached through Mono/Flux,
+ * the SSE stream, the disk cache or the Lambda container are registered here.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Jackson binding: getters/setters and the no-args constructors Lombok generates
+        bindingHints.registerReflectionHints(hints.reflection(),
+                DishInfo.class, MenuAnalysisResponse.class, CachedMenuResult.class);
+        // Written in place of MenuAnalysisResponse for CBOR and Smile, so no handler signature mentions it
+        bindingHints.registerReflectionHints(hints.reflection(), CompactMenuResponse.class);
+
+        // Lombok builders are only called directly today; keep them usable for @JsonDeserialize(builder = ...)
+        hints.reflection()
+                .registerType(DishInfo.DishInfoBuilder.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(MenuAnalysisResponse.MenuAnalysisResponseBuilder.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        // API Gateway proxy events and responses, read and written by LambdaRuntimeBootstrap
+        bindingHints.registerReflectionHints(hints.reflection(),
+                AwsProxyRequest.class, AwsProxyResponse.class,
+                ApiGatewayAuthorizerContext.class, CognitoAuthorizerClaims.class, AlbContext.class, ErrorModel.class);
+
+        // The library checks whether _HANDLER can be loaded to decide if it should start its own event loop
+        hints.reflection().registerType(StreamLambdaHandler.class);
+
+        // Per-backend limiters are created with explicit constructor args, which bypasses the AOT instance supplier;
+        // menu.analyzer.backends[n] is bound to a record through its constructor
+        hints.reflection()
+                .registerType(AdaptiveConcurrencyLimiter.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS)
+                .registerType(OpenAIConfig.Backend.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+    }
+}
@@ -1,29 +1,190 @@
 package com.seemenu.config;
 
+import com.seemenu.knowledge.DishKnowledgeIndex;
+import com.seemenu.metrics.PipelineMetrics;
+import com.seemenu.openai.AdaptiveConcurrencyLimiter;
+import com.seemenu.openai.ChatCompletionRequestWriter;
+import com.seemenu.openai.UpstreamConnectionPool;
+import com.seemenu.service.AIMenuAnalyzer;
+import com.seemenu.service.BatchingMenuAnalyzer;
+import com.seemenu.service.CompletionPlanner;
+import com.seemenu.service.DishMerger;
+import com.seemenu.service.MenuAnalyzer;
+import com.seemenu.service.MenuAnalyzerRouter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 @RequiredArgsConstructor
 @Slf4j
 public class OpenAIConfig {
 
-    private final String openaiApiKey;
+    private final OpenAiApiKey openAiApiKey;
+    private final Environment environment;
+    private final UpstreamConnectionPool connectionPool;
+    private final PipelineMetrics metrics;
+    private final DishKnowledgeIndex dishKnowledgeIndex;
+    private final CompletionPlanner completionPlanner;
+    private final DishMerger dishMerger;
+
+    @Value("${openai.base-url:https://api.openai.com/v1}")
+    private String baseUrl;
+
+    @Value("${openai.model:gpt-4o}")
+    private String model;
+
+    @Value("${openai.http.max-in-memory-size:16MB}")
+    private DataSize maxInMemorySize;
+
+    @Value("${openai.timeout:60s}")
+    private Duration timeout;
+
+    @Value("${openai.structured-outputs:true}")
+    private boolean structuredOutputs;
+
+    @Value("${openai.retry.max-attempts:3}")
+    private int maxAttempts;
 
+    @Value("${openai.retry.initial-backoff:500ms}")
+    private Duration initialBackoff;
+
+    @Value("${openai.retry.max-backoff:10s}")
+    private Duration maxBackoff;
+
+    @Value("${menu.batching.enabled:false}")
+    private boolean batchingEnabled;
+
+    @Value("${menu.batching.max-size:4}")
+    private int batchMaxSize;
+
+    @Value("${menu.batching.window:50ms}")
+    private Duration batchWindow;
+
+    @Value("${menu.batching.max-image-size:400KB}")
+    private DataSize batchMaxImageSize;
+
+    /**
+     * The primary backend (openai.*) followed by any menu.analyzer.backends[n], routed by observed latency
+     * With menu.batching.enabled each backend micro-batches small menus into multi-image calls.
+     */
     @Bean
-    public WebClient openAiWebClient() {
-        log.info("Configuring OpenAI WebClient with API key starting with: {}",
-                openaiApiKey != null ? openaiApiKey.substring(0, Math.min(10, openaiApiKey.length())) + "..." : "NULL");
+    public MenuAnalyzerRouter menuAnalyzer(ChatCompletionRequestWriter requestWriter,
+                                           ObjectProvider<AdaptiveConcurrencyLimiter> limiters) {
+        List<Backend> backends = new ArrayList<>();
+        backends.add(new Backend("openai", model, baseUrl, structuredOutputs));
+        backends.addAll(Binder.get(environment)
+                .bind("menu.analyzer.backends", Bindable.listOf(Backend.class))
+                .orElse(List.of()));
+
+        List<MenuAnalyzer> analyzers = backends.stream()
+                .map(backend -> AIMenuAnalyzer.builder()
+                        .name(backend.name())
+                        .model(backend.model() != null ? backend.model() : model)
+                        .openAiWebClient(webClient(backend.name(),
+                                backend.baseUrl() != null ? backend.baseUrl() : baseUrl))
+                        .requestWriter(requestWriter)
+                        .concurrencyLimiter(limiters.getObject(backend.name()))
+                        .timeout(timeout)
+                        .maxAttempts(maxAttempts)
+                        .initialBackoff(initialBackoff)
+                        .maxBackoff(maxBackoff)
+                        .metrics(metrics)
+                        .knowledge(dishKnowledgeIndex)
+                        .dishMerger(dishMerger)
+                        .planner(completionPlanner)
+                        .structuredOutputs(backend.structuredOutputs() != null
+                                ? backend.structuredOutputs() : structuredOutputs)
+                        .build())
+                .map(this::batching)
+                .toList();
+        return new MenuAnalyzerRouter(analyzers);
+    }
+
+    private MenuAnalyzer batching(AIMenuAnalyzer analyzer) {
+        if (!batchingEnabled) {
+            return analyzer;
+        }
+        log.info("Batching up to {} menus of at most {} per call to {} (window {})",
+                batchMaxSize, batchMaxImageSize, analyzer.name(), batchWindow);
+        return BatchingMenuAnalyzer.builder()
+                .delegate(analyzer)
+                .maxSize(batchMaxSize)
+                .window(batchWindow)
+                .maxImageSize(batchMaxImageSize.toBytes())
+                .build();
+    }
+
+    private WebClient webClient(String name, String url) {
+        log.info("Configuring OpenAI WebClient for {}", url);
 
         return WebClient.builder()
-                .baseUrl("https://api.openai.com/v1")
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + openaiApiKey)
+                .baseUrl(url)
+                .clientConnector(new ReactorClientHttpConnector(connectionPool.httpClient(url)))
+                // Buffered completions for long menus can outgrow the 256KB default
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) maxInMemorySize.toBytes()))
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .filter(authorization())
+                .filter(timeToFirstByte(name))
+                .build();
+    }
+
+    /**
+     * Records when the response headers arrive; applied inside authorization, so key resolution is not counted
+     */
+    private ExchangeFilterFunction timeToFirstByte(String name) {
+        return (request, next) -> Mono.defer(() -> {
+            long start = System.nanoTime();
+            return next.exchange(request)
+                    .doOnNext(response -> metrics.recordUpstream(name, "first_byte", System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Adds the bearer token per request, so the key is only resolved when the first call is made
+     */
+    private ExchangeFilterFunction authorization() {
+        return (request, next) -> {
+            if (openAiApiKey.isResolved()) {
+                return next.exchange(withKey(request, openAiApiKey.get()));
+            }
+            // Resolving may call Secrets Manager, which blocks; keep it off the event loop
+            return Mono.fromCallable(openAiApiKey::get)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMap(key -> next.exchange(withKey(request, key)));
+        };
+    }
+
+    private ClientRequest withKey(ClientRequest request, String key) {
+        return ClientRequest.from(request)
+                .headers(headers -> headers.setBearerAuth(key))
                 .build();
     }
+
+    /**
+     * An additional OpenAI-compatible backend; model, base URL and structured outputs default to the primary's
+     * All backends authenticate with the same API key. Set structured-outputs to false for a backend that only
+     * supports the json_object response format.
+     */
+    public record Backend(String name, String model, String baseUrl, Boolean structuredOutputs) {
+    }
 }
@@ -2,22 +2,59 @@ package com.seemenu.config;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.secretsmanager.SecretsManagerClient;
 import software.amazon.awssdk.services.secretsmanager.model.GetSecretValueRequest;
 import software.amazon.awssdk.services.secretsmanager.model.GetSecretValueResponse;
 
-@Configuration
+/**
+ * OpenAI API key, resolved on first use rather than at context startup
+ * Keeps the Secrets Manager round trip out of cold starts and out of SnapStart snapshots.
+ */
+@Component
 @Slf4j
-public class SecretsManagerConfig {
+public class OpenAiApiKey {
 
     @Value("${openai.secret.arn:#{null}}")
     private String openaiSecretArn;
 
-    @Bean
-    public String openaiApiKey() {
+    private volatile String apiKey;
+
+    public String get() {
+        String key = apiKey;
+        if (key == null) {
+            synchronized (this) {
+                if (apiKey == null) {
+                    apiKey = resolve();
+                }
+                key = apiKey;
+            }
+        }
+        return key;
+    }
+
+    public boolean isResolved() {
+        return apiKey != null;
+    }
+
+    /**
+     * Forgets the key so it is not captured in a snapshot; it is resolved again on next use
+     */
+    public synchronized void clear() {
+        apiKey = null;
+    }
+
+    /**
+     * Loads the AWS SDK client classes without fetching the secret
+     */
+    public void warmUp() {
+        if (openaiSecretArn != null && !openaiSecretArn.isEmpty()) {
+            SecretsManagerClient.builder().region(Region.US_EAST_1).build().close();
+        }
+    }
+
+    private String resolve() {
         // First, try to get from environment variable (for local development)
         String apiKey = System.getenv("OPENAI_API_KEY");
 
@@ -29,10 +66,9 @@ public class SecretsManagerConfig {
         // If not in environment, try to get from Secrets Manager (for Lambda)
         if (openaiSecretArn != null && !openaiSecretArn.isEmpty()) {
             log.info("Retrieving OpenAI API key from Secrets Manager: {}", openaiSecretArn);
-            try {
-                SecretsManagerClient client = SecretsManagerClient.builder()
-                        .region(Region.US_EAST_1)
-                        .build();
+            try (SecretsManagerClient client = SecretsManagerClient.builder()
+                    .region(Region.US_EAST_1)
+                    .build()) {
 
                 GetSecretValueRequest request = GetSecretValueRequest.builder()
                         .secretId(openaiSecretArn)
@@ -44,7 +80,6 @@ public class SecretsManagerConfig {
                 log.info("Successfully retrieved OpenAI API key from Secrets Manager");
                 log.debug("API Key starts with: {}", secretValue != null ? secretValue.substring(0, Math.min(10, secretValue.length())) + "..." : "NULL");
 
-                client.close();
                 return secretValue;
             } catch (Exception e) {
                 log.error("Error retrieving secret from Secrets Manager: {}", e.getMessage(), e);
@@ -0,0 +1,34 @@
+package com.seemenu.config;
+
+import com.seemenu.upload.ImageUploadReader;
+import com.seemenu.upload.ReactiveUploadBodyResolver;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.result.method.annotation.ArgumentResolverConfigurer;
+
+/**
+ * WebFlux configuration for running outside Lambda
+ * Pins the server to Netty (Boot would otherwise pick Tomcat, which the Lambda stack keeps on the classpath)
+ * and binds binary menu uploads through ImageUploadReader instead of aggregating them into byte[]
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveWebConfig implements WebFluxConfigurer {
+
+    private final ImageUploadReader imageUploadReader;
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Override
+    public void configureArgumentResolvers(ArgumentResolverConfigurer configurer) {
+        configurer.addCustomResolver(new ReactiveUploadBodyResolver(imageUploadReader));
+    }
+}
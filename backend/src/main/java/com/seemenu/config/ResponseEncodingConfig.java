@@ -0,0 +1,111 @@
+package com.seemenu.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.std.StdDelegatingSerializer;
+import com.fasterxml.jackson.databind.util.StdConverter;
+import com.seemenu.dto.CompactMenuResponse;
+import com.seemenu.dto.MenuAnalysisResponse;
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Binary response formats, negotiated by Accept: application/cbor and application/x-jackson-smile
+ * Both write MenuAnalysisResponse in its CompactMenuResponse form; JSON stays the default and is unchanged.
+ * Compression (gzip, and br with brotli4j) is the web server's, configured with server.compression.*.
+ */
+@Configuration
+public class ResponseEncodingConfig {
+
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+    /**
+     * WebFlux writes Smile by default with a plain mapper and has no CBOR encoder unless registered
+     * Mime types are passed explicitly: without them Jackson encoders claim application/json.
+     * Custom writers come before the default ones, and the first one decides what a wildcard Accept gets,
+     * so the JSON encoder is registered again ahead of CBOR.
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    @RequiredArgsConstructor
+    static class Reactive implements WebFluxConfigurer {
+
+        private final ObjectMapper objectMapper;
+
+        @Override
+        public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+            configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(compact(
+                    Jackson2ObjectMapperBuilder.smile()), SMILE));
+            configurer.customCodecs().register(new Jackson2JsonEncoder(objectMapper));
+            configurer.customCodecs().register(new SingleValueCborEncoder(compact(
+                    Jackson2ObjectMapperBuilder.cbor())));
+        }
+    }
+
+    /**
+     * Spring's CBOR encoder only implements encodeValue; response bodies here are always a single value
+     */
+    static class SingleValueCborEncoder extends Jackson2CborEncoder {
+
+        SingleValueCborEncoder(ObjectMapper mapper) {
+            super(mapper, MediaType.APPLICATION_CBOR);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                       ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+            return Mono.from(inputStream)
+                    .map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints))
+                    .flux();
+        }
+    }
+
+    /**
+     * Converter beans are put ahead of Spring MVC's own Smile and CBOR converters
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class Servlet {
+
+        @Bean
+        public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+            return new MappingJackson2CborHttpMessageConverter(compact(Jackson2ObjectMapperBuilder.cbor()));
+        }
+
+        @Bean
+        public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter() {
+            return new MappingJackson2SmileHttpMessageConverter(compact(Jackson2ObjectMapperBuilder.smile()));
+        }
+    }
+
+    private static ObjectMapper compact(Jackson2ObjectMapperBuilder builder) {
+        return builder
+                .serializerByType(MenuAnalysisResponse.class, new StdDelegatingSerializer(
+                        new StdConverter<MenuAnalysisResponse, CompactMenuResponse>() {
+                            @Override
+                            public CompactMenuResponse convert(MenuAnalysisResponse response) {
+                                return CompactMenuResponse.of(response);
+                            }
+                        }))
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.seemenu.config;
+
+import com.seemenu.upload.ImageUploadReader;
+import com.seemenu.upload.ServletUploadBodyResolver;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Spring MVC configuration for the servlet stack on Lambda
+ * Binds binary menu uploads through ImageUploadReader, so size and image type are checked as on WebFlux
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequiredArgsConstructor
+public class ServletWebConfig implements WebMvcConfigurer {
+
+    private final ImageUploadReader imageUploadReader;
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new ServletUploadBodyResolver(imageUploadReader));
+    }
+}
@@ -0,0 +1,51 @@
+package com.seemenu.controller;
+
+import com.seemenu.image.ImageType;
+import com.seemenu.upload.UploadBody;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a binary body holding several images, concatenated, by the byte lengths listed in a header
+ * Binary bodies avoid multipart handling, which API Gateway makes unreliable.
+ */
+final class BinaryUploads {
+
+    /**
+     * One file per listed length, named after filename with its 1-based position ("menu.jpg#2")
+     * Files are views of the body, not copies. ImageUploadReader only checked the first image's type; the
+     * others are checked here.
+     */
+    static List<MultipartFile> split(UploadBody body, String header, String lengths, String filename) {
+        List<MultipartFile> files = new ArrayList<>();
+        int offset = 0;
+        for (String length : lengths.split(",")) {
+            int size;
+            try {
+                size = Integer.parseInt(length.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + header + " header: " + lengths);
+            }
+            // offset never passes body.size(), so this cannot overflow as offset + size could
+            if (size <= 0 || size > body.size() - offset) {
+                throw new IllegalArgumentException(header + " does not match the request body size");
+            }
+            String name = (filename != null ? filename : "upload") + "#" + (files.size() + 1);
+            if (body.typeAt(offset) == ImageType.UNKNOWN) {
+                throw new IllegalArgumentException("Image " + (files.size() + 1) + " in " + header
+                        + " is not a JPEG, PNG, GIF, WebP or HEIC image");
+            }
+            files.add(body.slice(offset, size, null, name));
+            offset += size;
+        }
+        if (offset != body.size()) {
+            throw new IllegalArgumentException(header + " does not match the request body size");
+        }
+        return files;
+    }
+
+    private BinaryUploads() {
+    }
+}
@@ -1,13 +1,26 @@
 package com.seemenu.controller;
 
 import com.seemenu.dto.MenuAnalysisResponse;
+import com.seemenu.metrics.PipelineMetrics;
+import com.seemenu.openai.ModelUnavailableException;
 import com.seemenu.service.MenuService;
+import com.seemenu.upload.UploadBody;
+import com.seemenu.upload.UploadRejectedException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @RestController
@@ -16,64 +29,134 @@ import org.springframework.web.multipart.MultipartFile;
 @CrossOrigin(origins = "*")
 public class MenuController {
 
+    private static final String BUSY_MESSAGE = "Menu analysis is busy right now. Please try again shortly.";
+
     private final MenuService menuService;
+    private final PipelineMetrics metrics;
 
     @PostMapping(value = "/upload", consumes = {"image/*", "application/octet-stream"})
-    public ResponseEntity<MenuAnalysisResponse> uploadMenu(
-            @RequestBody byte[] bytes,
+    public Mono<ResponseEntity<MenuAnalysisResponse>> uploadMenu(
+            UploadBody body,
             @RequestHeader(value = "Content-Type", required = false) String contentType,
             @RequestHeader(value = "X-Filename", required = false) String filename) {
+        log.info("Binary upload received: size={}, spilled={}, contentType={}, filename={}",
+                body.size(), body.isSpilled(), contentType, filename);
+        metrics.recordPayload("upload", body.size());
+
+        MultipartFile file = body.asFile(contentType, filename);
+
+        // The request thread is released while the analysis is in flight
+        return menuService.analyzeMenu(file)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(errorResponse("Error processing menu upload", e)));
+    }
+
+    /**
+     * Several photos (pages) of one menu, analyzed together and merged into one dish list
+     * Pages are concatenated in the binary body and X-Page-Lengths lists their byte sizes in order,
+     * e.g. "482113,501277". Binary bodies avoid multipart handling, which API Gateway makes unreliable.
+     */
+    @PostMapping(value = "/upload/pages", consumes = {"image/*", "application/octet-stream"})
+    public Mono<ResponseEntity<MenuAnalysisResponse>> uploadMenuPages(
+            UploadBody body,
+            @RequestHeader(value = "X-Page-Lengths") String pageLengths,
+            @RequestHeader(value = "X-Filename", required = false) String filename) {
+        log.info("Multi-page upload received: size={}, spilled={}, pageLengths={}, filename={}",
+                body.size(), body.isSpilled(), pageLengths, filename);
+        metrics.recordPayload("upload", body.size());
+
+        List<MultipartFile> pages;
         try {
-            log.info("Binary upload received: size={}, contentType={}, filename={}",
-                    bytes.length, contentType, filename);
-
-            // Create a simple MultipartFile wrapper for the service
-            MultipartFile file = new MultipartFile() {
-                @Override
-                public String getName() { return "file"; }
-
-                @Override
-                public String getOriginalFilename() {
-                    return filename != null ? filename : "upload";
-                }
-
-                @Override
-                public String getContentType() { return contentType; }
-
-                @Override
-                public boolean isEmpty() { return bytes.length == 0; }
-
-                @Override
-                public long getSize() { return bytes.length; }
-
-                @Override
-                public byte[] getBytes() { return bytes; }
-
-                @Override
-                public java.io.InputStream getInputStream() {
-                    return new java.io.ByteArrayInputStream(bytes);
-                }
-
-                @Override
-                public void transferTo(java.io.File dest) throws java.io.IOException {
-                    java.nio.file.Files.write(dest.toPath(), bytes);
-                }
-            };
-
-            MenuAnalysisResponse response = menuService.analyzeMenu(file);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("Error processing menu upload", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+            pages = BinaryUploads.split(body, "X-Page-Lengths", pageLengths, filename);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest()
                     .body(MenuAnalysisResponse.builder()
                             .success(false)
-                            .message("Error processing menu: " + e.getMessage())
-                            .build());
+                            .message(e.getMessage())
+                            .build()));
         }
+
+        return menuService.analyzeMenuPages(pages)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(errorResponse("Error processing multi-page menu upload", e)));
+    }
+
+    /**
+     * Streams each dish as a Server-Sent Event as soon as the model has produced it
+     * Emits "dish" events, then a single "complete" event, or an "error" event if analysis fails midway
+     */
+    @PostMapping(value = "/upload/stream", consumes = {"image/*", "application/octet-stream"},
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> uploadMenuStream(
+            UploadBody body,
+            @RequestHeader(value = "Content-Type", required = false) String contentType,
+            @RequestHeader(value = "X-Filename", required = false) String filename) {
+        log.info("Streaming upload received: size={}, spilled={}, contentType={}, filename={}",
+                body.size(), body.isSpilled(), contentType, filename);
+        metrics.recordPayload("upload", body.size());
+
+        AtomicInteger count = new AtomicInteger();
+        return menuService.streamMenu(body.asFile(contentType, filename))
+                .map(dish -> {
+                    count.incrementAndGet();
+                    return ServerSentEvent.<Object>builder(dish).event("dish").build();
+                })
+                .concatWith(Mono.fromSupplier(() -> ServerSentEvent.<Object>builder(
+                        Map.of("dishCount", count.get())).event("complete").build()))
+                .onErrorResume(e -> {
+                    log.error("Error streaming menu analysis", e);
+                    Map<String, Object> error = e instanceof ModelUnavailableException unavailable
+                            ? Map.of("message", BUSY_MESSAGE, "retryAfter", retryAfterSeconds(unavailable))
+                            : Map.of("message", "Error processing menu: " + e.getMessage());
+                    return Mono.just(ServerSentEvent.<Object>builder(error).event("error").build());
+                });
     }
 
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("SeeMenu API is running");
     }
+
+    /**
+     * Uploads refused while their body was read (too large, empty, not an image) or decoded (too many pixels)
+     */
+    @ExceptionHandler(UploadRejectedException.class)
+    public ResponseEntity<MenuAnalysisResponse> uploadRejected(UploadRejectedException e) {
+        log.warn("Rejected upload: {}", e.getMessage());
+        return ResponseEntity.status(e.getStatus())
+                .body(MenuAnalysisResponse.builder()
+                        .success(false)
+                        .message(e.getMessage())
+                        .build());
+    }
+
+    /**
+     * 503 with Retry-After when the model is out of capacity, so clients back off instead of seeing an empty menu
+     */
+    private ResponseEntity<MenuAnalysisResponse> errorResponse(String context, Throwable e) {
+        if (e instanceof UploadRejectedException rejected) {
+            return uploadRejected(rejected);
+        }
+        if (e instanceof ModelUnavailableException unavailable) {
+            log.warn("{}: {}", context, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds(unavailable)))
+                    .body(MenuAnalysisResponse.builder()
+                            .success(false)
+                            .message(BUSY_MESSAGE)
+                            .build());
+        }
+
+        log.error(context, e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(MenuAnalysisResponse.builder()
+                        .success(false)
+                        .message("Error processing menu: " + e.getMessage())
+                        .build());
+    }
+
+    private long retryAfterSeconds(ModelUnavailableException e) {
+        // Retry-After is in whole seconds; round up so clients never come back early
+        return Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+    }
 }
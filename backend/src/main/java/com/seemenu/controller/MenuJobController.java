@@ -0,0 +1,145 @@
+package com.seemenu.controller;
+
+import com.seemenu.dto.MenuJobsResponse;
+import com.seemenu.jobs.MenuJob;
+import com.seemenu.jobs.MenuJobService;
+import com.seemenu.metrics.PipelineMetrics;
+import com.seemenu.openai.ModelUnavailableException;
+import com.seemenu.upload.UploadBody;
+import com.seemenu.upload.UploadRejectedException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Asynchronous analysis: uploads return job IDs at once and results are fetched by ID
+ * Clients submitting many menus hold no connection per menu; how fast jobs complete is set by the worker pool.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/menu/jobs")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@ConditionalOnProperty(value = "menu.jobs.enabled", havingValue = "true", matchIfMissing = true)
+public class MenuJobController {
+
+    private static final int MAX_IDS = 500;
+
+    private final MenuJobService jobService;
+    private final PipelineMetrics metrics;
+
+    /**
+     * Queues one job per menu image and answers 202 with the jobs, in upload order
+     * A batch is the images concatenated in the binary body with X-Image-Lengths listing their byte sizes,
+     * e.g. "482113,501277"; without the header the body is a single image.
+     */
+    @PostMapping(consumes = {"image/*", "application/octet-stream"})
+    public Mono<ResponseEntity<MenuJobsResponse>> submitJobs(
+            UploadBody body,
+            @RequestHeader(value = "Content-Type", required = false) String contentType,
+            @RequestHeader(value = "X-Image-Lengths", required = false) String imageLengths,
+            @RequestHeader(value = "X-Filename", required = false) String filename) {
+        log.info("Job upload received: size={}, imageLengths={}, filename={}", body.size(), imageLengths, filename);
+        metrics.recordPayload("upload", body.size());
+
+        List<MultipartFile> images;
+        try {
+            images = imageLengths != null
+                    ? BinaryUploads.split(body, "X-Image-Lengths", imageLengths, filename)
+                    : List.of(body.asFile(contentType, filename));
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().body(failure(e.getMessage())));
+        }
+
+        // Queueing may write the images to disk
+        return Mono.fromCallable(() -> jobService.submit(images))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(jobs -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .body(MenuJobsResponse.builder()
+                                .success(true)
+                                .message("Queued " + jobs.size() + " menu job(s)")
+                                .jobs(jobs)
+                                .build()))
+                .onErrorResume(e -> Mono.just(errorResponse(e)));
+    }
+
+    /**
+     * A job and, once finished, its result; with wait (e.g. "20s") answers as soon as the job finishes
+     * within that time (long polling), otherwise with its state when the wait ends
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<MenuJob>> getJob(
+            @PathVariable String id,
+            @RequestParam(value = "wait", defaultValue = "0s") String wait) {
+        Duration timeout;
+        try {
+            timeout = DurationStyle.detectAndParse(wait);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return jobService.find(id, timeout)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Several jobs at once, e.g. ?ids=a,b,c, in the order asked; unknown IDs are left out
+     */
+    @GetMapping
+    public Mono<ResponseEntity<MenuJobsResponse>> getJobs(@RequestParam("ids") String ids) {
+        List<String> requested = Arrays.stream(ids.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+        if (requested.size() > MAX_IDS) {
+            return Mono.just(ResponseEntity.badRequest().body(failure("At most " + MAX_IDS + " IDs per request")));
+        }
+        return Flux.fromIterable(requested)
+                .concatMap(id -> jobService.find(id, Duration.ZERO))
+                .collectList()
+                .map(jobs -> ResponseEntity.ok(MenuJobsResponse.builder()
+                        .success(true)
+                        .message("Found " + jobs.size() + " of " + requested.size() + " job(s)")
+                        .jobs(jobs)
+                        .build()));
+    }
+
+    @ExceptionHandler(UploadRejectedException.class)
+    public ResponseEntity<MenuJobsResponse> uploadRejected(UploadRejectedException e) {
+        log.warn("Rejected job upload: {}", e.getMessage());
+        return ResponseEntity.status(e.getStatus()).body(failure(e.getMessage()));
+    }
+
+    /**
+     * 503 with Retry-After when the queue is full, so batch clients back off instead of resubmitting at once
+     */
+    private ResponseEntity<MenuJobsResponse> errorResponse(Throwable e) {
+        if (e instanceof ModelUnavailableException unavailable) {
+            log.warn("Rejected job upload: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfter().toSeconds()))
+                    .body(failure(e.getMessage()));
+        }
+
+        log.error("Error queueing menu jobs", e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(failure("Error queueing menu: " + e.getMessage()));
+    }
+
+    private MenuJobsResponse failure(String message) {
+        return MenuJobsResponse.builder()
+                .success(false)
+                .message(message)
+                .build();
+    }
+}
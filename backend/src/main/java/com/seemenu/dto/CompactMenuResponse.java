@@ -0,0 +1,121 @@
+package com.seemenu.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.seemenu.model.DishInfo;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MenuAnalysisResponse as written in the binary formats (CBOR, Smile)
+ * Ingredients, allergens and dietary labels repeat across dishes, so each distinct one is written once in tags
+ * and dishes refer to them by index. Absent fields are left out rather than written as null.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CompactMenuResponse {
+    private boolean success;
+    private String message;
+    private List<String> tags;
+    private List<Dish> dishes;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Dish {
+        private String name;
+        private String description;
+        private String price;
+        private int[] ingredients;
+        private int[] allergens;
+        private int[] dietaryInfo;
+    }
+
+    public static CompactMenuResponse of(MenuAnalysisResponse response) {
+        CompactMenuResponse compact = CompactMenuResponse.builder()
+                .success(response.isSuccess())
+                .message(response.getMessage())
+                .build();
+        if (response.getDishes() == null) {
+            return compact;
+        }
+
+        List<String> tags = new ArrayList<>();
+        Map<String, Integer> indexes = new HashMap<>();
+        List<Dish> dishes = new ArrayList<>(response.getDishes().size());
+        for (DishInfo dish : response.getDishes()) {
+            dishes.add(Dish.builder()
+                    .name(dish.getName())
+                    .description(dish.getDescription())
+                    .price(dish.getPrice())
+                    .ingredients(encode(dish.getIngredients(), tags, indexes))
+                    .allergens(encode(dish.getAllergens(), tags, indexes))
+                    .dietaryInfo(encode(dish.getDietaryInfo(), tags, indexes))
+                    .build());
+        }
+        compact.setTags(tags);
+        compact.setDishes(dishes);
+        return compact;
+    }
+
+    /**
+     * The full response, with tag indexes resolved; what a client decoding the compact form ends up with
+     */
+    public MenuAnalysisResponse toResponse() {
+        List<DishInfo> expanded = null;
+        if (dishes != null) {
+            expanded = new ArrayList<>(dishes.size());
+            for (Dish dish : dishes) {
+                expanded.add(DishInfo.builder()
+                        .name(dish.getName())
+                        .description(dish.getDescription())
+                        .price(dish.getPrice())
+                        .ingredients(decode(dish.getIngredients()))
+                        .allergens(decode(dish.getAllergens()))
+                        .dietaryInfo(decode(dish.getDietaryInfo()))
+                        .build());
+            }
+        }
+        return MenuAnalysisResponse.builder()
+                .success(success)
+                .message(message)
+                .dishes(expanded)
+                .build();
+    }
+
+    private static int[] encode(List<String> values, List<String> tags, Map<String, Integer> indexes) {
+        if (values == null) {
+            return null;
+        }
+        int[] encoded = new int[values.size()];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = indexes.computeIfAbsent(values.get(i), value -> {
+                tags.add(value);
+                return tags.size() - 1;
+            });
+        }
+        return encoded;
+    }
+
+    private List<String> decode(int[] indexes) {
+        if (indexes == null) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            values.add(tags.get(index));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,19 @@
+package com.seemenu.dto;
+
+import com.seemenu.jobs.MenuJob;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuJobsResponse {
+    private boolean success;
+    private String message;
+    private List<MenuJob> jobs;
+}
@@ -0,0 +1,52 @@
+package com.seemenu.image;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * ImageIO input over the bytes of a buffer, read in place
+ * Unlike a MemoryCacheImageInputStream over an InputStream, nothing is cached on the heap: seeks are positions in
+ * the buffer, so a memory-mapped upload is decoded straight from the page cache.
+ */
+final class ByteBufferImageInputStream extends ImageInputStreamImpl {
+
+    private final ByteBuffer content;
+
+    ByteBufferImageInputStream(ByteBuffer content) {
+        this.content = content.slice();
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= content.limit()) {
+            return -1;
+        }
+        return content.get((int) streamPos++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        checkClosed();
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        bitOffset = 0;
+        if (length == 0) {
+            return 0;
+        }
+        if (streamPos >= content.limit()) {
+            return -1;
+        }
+        int read = (int) Math.min(length, content.limit() - streamPos);
+        content.get((int) streamPos, bytes, offset, read);
+        streamPos += read;
+        return read;
+    }
+
+    @Override
+    public long length() {
+        return content.limit();
+    }
+}
@@ -0,0 +1,120 @@
+package com.seemenu.image;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the EXIF orientation tag from a JPEG and applies it to decoded pixels
+ * ImageIO ignores the tag, so phone photos would otherwise reach the model sideways
+ */
+public final class ExifOrientation {
+
+    public static final int NORMAL = 1;
+
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private ExifOrientation() {
+    }
+
+    /**
+     * Returns the orientation (1-8) stored in the JPEG's APP1 segment, or NORMAL if absent
+     * Reads the JPEG from the buffer's position on, with absolute gets, so a memory-mapped upload is not copied.
+     */
+    public static int read(ByteBuffer content) {
+        ByteBuffer jpeg = content.slice();
+        int pos = 2; // skip SOI
+        while (pos + 4 <= jpeg.limit()) {
+            if ((jpeg.get(pos) & 0xFF) != 0xFF) {
+                return NORMAL;
+            }
+            int marker = jpeg.get(pos + 1) & 0xFF;
+            int length = readShort(jpeg, pos + 2, false);
+            if (marker == 0xDA || length < 2) {
+                // Start of scan: no more metadata segments
+                return NORMAL;
+            }
+            if (marker == 0xE1 && isExifHeader(jpeg, pos + 4)) {
+                return readTiffOrientation(jpeg, pos + 10, Math.min(jpeg.limit(), pos + 2 + length));
+            }
+            pos += 2 + length;
+        }
+        return NORMAL;
+    }
+
+    /**
+     * Rotates/flips the image so it displays upright
+     */
+    public static BufferedImage apply(BufferedImage image, int orientation) {
+        if (orientation <= NORMAL || orientation > 8) {
+            return image;
+        }
+
+        int w = image.getWidth();
+        int h = image.getHeight();
+        // Maps source (x, y) to upright (x', y'); orientations 5-8 swap the axes
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);
+        };
+
+        boolean swapsAxes = orientation >= 5;
+        BufferedImage rotated = new BufferedImage(swapsAxes ? h : w, swapsAxes ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rotated.createGraphics();
+        try {
+            g.drawImage(image, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return rotated;
+    }
+
+    private static boolean isExifHeader(ByteBuffer bytes, int pos) {
+        return pos + 6 <= bytes.limit()
+                && bytes.get(pos) == 'E' && bytes.get(pos + 1) == 'x' && bytes.get(pos + 2) == 'i'
+                && bytes.get(pos + 3) == 'f' && bytes.get(pos + 4) == 0 && bytes.get(pos + 5) == 0;
+    }
+
+    private static int readTiffOrientation(ByteBuffer bytes, int tiffStart, int end) {
+        if (tiffStart + 8 > end) {
+            return NORMAL;
+        }
+        boolean littleEndian = bytes.get(tiffStart) == 'I' && bytes.get(tiffStart + 1) == 'I';
+        int ifdOffset = readInt(bytes, tiffStart + 4, littleEndian);
+        int ifd = tiffStart + ifdOffset;
+        if (ifdOffset < 8 || ifd + 2 > end) {
+            return NORMAL;
+        }
+
+        int entries = readShort(bytes, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                return NORMAL;
+            }
+            if (readShort(bytes, entry, littleEndian) == ORIENTATION_TAG) {
+                int value = readShort(bytes, entry + 8, littleEndian);
+                return value >= 1 && value <= 8 ? value : NORMAL;
+            }
+        }
+        return NORMAL;
+    }
+
+    private static int readShort(ByteBuffer bytes, int pos, boolean littleEndian) {
+        int b0 = bytes.get(pos) & 0xFF;
+        int b1 = bytes.get(pos + 1) & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static int readInt(ByteBuffer bytes, int pos, boolean littleEndian) {
+        int hi = readShort(bytes, littleEndian ? pos + 2 : pos, littleEndian);
+        int lo = readShort(bytes, littleEndian ? pos : pos + 2, littleEndian);
+        return (hi << 16) | lo;
+    }
+}
@@ -0,0 +1,284 @@
+package com.seemenu.image;
+
+import com.seemenu.upload.UploadRejectedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shrinks uploads before they are sent to the vision model
+ * Decodes, downsizes to the model's useful resolution, fixes EXIF orientation and re-encodes as JPEG.
+ * The model tiles images at 2048px max, so anything larger only costs bytes and latency. The lines of text in
+ * the result are counted on the way, for sizing the model's answer. Heap per decode is bounded: images declaring
+ * more than max-pixels are rejected from their header, and those with a long edge over max-decode-edge are
+ * subsampled while they are read rather than decoded at full size.
+ */
+@Component
+@Slf4j
+public class ImagePreprocessor implements MeterBinder {
+
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong tooManyPixels = new AtomicLong();
+
+    @Value("${menu.image.preprocess.enabled:true}")
+    private boolean enabled;
+
+    @Value("${menu.image.max-long-edge:2048}")
+    private int maxLongEdge;
+
+    @Value("${menu.image.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    @Value("${menu.image.max-pixels:64000000}")
+    private long maxPixels;
+
+    // Room for the tiler to cut two tiles of max-long-edge along the long side
+    @Value("${menu.image.max-decode-edge:4096}")
+    private int maxDecodeEdge;
+
+    /**
+     * Decodes the upload into upright RGB pixels, or null if the format is not decodable
+     * Full resolution up to max-decode-edge, subsampled by a whole factor beyond it; uploads declaring more than
+     * max-pixels are rejected with 413 before any pixel is read. The content is read in place from its position on,
+     * so a memory-mapped upload is never copied onto the heap.
+     */
+    public BufferedImage decode(ByteBuffer content) throws IOException {
+        BufferedImage decoded = read(content);
+        if (decoded == null) {
+            return null;
+        }
+        int orientation = ImageType.detect(content) == ImageType.JPEG
+                ? ExifOrientation.read(content)
+                : ExifOrientation.NORMAL;
+        // Rotation already draws into a fresh RGB image, so only flatten when no rotation is needed
+        return orientation == ExifOrientation.NORMAL ? toRgb(decoded) : ExifOrientation.apply(decoded, orientation);
+    }
+
+    private BufferedImage read(ByteBuffer content) throws IOException {
+        try (ImageInputStream input = new ByteBufferImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    tooManyPixels.incrementAndGet();
+                    throw new UploadRejectedException(HttpStatus.PAYLOAD_TOO_LARGE, String.format(
+                            "Image is %dx%d pixels; at most %d megapixels are accepted", width, height,
+                            maxPixels / 1_000_000));
+                }
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = (Math.max(width, height) + maxDecodeEdge - 1) / maxDecodeEdge;
+                if (subsampling > 1) {
+                    log.info("Decoding {}x{} image at 1/{} resolution", width, height, subsampling);
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public PreparedImage prepare(ByteBuffer content) throws IOException {
+        return prepare(content, decode(content));
+    }
+
+    /**
+     * Prepares a whole upload given its decoded pixels; the original bytes are sent when that is cheaper
+     */
+    public PreparedImage prepare(ByteBuffer content, BufferedImage upright) throws IOException {
+        ImageType type = ImageType.detect(content);
+        int size = content.remaining();
+
+        if (upright == null) {
+            // No ImageIO reader (e.g. HEIC, WebP): pass through with the sniffed type
+            log.info("Cannot decode {} upload, sending original {} bytes", type, size);
+            return passThrough(content, type, 0);
+        }
+
+        if (!enabled) {
+            return passThrough(content, type, TextLines.count(upright));
+        }
+
+        boolean needsResize = Math.max(upright.getWidth(), upright.getHeight()) > maxLongEdge;
+        BufferedImage resized = needsResize ? resize(upright) : upright;
+        byte[] encoded = encodeJpeg(resized);
+
+        // Keep the original when re-encoding gains nothing and it is already upright and small enough
+        boolean uprightAsStored = type != ImageType.JPEG || ExifOrientation.read(content) == ExifOrientation.NORMAL;
+        if (!needsResize && uprightAsStored && type.isModelSupported() && encoded.length >= size) {
+            return passThrough(content, type, TextLines.count(resized));
+        }
+
+        record(size, encoded.length);
+        log.info("Preprocessed image: {}x{} {} ({} bytes) -> {}x{} JPEG ({} bytes, saved {})",
+                upright.getWidth(), upright.getHeight(), type, size,
+                resized.getWidth(), resized.getHeight(), encoded.length, size - encoded.length);
+
+        return PreparedImage.builder()
+                .bytes(encoded)
+                .mimeType(ImageType.JPEG.getMimeType())
+                .originalSize(size)
+                .textLines(TextLines.count(resized))
+                .build();
+    }
+
+    /**
+     * Prepares a region cut from a decoded upload (a tile); there is no original encoding to fall back to
+     */
+    public PreparedImage prepare(BufferedImage region) throws IOException {
+        BufferedImage resized = Math.max(region.getWidth(), region.getHeight()) > maxLongEdge
+                ? resize(region)
+                : region;
+        byte[] encoded = encodeJpeg(resized);
+        return PreparedImage.builder()
+                .bytes(encoded)
+                .mimeType(ImageType.JPEG.getMimeType())
+                .originalSize(encoded.length)
+                .textLines(TextLines.count(resized))
+                .build();
+    }
+
+    /**
+     * Runs a small synthetic image through decode, resize and encode so ImageIO codecs and Java2D loops are loaded
+     */
+    public void warmUp() throws IOException {
+        BufferedImage sample = new BufferedImage(256, 192, BufferedImage.TYPE_INT_RGB);
+        byte[] encoded = encodeJpeg(sample);
+        BufferedImage decoded = decode(ByteBuffer.wrap(encoded));
+        encodeJpeg(draw(resize(decoded), 64, 48));
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    public long getTooManyPixels() {
+        return tooManyPixels.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("seemenu.image.bytes", this, ImagePreprocessor::getBytesIn)
+                .description("Image bytes before and after preprocessing")
+                .baseUnit("bytes")
+                .tag("direction", "in")
+                .register(registry);
+        FunctionCounter.builder("seemenu.image.bytes", this, ImagePreprocessor::getBytesOut)
+                .description("Image bytes before and after preprocessing")
+                .baseUnit("bytes")
+                .tag("direction", "out")
+                .register(registry);
+        FunctionCounter.builder("seemenu.upload.rejected", this, ImagePreprocessor::getTooManyPixels)
+                .description("Uploads rejected while their body was read")
+                .tag("reason", "too_many_pixels")
+                .register(registry);
+    }
+
+    /**
+     * The original bytes are what the model is sent, so this is where they are copied onto the heap, and only here
+     */
+    private PreparedImage passThrough(ByteBuffer content, ImageType type, int textLines) {
+        byte[] imageBytes = new byte[content.remaining()];
+        content.get(content.position(), imageBytes);
+        record(imageBytes.length, imageBytes.length);
+        return PreparedImage.builder()
+                .bytes(imageBytes)
+                .mimeType(type == ImageType.UNKNOWN ? ImageType.JPEG.getMimeType() : type.getMimeType())
+                .originalSize(imageBytes.length)
+                .textLines(textLines)
+                .build();
+    }
+
+    private void record(long in, long out) {
+        bytesIn.addAndGet(in);
+        bytesOut.addAndGet(out);
+    }
+
+    /**
+     * Flattens transparency onto white; JPEG has no alpha channel
+     */
+    private BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        return draw(image, image.getWidth(), image.getHeight());
+    }
+
+    private BufferedImage resize(BufferedImage image) {
+        double scale = (double) maxLongEdge / Math.max(image.getWidth(), image.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        // Halve in steps first; a single large bilinear step skips pixels and aliases small text
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        return draw(current, targetWidth, targetHeight);
+    }
+
+    private BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package com.seemenu.image;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Image formats recognised from their leading magic bytes
+ * The client-supplied Content-Type is not trusted for labelling the image sent to the model
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ImageType {
+    JPEG("image/jpeg"),
+    PNG("image/png"),
+    GIF("image/gif"),
+    WEBP("image/webp"),
+    HEIC("image/heic"),
+    UNKNOWN("application/octet-stream");
+
+    /**
+     * Leading bytes detect needs to tell every type apart
+     */
+    public static final int SIGNATURE_BYTES = 12;
+
+    private final String mimeType;
+
+    /**
+     * The type of the bytes from the buffer's position on; the position is left as it is
+     */
+    public static ImageType detect(ByteBuffer content) {
+        byte[] leading = new byte[Math.min(SIGNATURE_BYTES, content.remaining())];
+        content.get(content.position(), leading);
+        return detect(leading);
+    }
+
+    public static ImageType detect(byte[] bytes) {
+        if (bytes.length >= 3
+                && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD8 && (bytes[2] & 0xFF) == 0xFF) {
+            return JPEG;
+        }
+        if (bytes.length >= 8
+                && (bytes[0] & 0xFF) == 0x89 && bytes[1] == 'P' && bytes[2] == 'N' && bytes[3] == 'G') {
+            return PNG;
+        }
+        if (startsWith(bytes, 0, "GIF8")) {
+            return GIF;
+        }
+        if (startsWith(bytes, 0, "RIFF") && startsWith(bytes, 8, "WEBP")) {
+            return WEBP;
+        }
+        // ISO base media file: "ftyp" box at offset 4 followed by the HEIF brand
+        if (startsWith(bytes, 4, "ftyp")
+                && (startsWith(bytes, 8, "heic") || startsWith(bytes, 8, "heix")
+                || startsWith(bytes, 8, "mif1") || startsWith(bytes, 8, "msf1"))) {
+            return HEIC;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Whether the vision model accepts this format as-is
+     */
+    public boolean isModelSupported() {
+        return this == JPEG || this == PNG || this == GIF || this == WEBP;
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, String ascii) {
+        byte[] expected = ascii.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,202 @@
+package com.seemenu.image;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits large menu photos into overlapping tiles that can be analyzed in parallel
+ * Columns are cut at vertical gutters found by whitespace projection: a column of the image
+ * with almost no text edges is a gap between menu columns. Very tall menus are also cut into
+ * top and bottom halves at the emptiest row near the middle. When that gives more than max-tiles
+ * tiles, neighbouring columns (then the halves) are merged until it fits, so no part is left out.
+ */
+@Component
+@Slf4j
+public class MenuTiler {
+
+    private static final int PROBE_WIDTH = 512;       // analysis resolution for the projection
+    private static final int EDGE_THRESHOLD = 40;     // luminance step that counts as a text edge
+    private static final double MIN_GUTTER = 0.015;   // narrowest gutter, as a fraction of the width
+    private static final double MIN_COLUMN = 0.2;     // narrowest column worth its own model call
+    private static final double TALL_ASPECT = 1.8;    // height/width above which a menu is cut in half
+
+    @Value("${menu.tiling.enabled:true}")
+    private boolean enabled;
+
+    @Value("${menu.tiling.min-long-edge:2400}")
+    private int minLongEdge;
+
+    @Value("${menu.tiling.max-tiles:4}")
+    private int maxTiles;
+
+    @Value("${menu.tiling.overlap:0.04}")
+    private double overlap;
+
+    /**
+     * Returns the tiles in reading order, or the image itself when it is not worth splitting
+     */
+    public List<BufferedImage> split(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (!enabled || Math.max(width, height) < minLongEdge) {
+            return List.of(image);
+        }
+
+        double scale = Math.min(1.0, (double) PROBE_WIDTH / width);
+        int[][] gray = toGray(image, Math.max(1, (int) (width * scale)), Math.max(1, (int) (height * scale)));
+
+        List<int[]> columns = columns(gray);
+        List<int[]> rows = (double) height / width > TALL_ASPECT * columns.size()
+                ? halves(gray)
+                : List.of(new int[]{0, gray.length});
+
+        int found = columns.size() * rows.size();
+        while (columns.size() * rows.size() > maxTiles && columns.size() > 1) {
+            columns = mergeNarrowest(columns);
+        }
+        if (columns.size() * rows.size() > maxTiles) {
+            rows = List.of(new int[]{0, gray.length});
+        }
+        if (columns.size() * rows.size() < found) {
+            log.info("Merged {} tiles of {}x{} menu into {} to stay within max-tiles", found, width, height,
+                    columns.size() * rows.size());
+        }
+
+        List<BufferedImage> tiles = new ArrayList<>();
+        for (int[] row : rows) {
+            for (int[] column : columns) {
+                tiles.add(crop(image, column, row, scale));
+            }
+        }
+        if (tiles.size() > 1) {
+            log.info("Split {}x{} menu into {} tiles ({} columns x {} rows)",
+                    width, height, tiles.size(), columns.size(), rows.size());
+        }
+        return tiles.isEmpty() ? List.of(image) : tiles;
+    }
+
+    /**
+     * Column ranges (in probe pixels) separated by vertical gutters
+     */
+    private List<int[]> columns(int[][] gray) {
+        int width = gray[0].length;
+        int[] ink = new int[width];
+        for (int[] row : gray) {
+            for (int x = 0; x < width - 1; x++) {
+                if (Math.abs(row[x] - row[x + 1]) > EDGE_THRESHOLD) {
+                    ink[x]++;
+                }
+            }
+        }
+
+        int maxInk = 0;
+        for (int value : ink) {
+            maxInk = Math.max(maxInk, value);
+        }
+        int blank = Math.max(1, maxInk / 50);
+        int minGutter = Math.max(2, (int) (width * MIN_GUTTER));
+        int minColumn = (int) (width * MIN_COLUMN);
+
+        List<int[]> columns = new ArrayList<>();
+        int columnStart = 0;
+        int gapStart = -1;
+        for (int x = 0; x <= width; x++) {
+            boolean isBlank = x < width && ink[x] <= blank;
+            if (isBlank && gapStart < 0) {
+                gapStart = x;
+            } else if (!isBlank && gapStart >= 0) {
+                int gutterCenter = (gapStart + x) / 2;
+                if (x - gapStart >= minGutter && gutterCenter - columnStart >= minColumn
+                        && width - gutterCenter >= minColumn && x < width) {
+                    columns.add(new int[]{columnStart, gutterCenter});
+                    columnStart = gutterCenter;
+                }
+                gapStart = -1;
+            }
+        }
+        columns.add(new int[]{columnStart, width});
+        return columns;
+    }
+
+    /**
+     * The columns with the narrowest neighbouring pair joined into one
+     */
+    private List<int[]> mergeNarrowest(List<int[]> columns) {
+        int best = 0;
+        for (int i = 1; i < columns.size() - 1; i++) {
+            if (columns.get(i + 1)[1] - columns.get(i)[0] < columns.get(best + 1)[1] - columns.get(best)[0]) {
+                best = i;
+            }
+        }
+        List<int[]> merged = new ArrayList<>(columns.subList(0, best));
+        merged.add(new int[]{columns.get(best)[0], columns.get(best + 1)[1]});
+        merged.addAll(columns.subList(best + 2, columns.size()));
+        return merged;
+    }
+
+    /**
+     * Top and bottom halves, cut at the emptiest row in the middle third
+     */
+    private List<int[]> halves(int[][] gray) {
+        int height = gray.length;
+        int bestRow = height / 2;
+        int bestInk = Integer.MAX_VALUE;
+        for (int y = height / 3; y < 2 * height / 3; y++) {
+            int ink = 0;
+            for (int x = 0; x < gray[y].length - 1; x++) {
+                if (Math.abs(gray[y][x] - gray[y][x + 1]) > EDGE_THRESHOLD) {
+                    ink++;
+                }
+            }
+            if (ink < bestInk) {
+                bestInk = ink;
+                bestRow = y;
+            }
+        }
+        return List.of(new int[]{0, bestRow}, new int[]{bestRow, height});
+    }
+
+    /**
+     * Cuts a tile from the full-resolution image, widened by the overlap so dishes on a boundary appear whole
+     */
+    private BufferedImage crop(BufferedImage image, int[] column, int[] row, double scale) {
+        int padX = (int) (image.getWidth() * overlap);
+        int padY = (int) (image.getHeight() * overlap);
+        int x0 = Math.max(0, (int) (column[0] / scale) - padX);
+        int x1 = Math.min(image.getWidth(), (int) Math.ceil(column[1] / scale) + padX);
+        int y0 = Math.max(0, (int) (row[0] / scale) - padY);
+        int y1 = Math.min(image.getHeight(), (int) Math.ceil(row[1] / scale) + padY);
+
+        // Copy so the tile does not keep the whole raster reachable
+        BufferedImage tile = new BufferedImage(x1 - x0, y1 - y0, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.drawImage(image.getSubimage(x0, y0, x1 - x0, y1 - y0), 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return tile;
+    }
+
+    private int[][] toGray(BufferedImage image, int width, int height) {
+        BufferedImage small = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = small.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        int[][] gray = new int[height][];
+        for (int y = 0; y < height; y++) {
+            gray[y] = small.getRaster().getPixels(0, y, width, 1, (int[]) null);
+        }
+        return gray;
+    }
+}
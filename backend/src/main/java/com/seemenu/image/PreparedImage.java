@@ -0,0 +1,22 @@
+package com.seemenu.image;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An image ready to send to the model
+ * Holds only the encoded bytes and what was measured on the pixels; the decoded raster is not kept, since these
+ * live as long as the model call (and its batching window) and a tile's raster runs to tens of megabytes.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PreparedImage {
+    private byte[] bytes;         // payload sent to the model
+    private String mimeType;      // MIME type matching bytes
+    private int originalSize;
+    private int textLines;        // lines of text counted in the decoded pixels (see TextLines); 0 if unknown
+}
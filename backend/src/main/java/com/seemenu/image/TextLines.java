@@ -0,0 +1,93 @@
+package com.seemenu.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+/**
+ * Counts the lines of text in a menu image by horizontal projection
+ * A row crossed by text has many luminance edges along it; the leading between lines has almost none. Each run
+ * of such rows counts as one line, unless it is under half the median run: those are the tails of descenders and
+ * accents split off their line. Sampled every few columns, so it costs one pass over the rows without touching
+ * most pixels. Skewed photos merge lines and undercount; callers treat the result
+ * as an estimate.
+ */
+public final class TextLines {
+
+    private static final int PROBE_WIDTH = 512;     // columns sampled per row
+    private static final int EDGE_THRESHOLD = 40;   // luminance step that counts as a text edge, as in MenuTiler
+    private static final double MIN_EDGES = 0.01;   // edges (fraction of samples) that make a row part of a line
+    private static final double MAX_INK = 0.85;     // rows with edges above which the image is texture, not text
+
+    private TextLines() {
+    }
+
+    /**
+     * Lines of text in the image, or 0 when it has no recognizable lines (blank, or edges in almost every row)
+     */
+    public static int count(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int step = Math.max(1, width / PROBE_WIDTH);
+        int minEdges = Math.max(2, (int) (width / step * MIN_EDGES));
+        // Text under about 1/300 of the height is unreadable to the model anyway; shorter runs are noise
+        int minLineHeight = Math.max(2, height / 300);
+
+        Raster raster = image.getType() == BufferedImage.TYPE_INT_RGB ? image.getRaster() : null;
+        int[] row = new int[width];
+        int[] runs = new int[16];
+        int count = 0;
+        int inkRows = 0;
+        int run = 0;
+        // One row past the bottom, blank, ends the last run
+        for (int y = 0; y <= height; y++) {
+            int edges = 0;
+            if (y < height) {
+                if (raster != null) {
+                    raster.getDataElements(0, y, width, 1, row);
+                } else {
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                }
+                int previous = luminance(row[0]);
+                for (int x = step; x < width; x += step) {
+                    int current = luminance(row[x]);
+                    if (Math.abs(current - previous) > EDGE_THRESHOLD) {
+                        edges++;
+                    }
+                    previous = current;
+                }
+            }
+
+            if (edges >= minEdges) {
+                inkRows++;
+                run++;
+            } else {
+                if (run >= minLineHeight) {
+                    if (count == runs.length) {
+                        runs = Arrays.copyOf(runs, count * 2);
+                    }
+                    runs[count++] = run;
+                }
+                run = 0;
+            }
+        }
+        if (count == 0 || inkRows > height * MAX_INK) {
+            return 0;
+        }
+
+        int[] sorted = Arrays.copyOf(runs, count);
+        Arrays.sort(sorted);
+        int fragment = sorted[count / 2] / 2;
+        int lines = 0;
+        for (int i = 0; i < count; i++) {
+            if (runs[i] >= fragment) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static int luminance(int rgb) {
+        return (299 * ((rgb >> 16) & 0xFF) + 587 * ((rgb >> 8) & 0xFF) + 114 * (rgb & 0xFF)) / 1000;
+    }
+}
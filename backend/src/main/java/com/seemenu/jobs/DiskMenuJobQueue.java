@@ -0,0 +1,236 @@
+package com.seemenu.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk queue, one JSON file per job plus its image until the job finishes
+ * Needs nothing but a local directory, so it works offline. Jobs survive a restart: unfinished ones, including
+ * those that were running when the process stopped, are queued again in submission order on startup. Images are
+ * written and read back through file channels, so they never pass through the heap.
+ */
+@Slf4j
+public class DiskMenuJobQueue implements MenuJobQueue {
+
+    private static final String JOB_SUFFIX = ".json";
+    private static final String IMAGE_SUFFIX = ".img";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Deque<String> queued = new ArrayDeque<>(); // guarded by this
+
+    public DiskMenuJobQueue(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create job directory " + directory, e);
+        }
+        recover();
+    }
+
+    @Override
+    public void enqueue(MenuJob job, ByteBuffer image) {
+        try {
+            // The image goes first, so a job file on disk always has its image
+            write(imageFor(job.getId()), tmp -> {
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    ByteBuffer source = image.duplicate();
+                    while (source.hasRemaining()) {
+                        channel.write(source);
+                    }
+                }
+            });
+            write(jobFor(job.getId()), tmp -> objectMapper.writeValue(tmp.toFile(), job));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store job " + job.getId(), e);
+        }
+        synchronized (this) {
+            queued.addLast(job.getId());
+        }
+    }
+
+    @Override
+    public Optional<MenuJob> claim() {
+        while (true) {
+            String id;
+            synchronized (this) {
+                id = queued.pollFirst();
+            }
+            if (id == null) {
+                return Optional.empty();
+            }
+            Optional<MenuJob> job = get(id);
+            if (job.isEmpty()) {
+                continue; // deleted from under the queue
+            }
+            job.get().setStatus(MenuJob.Status.RUNNING);
+            job.get().setStartedAt(System.currentTimeMillis());
+            update(job.get());
+            return job;
+        }
+    }
+
+    @Override
+    public Optional<ByteBuffer> image(String id) {
+        // The mapping stays valid after the file is deleted when the job finishes
+        try (FileChannel channel = FileChannel.open(imageFor(id), StandardOpenOption.READ)) {
+            return Optional.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Could not read image of job {}: {}", id, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void requeue(MenuJob job) {
+        update(job.toBuilder().status(MenuJob.Status.QUEUED).startedAt(null).build());
+        synchronized (this) {
+            queued.addLast(job.getId());
+        }
+    }
+
+    @Override
+    public void update(MenuJob job) {
+        try {
+            write(jobFor(job.getId()), tmp -> objectMapper.writeValue(tmp.toFile(), job));
+            if (job.isFinished()) {
+                Files.deleteIfExists(imageFor(job.getId()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store job " + job.getId(), e);
+        }
+    }
+
+    @Override
+    public Optional<MenuJob> get(String id) {
+        Path file = jobFor(id);
+        try {
+            return Optional.of(objectMapper.readValue(file.toFile(), MenuJob.class));
+        } catch (NoSuchFileException | FileNotFoundException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Could not read job {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public synchronized int queued() {
+        return queued.size();
+    }
+
+    @Override
+    public long heapBytes() {
+        return 0;
+    }
+
+    @Override
+    public int purgeFinishedBefore(long cutoff) {
+        int purged = 0;
+        for (Path file : listJobs()) {
+            // A finished job's file is last written when it finishes, so newer files cannot be due yet
+            if (lastModified(file) >= cutoff) {
+                continue;
+            }
+            Optional<MenuJob> job = get(idOf(file));
+            if (job.isPresent() && job.get().isFinished() && job.get().getFinishedAt() < cutoff) {
+                try {
+                    Files.deleteIfExists(file);
+                    purged++;
+                } catch (IOException e) {
+                    log.warn("Could not delete job {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return purged;
+    }
+
+    private void recover() {
+        List<MenuJob> unfinished = listJobs().stream()
+                .map(file -> get(idOf(file)))
+                .flatMap(Optional::stream)
+                .filter(job -> !job.isFinished())
+                .sorted(Comparator.comparingLong(MenuJob::getCreatedAt))
+                .collect(Collectors.toList());
+        for (MenuJob job : unfinished) {
+            if (job.getStatus() == MenuJob.Status.RUNNING) {
+                update(job.toBuilder().status(MenuJob.Status.QUEUED).startedAt(null).build());
+            }
+            queued.addLast(job.getId());
+        }
+        if (!unfinished.isEmpty()) {
+            log.info("Recovered {} unfinished job(s) from {}", unfinished.size(), directory);
+        }
+    }
+
+    /**
+     * Writes to a temp file and moves it into place, so readers never see a partial file
+     */
+    private void write(Path target, FileWriter writer) throws IOException {
+        Path tmp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            writer.write(tmp);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private List<Path> listJobs() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(JOB_SUFFIX))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.warn("Could not list job directory {}: {}", directory, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private String idOf(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.length() - JOB_SUFFIX.length());
+    }
+
+    private Path jobFor(String id) {
+        return directory.resolve(id + JOB_SUFFIX);
+    }
+
+    private Path imageFor(String id) {
+        return directory.resolve(id + IMAGE_SUFFIX);
+    }
+
+    @FunctionalInterface
+    private interface FileWriter {
+        void write(Path file) throws IOException;
+    }
+}
@@ -0,0 +1,105 @@
+package com.seemenu.jobs;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-process queue, the default; jobs do not survive a restart
+ * Jobs are copied in and out so callers never share an instance with the queue. Images are kept as uploaded until
+ * their job finishes: those on the heap count against menu.jobs.max-queued-bytes, memory-mapped upload spills do
+ * not.
+ */
+public class InMemoryMenuJobQueue implements MenuJobQueue {
+
+    private final Map<String, MenuJob> jobs = new HashMap<>();
+    private final Map<String, ByteBuffer> images = new HashMap<>();
+    private final Deque<String> queued = new ArrayDeque<>();
+    private long imageBytes;
+
+    @Override
+    public synchronized void enqueue(MenuJob job, ByteBuffer image) {
+        jobs.put(job.getId(), job.toBuilder().build());
+        images.put(job.getId(), retained(image));
+        imageBytes += heapBytes(image);
+        queued.addLast(job.getId());
+    }
+
+    @Override
+    public synchronized Optional<MenuJob> claim() {
+        String id = queued.pollFirst();
+        if (id == null) {
+            return Optional.empty();
+        }
+        MenuJob job = jobs.get(id);
+        job.setStatus(MenuJob.Status.RUNNING);
+        job.setStartedAt(System.currentTimeMillis());
+        return Optional.of(job.toBuilder().build());
+    }
+
+    @Override
+    public synchronized Optional<ByteBuffer> image(String id) {
+        return Optional.ofNullable(images.get(id)).map(ByteBuffer::duplicate);
+    }
+
+    @Override
+    public synchronized void requeue(MenuJob job) {
+        jobs.put(job.getId(), job.toBuilder().status(MenuJob.Status.QUEUED).startedAt(null).build());
+        queued.addLast(job.getId());
+    }
+
+    @Override
+    public synchronized void update(MenuJob job) {
+        jobs.put(job.getId(), job.toBuilder().build());
+        if (job.isFinished()) {
+            ByteBuffer image = images.remove(job.getId());
+            if (image != null) {
+                imageBytes -= heapBytes(image);
+            }
+        }
+    }
+
+    @Override
+    public synchronized Optional<MenuJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(job -> job.toBuilder().build());
+    }
+
+    @Override
+    public synchronized int queued() {
+        return queued.size();
+    }
+
+    @Override
+    public synchronized long heapBytes() {
+        return imageBytes;
+    }
+
+    @Override
+    public synchronized int purgeFinishedBefore(long cutoff) {
+        int before = jobs.size();
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < cutoff);
+        return before - jobs.size();
+    }
+
+    /**
+     * A heap image cut from a larger body is copied out, so the queue does not keep the whole body alive
+     */
+    private static ByteBuffer retained(ByteBuffer image) {
+        if (image.isDirect() || image.hasArray() && image.remaining() == image.array().length) {
+            return image.duplicate();
+        }
+        ByteBuffer copy = ByteBuffer.allocate(image.remaining());
+        copy.put(image.duplicate()).flip();
+        return copy;
+    }
+
+    /**
+     * A memory-mapped spill is direct, so it holds no heap
+     */
+    static long heapBytes(ByteBuffer image) {
+        return image.isDirect() ? 0 : image.remaining();
+    }
+}
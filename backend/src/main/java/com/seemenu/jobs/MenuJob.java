@@ -0,0 +1,35 @@
+package com.seemenu.jobs;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.seemenu.dto.MenuAnalysisResponse;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One queued menu analysis; the uploaded image is kept by the queue next to it until the job finishes
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuJob {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    private String id;
+    private Status status;
+    private String filename;
+    private String contentType;
+    private int attempts;
+    private long createdAt; // epoch millis
+    private Long startedAt;
+    private Long finishedAt;
+    private MenuAnalysisResponse result; // set once the job is DONE or FAILED
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+}
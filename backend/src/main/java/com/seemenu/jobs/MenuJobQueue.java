@@ -0,0 +1,54 @@
+package com.seemenu.jobs;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Backing store of the job API: jobs, their images and the order in which they are worked off
+ * Jobs are claimed by the workers of a single process; implementations need not coordinate across processes.
+ */
+public interface MenuJobQueue {
+
+    /**
+     * Stores a new job and its image (the remaining bytes of the buffer) and appends it to the queue
+     * The image may be a memory-mapped upload spill; implementations keep or write it without copying it to the heap.
+     */
+    void enqueue(MenuJob job, ByteBuffer image);
+
+    /**
+     * The oldest queued job, now marked RUNNING, or empty if none is waiting
+     */
+    Optional<MenuJob> claim();
+
+    /**
+     * The image of a job that has not finished yet
+     */
+    Optional<ByteBuffer> image(String id);
+
+    /**
+     * Puts a claimed job back at the end of the queue
+     */
+    void requeue(MenuJob job);
+
+    /**
+     * Stores a job's new state; the image of a finished job is dropped
+     */
+    void update(MenuJob job);
+
+    Optional<MenuJob> get(String id);
+
+    /**
+     * Jobs waiting to be claimed
+     */
+    int queued();
+
+    /**
+     * Bytes of the images of unfinished jobs held on the heap; 0 for stores that keep them elsewhere
+     */
+    long heapBytes();
+
+    /**
+     * Deletes jobs that finished before the cutoff (epoch millis) and returns how many
+     */
+    int purgeFinishedBefore(long cutoff);
+}
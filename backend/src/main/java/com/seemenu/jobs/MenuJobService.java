@@ -0,0 +1,292 @@
+package com.seemenu.jobs;
+
+import com.seemenu.dto.MenuAnalysisResponse;
+import com.seemenu.model.BinaryMultipartFile;
+import com.seemenu.openai.ModelUnavailableException;
+import com.seemenu.service.MenuService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.util.NamedThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Asynchronous menu analysis: uploads are queued as jobs and worked off by a fixed pool of workers
+ * Each worker runs one analysis at a time through MenuService, so the load on the model follows the worker
+ * count however many clients submit or poll. Jobs the model has no capacity for are put back in the queue and
+ * the worker backs off for the Retry-After; they fail once max-attempts is reached.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(value = "menu.jobs.enabled", havingValue = "true", matchIfMissing = true)
+public class MenuJobService implements MeterBinder {
+
+    private static final Pattern JOB_ID =
+            Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final long IDLE_POLL_MILLIS = 1000;
+    private static final long PURGE_INTERVAL_MILLIS = 60_000;
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private final MenuJobQueue queue;
+    private final MenuService menuService;
+
+    private final Object work = new Object();
+    private final ConcurrentMap<String, Sinks.One<MenuJob>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong done = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong lastPurge = new AtomicLong();
+    private ExecutorService workers;
+    private volatile boolean stopped;
+
+    @Value("${menu.jobs.workers:4}")
+    private int workerCount;
+
+    @Value("${menu.jobs.max-queued:10000}")
+    private int maxQueued;
+
+    @Value("${menu.jobs.max-queued-bytes:256MB}")
+    private DataSize maxQueuedBytes;
+
+    @Value("${menu.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${menu.jobs.timeout:5m}")
+    private Duration timeout;
+
+    @Value("${menu.jobs.max-wait:30s}")
+    private Duration maxWait;
+
+    @Value("${menu.jobs.retention:24h}")
+    private Duration retention;
+
+    @PostConstruct
+    void start() {
+        workers = Executors.newFixedThreadPool(workerCount, new NamedThreadFactory("menu-job-worker"));
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
+        log.info("Started {} menu job worker(s), {} job(s) queued", workerCount, queue.queued());
+    }
+
+    @PreDestroy
+    void stop() {
+        // Jobs interrupted here stay RUNNING on disk and are queued again on the next start
+        stopped = true;
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queues one job per image and returns them in the same order
+     */
+    public List<MenuJob> submit(List<MultipartFile> images) throws IOException {
+        if (queue.queued() + images.size() > maxQueued) {
+            throw new ModelUnavailableException("Job queue is full (" + maxQueued + " jobs)", 0, Duration.ofMinutes(1));
+        }
+        // The count alone would let the in-memory store hold max-queued full-size images
+        List<ByteBuffer> contents = new ArrayList<>();
+        for (MultipartFile image : images) {
+            contents.add(BinaryMultipartFile.contentOf(image));
+        }
+        long bytes = contents.stream().mapToLong(InMemoryMenuJobQueue::heapBytes).sum();
+        if (queue.heapBytes() + bytes > maxQueuedBytes.toBytes()) {
+            throw new ModelUnavailableException("Job queue is full (" + queue.heapBytes() / 1024 + " KB of images)", 0,
+                    Duration.ofMinutes(1));
+        }
+
+        List<MenuJob> jobs = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            MultipartFile image = images.get(i);
+            MenuJob job = MenuJob.builder()
+                    .id(UUID.randomUUID().toString())
+                    .status(MenuJob.Status.QUEUED)
+                    .filename(image.getOriginalFilename())
+                    .contentType(image.getContentType())
+                    .createdAt(System.currentTimeMillis())
+                    .build();
+            queue.enqueue(job, contents.get(i));
+            jobs.add(job);
+        }
+        synchronized (work) {
+            work.notifyAll();
+        }
+        log.info("Queued {} menu job(s), {} waiting", jobs.size(), queue.queued());
+        return jobs;
+    }
+
+    /**
+     * The job's current state, or once it has finished when that happens within wait (capped at max-wait)
+     * Empty if there is no such job.
+     */
+    public Mono<MenuJob> find(String id, Duration wait) {
+        Duration capped = wait.compareTo(maxWait) > 0 ? maxWait : wait;
+        return lookup(id).flatMap(job -> {
+            if (job.isFinished() || capped.isZero() || capped.isNegative()) {
+                return Mono.just(job);
+            }
+            Sinks.One<MenuJob> sink = waiters.computeIfAbsent(id, key -> Sinks.one());
+            // The job may have finished between the first lookup and registering the waiter
+            return lookup(id).flatMap(current -> {
+                if (current.isFinished()) {
+                    waiters.remove(id, sink);
+                    return Mono.just(current);
+                }
+                return sink.asMono().timeout(capped, lookup(id));
+            });
+        });
+    }
+
+    private Mono<MenuJob> lookup(String id) {
+        if (!JOB_ID.matcher(id).matches()) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> queue.get(id).orElse(null))
+                .subscribeOn(Schedulers.boundedElastic()); // the disk queue reads a file
+    }
+
+    private void work() {
+        while (!stopped) {
+            try {
+                Optional<MenuJob> job = queue.claim();
+                if (job.isPresent()) {
+                    process(job.get());
+                } else {
+                    purgeIfDue();
+                    synchronized (work) {
+                        work.wait(IDLE_POLL_MILLIS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Menu job worker failed", e);
+            }
+        }
+    }
+
+    private void process(MenuJob job) throws InterruptedException {
+        job.setAttempts(job.getAttempts() + 1);
+        Optional<ByteBuffer> image = queue.image(job.getId());
+        if (image.isEmpty()) {
+            finish(job, MenuJob.Status.FAILED, failure("The uploaded image is no longer available"));
+            return;
+        }
+
+        running.incrementAndGet();
+        try {
+            MenuAnalysisResponse response = menuService
+                    .analyzeMenu(new BinaryMultipartFile(image.get(), job.getContentType(), job.getFilename()))
+                    .block(timeout);
+            finish(job, response != null && response.isSuccess() ? MenuJob.Status.DONE : MenuJob.Status.FAILED,
+                    response != null ? response : failure("Menu analysis returned no result"));
+        } catch (ModelUnavailableException e) {
+            if (job.getAttempts() >= maxAttempts) {
+                finish(job, MenuJob.Status.FAILED, failure("Menu analysis is busy; gave up after "
+                        + job.getAttempts() + " attempts"));
+                return;
+            }
+            retried.incrementAndGet();
+            queue.requeue(job);
+            Duration backoff = e.getRetryAfter().compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : e.getRetryAfter();
+            log.info("Job {} requeued (attempt {}): {}; worker backs off {}",
+                    job.getId(), job.getAttempts(), e.getMessage(), backoff);
+            Thread.sleep(backoff.toMillis());
+        } catch (RuntimeException e) {
+            if (stopped) {
+                return; // interrupted by shutdown, not a failure of the job
+            }
+            log.error("Menu job {} failed", job.getId(), e);
+            finish(job, MenuJob.Status.FAILED, failure("Error processing menu: " + e.getMessage()));
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    private void finish(MenuJob job, MenuJob.Status status, MenuAnalysisResponse result) {
+        job.setStatus(status);
+        job.setFinishedAt(System.currentTimeMillis());
+        job.setResult(result);
+        queue.update(job);
+        (status == MenuJob.Status.DONE ? done : failed).incrementAndGet();
+
+        Sinks.One<MenuJob> sink = waiters.remove(job.getId());
+        if (sink != null) {
+            sink.tryEmitValue(job);
+        }
+    }
+
+    private void purgeIfDue() {
+        long now = System.currentTimeMillis();
+        long last = lastPurge.get();
+        if (now - last < PURGE_INTERVAL_MILLIS || !lastPurge.compareAndSet(last, now)) {
+            return;
+        }
+        int purged = queue.purgeFinishedBefore(now - retention.toMillis());
+        if (purged > 0) {
+            log.info("Purged {} finished menu job(s) older than {}", purged, retention);
+        }
+    }
+
+    private MenuAnalysisResponse failure(String message) {
+        return MenuAnalysisResponse.builder()
+                .success(false)
+                .message(message)
+                .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("seemenu.jobs.queued", queue, MenuJobQueue::queued)
+                .description("Menu jobs waiting for a worker")
+                .register(registry);
+        Gauge.builder("seemenu.jobs.heap_bytes", queue, MenuJobQueue::heapBytes)
+                .description("Bytes of queued and running job images held on the heap")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("seemenu.jobs.running", running, AtomicInteger::get)
+                .description("Menu jobs being analyzed")
+                .register(registry);
+        FunctionCounter.builder("seemenu.jobs", done, AtomicLong::get)
+                .description("Menu jobs finished, failed or put back in the queue")
+                .tag("outcome", "done")
+                .register(registry);
+        FunctionCounter.builder("seemenu.jobs", failed, AtomicLong::get)
+                .description("Menu jobs finished, failed or put back in the queue")
+                .tag("outcome", "failed")
+                .register(registry);
+        FunctionCounter.builder("seemenu.jobs", retried, AtomicLong::get)
+                .description("Menu jobs finished, failed or put back in the queue")
+                .tag("outcome", "retried")
+                .register(registry);
+    }
+}
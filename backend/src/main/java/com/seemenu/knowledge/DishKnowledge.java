@@ -0,0 +1,55 @@
+package com.seemenu.knowledge;
+
+import com.seemenu.model.DishInfo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What the index knows about a dish: the enrichment fields of DishInfo, keyed by name
+ * Never null lists; an empty list means the dish was seen without that information.
+ */
+public record DishKnowledge(String name, List<String> ingredients, List<String> allergens,
+                            List<String> dietaryInfo) {
+
+    public DishKnowledge {
+        ingredients = List.copyOf(ingredients);
+        allergens = List.copyOf(allergens);
+        dietaryInfo = List.copyOf(dietaryInfo);
+    }
+
+    public static DishKnowledge of(DishInfo dish) {
+        return new DishKnowledge(dish.getName(), orEmpty(dish.getIngredients()), orEmpty(dish.getAllergens()),
+                orEmpty(dish.getDietaryInfo()));
+    }
+
+    /**
+     * Combines two observations of the same dish, erring on the side of caution
+     * Allergens are the union, so no observed allergen is ever dropped; dietary claims ("vegan", "gluten-free")
+     * are the intersection, so one is only kept when every observation agreed. Ingredients keep the first.
+     */
+    public DishKnowledge merge(DishKnowledge other) {
+        Set<String> allAllergens = new LinkedHashSet<>(allergens);
+        allAllergens.addAll(other.allergens);
+        List<String> agreedDietaryInfo = new ArrayList<>(dietaryInfo);
+        agreedDietaryInfo.retainAll(other.dietaryInfo);
+        return new DishKnowledge(name, ingredients.isEmpty() ? other.ingredients : ingredients,
+                List.copyOf(allAllergens), agreedDietaryInfo);
+    }
+
+    /**
+     * Fills the enrichment fields of a dish extracted without them; copies, so callers may modify the lists
+     */
+    public void applyTo(DishInfo dish) {
+        dish.setIngredients(new ArrayList<>(ingredients));
+        dish.setAllergens(new ArrayList<>(allergens));
+        dish.setDietaryInfo(new ArrayList<>(dietaryInfo));
+    }
+
+    private static List<String> orEmpty(List<String> values) {
+        return values != null ? values.stream().filter(value -> value != null && !value.isBlank()).toList()
+                : List.of();
+    }
+}
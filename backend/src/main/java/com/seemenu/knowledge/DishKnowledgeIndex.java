@@ -0,0 +1,193 @@
+package com.seemenu.knowledge;
+
+import com.seemenu.model.DishInfo;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ingredients, allergens and dietary info of dishes seen before, looked up by dish name in any word order
+ * Learns from every analysis the service stores. Dishes learned since the last flush live in a small on-heap
+ * map; every flush-every of them the memory-mapped table (DishKnowledgeTable) is rewritten with them merged in,
+ * so the file is warm again after a restart. Once the index holds min-entries dishes, AIMenuAnalyzer extracts
+ * only names and prices and asks the model about the dishes not found here.
+ * <p>
+ * A hit must have the same words as the known dish, not merely similar ones: "Spicy Peanut Chicken Noodle Bowl"
+ * and "Spicy Sesame Chicken Noodle Bowl" share all words but one, not their allergens, and whatever is
+ * filled in here is learned again under the new name.
+ */
+@Component
+@Slf4j
+public class DishKnowledgeIndex implements MeterBinder {
+
+    // By DishNames.key, so a dish learned under one word order is found under any other
+    private final ConcurrentMap<String, DishKnowledge> learned = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile DishKnowledgeTable table = DishKnowledgeTable.EMPTY;
+
+    @Value("${menu.knowledge.enabled:false}")
+    private boolean enabled;
+
+    @Value("${menu.knowledge.file:/tmp/seemenu-knowledge/dishes.idx}")
+    private Path file;
+
+    @Value("${menu.knowledge.min-entries:200}")
+    private int minEntries;
+
+    @Value("${menu.knowledge.flush-every:100}")
+    private int flushEvery;
+
+    @Value("${menu.knowledge.max-entries:200000}")
+    private int maxEntries;
+
+    @PostConstruct
+    void load() {
+        if (!enabled || !Files.exists(file)) {
+            return;
+        }
+        try {
+            table = DishKnowledgeTable.open(file);
+            log.info("Loaded {} known dishes from {}", table.size(), file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable dish knowledge table {}: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    /**
+     * Whether the index knows enough dishes for the analyzer to rely on it
+     */
+    public boolean isReady() {
+        return enabled && size() >= minEntries;
+    }
+
+    /**
+     * Known dishes; a dish learned again since the last flush is counted twice until the next one
+     */
+    public int size() {
+        return table.size() + learned.size();
+    }
+
+    /**
+     * The known dish with the same words as name, in any order, if there is one
+     */
+    public Optional<DishKnowledge> lookup(String name) {
+        String key = DishNames.key(name);
+        DishKnowledge recent = learned.get(key);
+        Optional<DishKnowledge> known = Optional.ofNullable(recent != null ? recent : table.find(key));
+        if (known.isEmpty()) {
+            misses.incrementAndGet();
+            return known;
+        }
+        hits.incrementAndGet();
+        log.debug("Dish '{}' matched known dish '{}'", name, known.get().name());
+        return known;
+    }
+
+    /**
+     * Adds what an analysis found out about its dishes; dishes without ingredients carry nothing to learn
+     */
+    public void learn(List<DishInfo> dishes) {
+        if (!enabled) {
+            return;
+        }
+        for (DishInfo dish : dishes) {
+            String key = DishNames.key(dish.getName());
+            if (key.isEmpty() || dish.getIngredients() == null || dish.getIngredients().isEmpty()) {
+                continue;
+            }
+            if (!learned.containsKey(key) && learned.size() >= Math.min(maxEntries, flushEvery * 10)) {
+                // Flushing keeps failing (e.g. a read-only file system); keep what is known rather than grow
+                continue;
+            }
+            DishKnowledge knowledge = DishKnowledge.of(dish);
+            learned.merge(key, knowledge, DishKnowledge::merge);
+        }
+
+        if (learned.size() >= flushEvery && !flushing.get()) {
+            Schedulers.boundedElastic().schedule(this::flush);
+        }
+    }
+
+    /**
+     * Rewrites the table with the dishes learned since the last flush merged in
+     */
+    public void flush() {
+        if (learned.isEmpty() || !flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Map<String, DishKnowledge> flushed = Map.copyOf(learned);
+            Map<String, DishKnowledge> merged = new LinkedHashMap<>();
+            for (DishKnowledge known : table.entries()) {
+                merged.put(DishNames.key(known.name()), known);
+            }
+            flushed.forEach((key, recent) -> {
+                if (merged.containsKey(key) || merged.size() < maxEntries) {
+                    merged.merge(key, recent, DishKnowledge::merge);
+                }
+            });
+
+            DishKnowledgeTable.write(file, new ArrayList<>(merged.values()));
+            table = DishKnowledgeTable.open(file);
+            // Dishes learned again while writing stay in the map until the next flush
+            flushed.forEach(learned::remove);
+            log.info("Wrote {} known dishes to {}", table.size(), file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write dish knowledge table {}: {}", file, e.getMessage());
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("seemenu.knowledge.entries", this, DishKnowledgeIndex::size)
+                .description("Dishes in the dish knowledge index")
+                .register(registry);
+        FunctionCounter.builder("seemenu.knowledge.lookups", this, DishKnowledgeIndex::getHits)
+                .description("Dish knowledge lookups by whether a known dish had the same name")
+                .tag("outcome", "hit")
+                .register(registry);
+        FunctionCounter.builder("seemenu.knowledge.lookups", this, DishKnowledgeIndex::getMisses)
+                .description("Dish knowledge lookups by whether a known dish had the same name")
+                .tag("outcome", "miss")
+                .register(registry);
+    }
+}
@@ -0,0 +1,228 @@
+package com.seemenu.knowledge;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable dish knowledge table in a memory-mapped file, looked up by the word key of a dish name (DishNames.key)
+ * Opening only maps the file and reads its header, so a table of any size is usable right after a cold start;
+ * pages are faulted in by the lookups that touch them and live in the page cache, not on the heap.
+ * <p>
+ * Layout (big-endian): header (magic, version, entries), a 64-bit hash of each entry's key in ascending order
+ * (long), data offsets per entry (entries + 1 ints), then the entries themselves in the same order as modified
+ * UTF-8 strings (name, then ingredients, allergens and dietary info, each a short count followed by the strings).
+ * A lookup binary-searches the hashes and checks the name of each entry with that hash.
+ */
+public final class DishKnowledgeTable {
+
+    private static final int MAGIC = 0x534D444B; // "SMDK"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    public static final DishKnowledgeTable EMPTY = new DishKnowledgeTable(ByteBuffer.wrap(layout(List.of())));
+
+    // Only absolute gets are used, so concurrent lookups need no synchronization
+    private final ByteBuffer buffer;
+    private final int entries;
+    private final int hashesAt;
+    private final int dataStartsAt;
+    private final int dataAt;
+
+    private DishKnowledgeTable(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a dish knowledge table");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported dish knowledge table version " + buffer.getInt(4));
+        }
+        this.buffer = buffer;
+        this.entries = buffer.getInt(8);
+        this.hashesAt = HEADER_BYTES;
+        this.dataStartsAt = hashesAt + entries * Long.BYTES;
+        this.dataAt = dataStartsAt + (entries + 1) * Integer.BYTES;
+        if (dataAt > buffer.capacity() || dataAt + buffer.getInt(dataStartsAt + entries * Integer.BYTES)
+                > buffer.capacity()) {
+            throw new IllegalArgumentException("Truncated dish knowledge table");
+        }
+    }
+
+    /**
+     * Maps a table written by write; the mapping stays valid after the file is replaced
+     */
+    public static DishKnowledgeTable open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new DishKnowledgeTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes entries as a new table, replacing the file atomically
+     * Entries are expected to have distinct keys; one with a string too long for the format is skipped.
+     */
+    public static void write(Path file, List<DishKnowledge> knowledge) throws IOException {
+        List<Encoded> encoded = new ArrayList<>(knowledge.size());
+        for (DishKnowledge entry : knowledge) {
+            byte[] data = encode(entry);
+            if (data != null) {
+                encoded.add(new Encoded(hash(DishNames.key(entry.name())), data));
+            }
+        }
+        encoded.sort(Comparator.comparingLong(Encoded::hash));
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, layout(encoded));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    public DishKnowledge get(int id) {
+        int from = buffer.getInt(dataStartsAt + id * Integer.BYTES);
+        int to = buffer.getInt(dataStartsAt + (id + 1) * Integer.BYTES);
+        byte[] encoded = new byte[to - from];
+        buffer.get(dataAt + from, encoded);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            return new DishKnowledge(in.readUTF(), readList(in), readList(in), readList(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt dish knowledge entry " + id, e);
+        }
+    }
+
+    /**
+     * All entries, in id order; used to rewrite the table with new knowledge added
+     */
+    public List<DishKnowledge> entries() {
+        List<DishKnowledge> all = new ArrayList<>(entries);
+        for (int id = 0; id < entries; id++) {
+            all.add(get(id));
+        }
+        return all;
+    }
+
+    /**
+     * The entry whose name has the given key (DishNames.key), or null when there is none
+     */
+    public DishKnowledge find(String key) {
+        if (key.isEmpty()) {
+            return null;
+        }
+        long hash = hash(key);
+        for (int id = first(hash); id < entries && buffer.getLong(hashesAt + id * Long.BYTES) == hash; id++) {
+            DishKnowledge entry = get(id);
+            if (DishNames.key(entry.name()).equals(key)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The first id whose hash is not below hash
+     */
+    private int first(long hash) {
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(hashesAt + mid * Long.BYTES) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 chars of the key, so distinct keys practically never share a hash
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static byte[] layout(List<Encoded> encoded) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(encoded.size());
+            for (Encoded entry : encoded) {
+                out.writeLong(entry.hash());
+            }
+            int offset = 0;
+            for (Encoded entry : encoded) {
+                out.writeInt(offset);
+                offset += entry.data().length;
+            }
+            out.writeInt(offset);
+            for (Encoded entry : encoded) {
+                out.write(entry.data());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encode(DishKnowledge entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(entry.name());
+            writeList(out, entry.ingredients());
+            writeList(out, entry.allergens());
+            writeList(out, entry.dietaryInfo());
+        } catch (UTFDataFormatException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeList(DataOutputStream out, List<String> values) throws IOException {
+        int count = Math.min(values.size(), Short.MAX_VALUE);
+        out.writeShort(count);
+        for (int i = 0; i < count; i++) {
+            out.writeUTF(values.get(i));
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int count = in.readShort();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    private record Encoded(long hash, byte[] data) {
+    }
+}
@@ -0,0 +1,42 @@
+package com.seemenu.knowledge;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalization of dish names and the key two names share when they are the same dish
+ * The key is the distinct words of the normalized name in sorted order, so word order does not matter
+ * ("Pizza Margherita" equals "Margherita Pizza") while any other word makes a different dish.
+ */
+public final class DishNames {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Lower case, accents stripped, anything but letters and digits collapsed to single spaces
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String decomposed = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(decomposed.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Sorted, distinct words of a name, joined by single spaces; empty for a name without letters or digits
+     */
+    public static String key(String name) {
+        String normalized = normalize(name);
+        if (normalized.isEmpty()) {
+            return "";
+        }
+        return String.join(" ", Arrays.stream(normalized.split(" ")).sorted().distinct().toArray(String[]::new));
+    }
+
+    private DishNames() {
+    }
+}
@@ -0,0 +1,44 @@
+package com.seemenu.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Times how long an upload body takes to arrive, from the first read until the last byte (stage body_read)
+ * Only on the WebFlux stack: on Lambda the body is already in memory when the event is handed over.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class BodyReadTimingFilter implements WebFilter {
+
+    private final PipelineMetrics metrics;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (exchange.getRequest().getMethod() != HttpMethod.POST
+                || !exchange.getRequest().getPath().value().startsWith("/api/menu/")) {
+            return chain.filter(exchange);
+        }
+        ServerHttpRequestDecorator timed = new ServerHttpRequestDecorator(exchange.getRequest()) {
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return Flux.defer(() -> {
+                    long start = System.nanoTime();
+                    return super.getBody()
+                            .doOnComplete(() -> metrics.recordStage("body_read", System.nanoTime() - start));
+                });
+            }
+        };
+        return chain.filter(exchange.mutate().request(timed).build());
+    }
+}
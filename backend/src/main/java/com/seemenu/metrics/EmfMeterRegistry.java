@@ -0,0 +1,229 @@
+package com.seemenu.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.step.StepMeterRegistry;
+import io.micrometer.core.instrument.step.StepRegistryConfig;
+import io.micrometer.core.instrument.util.NamedThreadFactory;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Publishes meters as CloudWatch Embedded Metric Format (EMF) log lines, one JSON line per meter and step
+ * On Lambda, stdout goes to CloudWatch Logs, which extracts the metrics without a PutMetricData call or agent.
+ * Meter tags become dimensions; timers publish count, sum and max in milliseconds. Meters with nothing to report
+ * in a step are skipped to keep log volume down.
+ * <p>
+ * A frozen Lambda sandbox runs no publisher thread, so in per-invocation mode there is none: the Lambda handlers
+ * call endInvocation() once each invocation is answered, and each flush is one step. The step meters read a clock
+ * that only moves on when a flush starts, so each flush reports exactly what the invocation since the last one
+ * recorded; timers still measure durations with the real clock.
+ */
+public class EmfMeterRegistry extends StepMeterRegistry {
+
+    private static final Set<EmfMeterRegistry> PER_INVOCATION = ConcurrentHashMap.newKeySet();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String namespace;
+    private final Consumer<String> sink;
+    private final Clock wallClock;
+    private final InvocationClock invocationClock;
+
+    /**
+     * A registry that publishes every step from a background thread
+     */
+    public EmfMeterRegistry(String namespace, Duration step, Clock clock, Consumer<String> sink) {
+        this(namespace, step, clock, sink, null);
+        start(new NamedThreadFactory("emf-metrics-publisher"));
+    }
+
+    private EmfMeterRegistry(String namespace, Duration step, Clock clock, Consumer<String> sink,
+                             InvocationClock invocationClock) {
+        super(config(step), invocationClock != null ? invocationClock : clock);
+        this.namespace = namespace;
+        this.sink = sink;
+        this.wallClock = clock;
+        this.invocationClock = invocationClock;
+    }
+
+    /**
+     * A registry that publishes only when endInvocation() is called
+     */
+    public static EmfMeterRegistry perInvocation(String namespace, Duration step, Clock clock,
+                                                 Consumer<String> sink) {
+        EmfMeterRegistry registry = new EmfMeterRegistry(namespace, step, clock, sink,
+                new InvocationClock(clock, step.toMillis()));
+        PER_INVOCATION.add(registry);
+        return registry;
+    }
+
+    /**
+     * Publishes what every per-invocation registry recorded since the last call; the Lambda handlers call this
+     * after each invocation, before the sandbox can be frozen
+     */
+    public static void endInvocation() {
+        PER_INVOCATION.forEach(EmfMeterRegistry::flush);
+    }
+
+    /**
+     * Ends the current step and publishes it
+     */
+    public synchronized void flush() {
+        if (invocationClock != null) {
+            invocationClock.nextStep();
+        }
+        publish();
+    }
+
+    /**
+     * Publishes what was recorded since the last step or flush, then stops
+     */
+    @Override
+    public void close() {
+        PER_INVOCATION.remove(this);
+        super.close();
+    }
+
+    @Override
+    protected void publish() {
+        long timestamp = wallClock.wallTime();
+        for (Meter meter : getMeters()) {
+            Map<String, Value> values = values(meter);
+            values.values().removeIf(value -> Double.isNaN(value.value()));
+            if (!values.isEmpty()) {
+                sink.accept(line(meter, values, timestamp));
+            }
+        }
+    }
+
+    @Override
+    protected TimeUnit getBaseTimeUnit() {
+        return TimeUnit.MILLISECONDS;
+    }
+
+    private Map<String, Value> values(Meter meter) {
+        String name = meter.getId().getName();
+        Map<String, Value> values = new LinkedHashMap<>();
+        meter.use(
+                gauge -> values.put(name, new Value(gauge.value(), "None")),
+                counter -> putCount(values, name, counter.count()),
+                timer -> {
+                    if (timer.count() > 0) {
+                        values.put(name + ".count", new Value(timer.count(), "Count"));
+                        values.put(name + ".sum", new Value(timer.totalTime(TimeUnit.MILLISECONDS), "Milliseconds"));
+                        values.put(name + ".max", new Value(timer.max(TimeUnit.MILLISECONDS), "Milliseconds"));
+                    }
+                },
+                summary -> {
+                    if (summary.count() > 0) {
+                        String unit = "bytes".equals(meter.getId().getBaseUnit()) ? "Bytes" : "None";
+                        values.put(name + ".count", new Value(summary.count(), "Count"));
+                        values.put(name + ".sum", new Value(summary.totalAmount(), unit));
+                        values.put(name + ".max", new Value(summary.max(), unit));
+                    }
+                },
+                longTaskTimer -> values.put(name + ".active", new Value(longTaskTimer.activeTasks(), "Count")),
+                timeGauge -> values.put(name, new Value(timeGauge.value(TimeUnit.MILLISECONDS), "Milliseconds")),
+                functionCounter -> putCount(values, name, functionCounter.count()),
+                functionTimer -> {
+                    if (functionTimer.count() > 0) {
+                        values.put(name + ".count", new Value(functionTimer.count(), "Count"));
+                        values.put(name + ".sum",
+                                new Value(functionTimer.totalTime(TimeUnit.MILLISECONDS), "Milliseconds"));
+                    }
+                },
+                other -> other.measure().forEach(measurement -> values.put(
+                        name + "." + measurement.getStatistic().getTagValueRepresentation(),
+                        new Value(measurement.getValue(), "None"))));
+        return values;
+    }
+
+    private static void putCount(Map<String, Value> values, String name, double count) {
+        if (count > 0) {
+            values.put(name, new Value(count, "Count"));
+        }
+    }
+
+    private String line(Meter meter, Map<String, Value> values, long timestamp) {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode directive = root.putObject("_aws")
+                .put("Timestamp", timestamp)
+                .putArray("CloudWatchMetrics")
+                .addObject()
+                .put("Namespace", namespace);
+        ArrayNode dimensions = directive.putArray("Dimensions").addArray();
+        ArrayNode metrics = directive.putArray("Metrics");
+
+        for (Tag tag : meter.getId().getTagsAsIterable()) {
+            dimensions.add(tag.getKey());
+            root.put(tag.getKey(), tag.getValue());
+        }
+        values.forEach((name, value) -> {
+            metrics.addObject().put("Name", name).put("Unit", value.unit());
+            root.put(name, value.value());
+        });
+        return root.toString();
+    }
+
+    private static StepRegistryConfig config(Duration step) {
+        return new StepRegistryConfig() {
+            @Override
+            public String prefix() {
+                return "emf";
+            }
+
+            @Override
+            public String get(String key) {
+                return null;
+            }
+
+            @Override
+            public Duration step() {
+                return step;
+            }
+        };
+    }
+
+    private record Value(double value, String unit) {
+    }
+
+    /**
+     * Wall time that advances one step per flush, so step meters roll over exactly when a flush starts
+     */
+    private static final class InvocationClock implements Clock {
+
+        private final Clock clock;
+        private final long stepMillis;
+        private final AtomicLong steps = new AtomicLong(1);
+
+        private InvocationClock(Clock clock, long stepMillis) {
+            this.clock = clock;
+            this.stepMillis = stepMillis;
+        }
+
+        private void nextStep() {
+            steps.incrementAndGet();
+        }
+
+        @Override
+        public long wallTime() {
+            return steps.get() * stepMillis;
+        }
+
+        @Override
+        public long monotonicTime() {
+            return clock.monotonicTime();
+        }
+    }
+}
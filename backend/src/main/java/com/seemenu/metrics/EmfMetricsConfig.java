@@ -0,0 +1,43 @@
+package com.seemenu.metrics;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * CloudWatch EMF output for the meters, enabled in the lambda profile (menu.metrics.emf.enabled)
+ * Lines are written straight to stdout: the log pattern would otherwise prefix them and CloudWatch needs bare JSON.
+ * With flush-per-invocation (set by the lambda profile) the Lambda handlers publish after each invocation instead
+ * of a background thread every step, which a frozen sandbox would delay or never run.
+ */
+@Configuration
+@ConditionalOnProperty(name = "menu.metrics.emf.enabled", havingValue = "true")
+public class EmfMetricsConfig {
+
+    @Value("${menu.metrics.emf.namespace:SeeMenu}")
+    private String namespace;
+
+    @Value("${menu.metrics.emf.step:1m}")
+    private Duration step;
+
+    @Value("${menu.metrics.emf.meter-prefix:seemenu.}")
+    private String meterPrefix;
+
+    @Value("${menu.metrics.emf.flush-per-invocation:false}")
+    private boolean flushPerInvocation;
+
+    @Bean(destroyMethod = "close")
+    public EmfMeterRegistry emfMeterRegistry(Clock clock) {
+        EmfMeterRegistry registry = flushPerInvocation
+                ? EmfMeterRegistry.perInvocation(namespace, step, clock, System.out::println)
+                : new EmfMeterRegistry(namespace, step, clock, System.out::println);
+        // Each metric and dimension set is a billed CloudWatch custom metric; leave out JVM and framework meters
+        registry.config().meterFilter(MeterFilter.denyUnless(id -> id.getName().startsWith(meterPrefix)));
+        return registry;
+    }
+}
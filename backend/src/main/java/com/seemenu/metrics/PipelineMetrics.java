@@ -0,0 +1,158 @@
+package com.seemenu.metrics;
+
+import com.seemenu.openai.DishResponseParser;
+import com.seemenu.openai.ModelUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Per-stage timings and per-menu counters for the analysis pipeline
+ * Stages: body_read, cache_lookup, decode, preprocess, request_encode and parse (seemenu.stage); the model call
+ * itself is seemenu.model.latency by backend and phase (first_byte, total). Components with running totals
+ * (cache, coalescing, limiters, router, connection pool) bind their own meters as MeterBinders.
+ */
+@Component
+@RequiredArgsConstructor
+public class PipelineMetrics {
+
+    private final MeterRegistry registry;
+
+    public void recordStage(String stage, long nanos) {
+        Timer.builder("seemenu.stage")
+                .description("Time spent in one stage of a menu analysis")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs a blocking stage and records how long it took, also when it fails
+     */
+    public <T> T timeStage(String stage, Callable<T> work) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return work.call();
+        } finally {
+            recordStage(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Model call latency: phase "first_byte" when the response headers arrive, "total" once the body is read
+     */
+    public void recordUpstream(String backend, String phase, long nanos) {
+        Timer.builder("seemenu.model.latency")
+                .description("Model call latency by backend")
+                .tags("backend", backend, "phase", phase)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDishes(int dishes) {
+        DistributionSummary.builder("seemenu.menu.dishes")
+                .description("Dishes found per analyzed menu")
+                .register(registry)
+                .record(dishes);
+    }
+
+    /**
+     * Bytes of an upload ("upload"), a model request body ("request") or a model response ("response")
+     */
+    public void recordPayload(String kind, long bytes) {
+        DistributionSummary.builder("seemenu.payload")
+                .description("Payload sizes through the pipeline")
+                .baseUnit("bytes")
+                .tag("kind", kind)
+                .register(registry)
+                .record(bytes);
+    }
+
+    /**
+     * Token counts from a completion's usage block, if it has one
+     */
+    public void recordTokens(String backend, DishResponseParser.Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        tokens(backend, "prompt").increment(usage.promptTokens());
+        tokens(backend, "completion").increment(usage.completionTokens());
+    }
+
+    /**
+     * Completion tokens per dish found, per menu (over all its calls) or enrichment call, by kind of call
+     */
+    public void recordTokensPerDish(String backend, String kind, double tokens) {
+        DistributionSummary.builder("seemenu.model.tokens_per_dish")
+                .description("Completion tokens spent per dish returned")
+                .tags("backend", backend, "kind", kind)
+                .register(registry)
+                .record(tokens);
+    }
+
+    /**
+     * A completion cut off at max_tokens
+     */
+    public void recordTruncated(String backend) {
+        Counter.builder("seemenu.model.truncated")
+                .description("Completions cut off at max_tokens")
+                .tag("backend", backend)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * A call made to continue a menu after a completion cut off at max_tokens
+     */
+    public void recordContinuation(String backend) {
+        Counter.builder("seemenu.model.continuations")
+                .description("Calls continuing a menu after a completion cut off at max_tokens")
+                .tag("backend", backend)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordFailure(String category) {
+        Counter.builder("seemenu.failures")
+                .description("Failed analyses and model calls by cause")
+                .tag("category", category)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Model call failure, categorized by what went wrong
+     */
+    public void recordFailure(Throwable failure) {
+        recordFailure(category(failure));
+    }
+
+    private Counter tokens(String backend, String type) {
+        return Counter.builder("seemenu.model.tokens")
+                .description("Tokens billed by the model")
+                .tags("backend", backend, "type", type)
+                .register(registry);
+    }
+
+    private static String category(Throwable failure) {
+        if (failure instanceof ModelUnavailableException unavailable) {
+            if (!unavailable.isUpstream()) {
+                return "rejected";
+            }
+            return unavailable.getStatus() == 429 ? "rate_limited" : "upstream_error";
+        }
+        if (failure instanceof TimeoutException) {
+            return "timeout";
+        }
+        return "model_error";
+    }
+}
@@ -0,0 +1,116 @@
+package com.seemenu.model;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An image received as a binary request body (or read back from the job queue), handed to MenuService
+ * The content may be a slice of a larger body or a memory-mapped spill file; getBytes copies it onto the heap
+ * unless it is a whole byte array already, so the pipeline reads it through contentOf instead.
+ */
+public class BinaryMultipartFile implements MultipartFile {
+
+    private final ByteBuffer content;
+    private final String contentType;
+    private final String filename;
+
+    public BinaryMultipartFile(byte[] bytes, String contentType, String filename) {
+        this(ByteBuffer.wrap(bytes), contentType, filename);
+    }
+
+    public BinaryMultipartFile(ByteBuffer content, String contentType, String filename) {
+        this.content = content;
+        this.contentType = contentType;
+        this.filename = filename;
+    }
+
+    /**
+     * The content of an uploaded file as a buffer of its own, without a copy when it is a BinaryMultipartFile
+     * Other files (multipart form parts) are read onto the heap.
+     */
+    public static ByteBuffer contentOf(MultipartFile file) throws IOException {
+        if (file instanceof BinaryMultipartFile binary) {
+            return binary.content.duplicate();
+        }
+        return ByteBuffer.wrap(file.getBytes());
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return filename != null ? filename : "upload";
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !content.hasRemaining();
+    }
+
+    @Override
+    public long getSize() {
+        return content.remaining();
+    }
+
+    @Override
+    public byte[] getBytes() {
+        if (content.hasArray() && content.arrayOffset() == 0 && content.position() == 0
+                && content.remaining() == content.array().length) {
+            return content.array();
+        }
+        byte[] bytes = new byte[content.remaining()];
+        content.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        if (content.hasArray()) {
+            return new ByteArrayInputStream(content.array(), content.arrayOffset() + content.position(),
+                    content.remaining());
+        }
+        ByteBuffer source = content.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return source.hasRemaining() ? source.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                int read = Math.min(length, source.remaining());
+                source.get(bytes, offset, read);
+                return read;
+            }
+        };
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        try (FileChannel channel = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer source = content.duplicate();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.seemenu.openai;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds concurrent model calls with a limit that adapts to how the upstream is coping (AIMD)
+ * The limit grows by about one per window of successful calls and is cut multiplicatively on 429/5xx responses,
+ * timeouts and calls slower than the latency threshold. Calls over the limit wait in a bounded FIFO queue;
+ * when it is full, or a call has waited too long, the call fails fast with a ModelUnavailableException.
+ * Prototype-scoped: each model backend gets its own limit, created with the backend's name.
+ */
+@Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final String name;
+    private final Object lock = new Object();
+    private final Deque<Permit> queue = new ArrayDeque<>();
+
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos = System.nanoTime();
+    private double averageLatencyMillis;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Value("${openai.limiter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${openai.limiter.initial-limit:8}")
+    private int initialLimit;
+
+    @Value("${openai.limiter.min-limit:1}")
+    private int minLimit;
+
+    @Value("${openai.limiter.max-limit:64}")
+    private int maxLimit;
+
+    @Value("${openai.limiter.backoff-ratio:0.7}")
+    private double backoffRatio;
+
+    @Value("${openai.limiter.latency-threshold:30s}")
+    private Duration latencyThreshold;
+
+    @Value("${openai.limiter.max-queue:32}")
+    private int maxQueue;
+
+    @Value("${openai.limiter.max-wait:10s}")
+    private Duration maxWait;
+
+    public AdaptiveConcurrencyLimiter(String name) {
+        this.name = name;
+    }
+
+    @PostConstruct
+    void init() {
+        limit = initialLimit;
+    }
+
+    /**
+     * Runs a buffered model call within the limit; its latency feeds the limit
+     */
+    public <T> Mono<T> execute(Mono<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            Permit permit = new Permit(true);
+            return acquire(permit)
+                    .then(Mono.defer(() -> {
+                        permit.startNanos = System.nanoTime();
+                        return call;
+                    }))
+                    .doOnError(e -> permit.failure = e)
+                    .doFinally(signal -> release(permit));
+        });
+    }
+
+    /**
+     * Runs a streamed model call within the limit; the permit is held until the stream ends
+     * Stream duration depends on the menu size, so its latency is not measured; failures lower the limit and
+     * completed streams let it grow.
+     */
+    public <T> Flux<T> execute(Flux<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return Flux.defer(() -> {
+            Permit permit = new Permit(false);
+            return acquire(permit)
+                    .thenMany(Flux.defer(() -> {
+                        permit.startNanos = System.nanoTime();
+                        return call;
+                    }))
+                    .doOnError(e -> permit.failure = e)
+                    .doFinally(signal -> release(permit));
+        });
+    }
+
+    public int getLimit() {
+        synchronized (lock) {
+            return currentLimit();
+        }
+    }
+
+    public int getInFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    public int getQueued() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Calls failed fast because the queue was full or the wait timed out
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Calls that came back rate-limited, failed upstream or timed out
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Registers this limiter's meters, tagged with its backend
+     * Not a MeterBinder: as a prototype bean it would be instantiated (without a name) when binders are collected.
+     */
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("seemenu.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("backend", name)
+                .register(registry);
+        Gauge.builder("seemenu.limiter.in_flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Model calls holding a permit")
+                .tag("backend", name)
+                .register(registry);
+        Gauge.builder("seemenu.limiter.queued", this, AdaptiveConcurrencyLimiter::getQueued)
+                .description("Model calls waiting for a permit")
+                .tag("backend", name)
+                .register(registry);
+        FunctionCounter.builder("seemenu.limiter.rejected", rejected, AtomicLong::get)
+                .description("Model calls failed fast because the queue was full or the wait timed out")
+                .tag("backend", name)
+                .register(registry);
+        FunctionCounter.builder("seemenu.limiter.dropped", dropped, AtomicLong::get)
+                .description("Model calls that came back rate-limited, failed upstream or timed out")
+                .tag("backend", name)
+                .register(registry);
+    }
+
+    private Mono<Void> acquire(Permit permit) {
+        synchronized (lock) {
+            if (inFlight < currentLimit() && queue.isEmpty()) {
+                grant(permit);
+                return Mono.empty();
+            }
+            if (queue.size() >= maxQueue) {
+                return Mono.error(reject("queue full"));
+            }
+            queue.addLast(permit);
+        }
+        // A call that times out here is removed from the queue by release()
+        return permit.turn.asMono()
+                .timeout(maxWait, Mono.error(() -> reject("waited " + maxWait.toMillis() + " ms")));
+    }
+
+    private void release(Permit permit) {
+        List<Permit> next;
+        synchronized (lock) {
+            if (!permit.granted) {
+                queue.remove(permit);
+                return;
+            }
+            inFlight--;
+            record(permit);
+            next = drain();
+        }
+        // Wake waiters outside the lock; their calls start on this thread
+        next.forEach(waiter -> waiter.turn.tryEmitEmpty());
+    }
+
+    private void record(Permit permit) {
+        if (permit.startNanos == 0) {
+            return;
+        }
+        long latencyNanos = System.nanoTime() - permit.startNanos;
+        Throwable failure = permit.failure;
+
+        if (failure instanceof TimeoutException) {
+            dropped.incrementAndGet();
+            decrease(permit, "timeout");
+            return;
+        }
+        if (failure instanceof ModelUnavailableException unavailable && unavailable.isUpstream()) {
+            dropped.incrementAndGet();
+            decrease(permit, "HTTP " + unavailable.getStatus());
+            return;
+        }
+        if (failure != null) {
+            return;
+        }
+
+        if (permit.measureLatency) {
+            averageLatencyMillis = averageLatencyMillis == 0
+                    ? latencyNanos / 1e6
+                    : 0.8 * averageLatencyMillis + 0.2 * latencyNanos / 1e6;
+            if (latencyNanos > latencyThreshold.toNanos()) {
+                decrease(permit, "latency " + latencyNanos / 1_000_000 + " ms");
+                return;
+            }
+        }
+        // A completed stream counts as a success too; otherwise streaming alone never regains a cut limit
+        if (permit.inFlightAtStart * 2 >= limit) {
+            // Only grow while the limit is actually being used
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    private void decrease(Permit permit, String reason) {
+        // Calls issued before the last cut report the same congestion; react once per episode
+        if (permit.startNanos - lastDecreaseNanos < 0) {
+            return;
+        }
+        double previous = limit;
+        limit = Math.max(minLimit, limit * backoffRatio);
+        lastDecreaseNanos = System.nanoTime();
+        log.warn("Model concurrency limit for {}: {} -> {} ({})", name, (int) previous, currentLimit(), reason);
+    }
+
+    private List<Permit> drain() {
+        List<Permit> next = new ArrayList<>();
+        while (inFlight < currentLimit() && !queue.isEmpty()) {
+            Permit waiter = queue.pollFirst();
+            grant(waiter);
+            next.add(waiter);
+        }
+        return next;
+    }
+
+    private void grant(Permit permit) {
+        permit.granted = true;
+        permit.inFlightAtStart = ++inFlight;
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    private ModelUnavailableException reject(String reason) {
+        rejected.incrementAndGet();
+        Duration retryAfter;
+        synchronized (lock) {
+            // Roughly when a slot should free up
+            retryAfter = Duration.ofMillis(Math.max(1000, (long) averageLatencyMillis));
+        }
+        log.warn("Rejected model call to {}: {} (limit={}, rejected={})", name, reason, getLimit(), rejected.get());
+        return new ModelUnavailableException("Model capacity exceeded: " + reason, 0, retryAfter);
+    }
+
+    /**
+     * One call's claim on the limit, from queueing until it finishes
+     */
+    private static final class Permit {
+        private final Sinks.Empty<Void> turn = Sinks.empty();
+        private final boolean measureLatency;
+        // Guarded by the limiter lock
+        private boolean granted;
+        private int inFlightAtStart;
+        private volatile long startNanos;
+        private volatile Throwable failure;
+
+        private Permit(boolean measureLatency) {
+            this.measureLatency = measureLatency;
+        }
+    }
+}
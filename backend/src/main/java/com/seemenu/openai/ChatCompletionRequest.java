@@ -0,0 +1,32 @@
+package com.seemenu.openai;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Singular;
+
+import java.util.List;
+
+/**
+ * A chat-completions call with a text prompt and any number of images, written by ChatCompletionRequestWriter
+ * With several images each is preceded by an "Image n" text part, so the prompt can refer to them by number.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatCompletionRequest {
+    private String model;
+    private int maxTokens;
+    private double temperature;
+    private String prompt;
+    @Singular
+    private List<Image> images;
+    private boolean stream;
+    // The json_schema object of a structured-output response_format (see MenuSchemas); null for any JSON object
+    private String jsonSchema;
+
+    public record Image(byte[] bytes, String mimeType) {
+    }
+}
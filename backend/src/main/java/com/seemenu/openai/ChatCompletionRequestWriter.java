@@ -0,0 +1,224 @@
+package com.seemenu.openai;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Streams a chat-completions request body straight into the outgoing DataBuffers
+ * The image is Base64-encoded chunk by chunk as the connection pulls data, so neither the
+ * encoded String, the data: URL nor a Map tree for Jackson is ever materialized on the heap.
+ * A request without images is text only and written in one piece.
+ */
+@Component
+public class ChatCompletionRequestWriter {
+
+    // Multiple of 3 so no chunk but the last needs Base64 padding; encodes to 64 KB
+    private static final int CHUNK_SIZE = 3 * 16 * 1024;
+
+    private static final byte[] SUFFIX = "\"}}]}]}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IMAGE_SEPARATOR = "\"}},".getBytes(StandardCharsets.US_ASCII);
+    private static final SerializedString VALUE_SEPARATOR = new SerializedString(",");
+
+    // The document is deliberately left open; closing the generator must not append brackets
+    private final JsonFactory jsonFactory = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+
+    public BodyInserter<Flux<DataBuffer>, ReactiveHttpOutputMessage> inserter(ChatCompletionRequest request) {
+        return inserter(request, nanos -> {
+        });
+    }
+
+    /**
+     * Inserter that reports the CPU time spent building and encoding the body once it has been written
+     * Time the connection spends waiting to pull the next chunk is not included.
+     */
+    public BodyInserter<Flux<DataBuffer>, ReactiveHttpOutputMessage> inserter(ChatCompletionRequest request,
+                                                                              LongConsumer encodeNanos) {
+        return (message, context) -> {
+            long start = System.nanoTime();
+            List<byte[]> heads = writeHeads(request);
+            long[] elapsed = {System.nanoTime() - start};
+            message.getHeaders().setContentLength(contentLength(heads, request.getImages()));
+            return message.writeWith(write(heads, request.getImages(), message.bufferFactory(), elapsed)
+                    .doOnComplete(() -> encodeNanos.accept(elapsed[0])));
+        };
+    }
+
+    /**
+     * Body as a lazy stream of buffers: JSON envelope, Base64 image chunks (with the parts between images),
+     * closing brackets
+     */
+    public Flux<DataBuffer> write(ChatCompletionRequest request, DataBufferFactory bufferFactory) {
+        return write(writeHeads(request), request.getImages(), bufferFactory, new long[1]);
+    }
+
+    public long contentLength(ChatCompletionRequest request) {
+        return contentLength(writeHeads(request), request.getImages());
+    }
+
+    /**
+     * Chunks are pulled one at a time, so adding to elapsed needs no synchronization
+     */
+    private Flux<DataBuffer> write(List<byte[]> heads, List<ChatCompletionRequest.Image> images,
+                                   DataBufferFactory bufferFactory, long[] elapsed) {
+        if (images.isEmpty()) {
+            return Mono.fromSupplier(() -> bufferFactory.wrap(heads.get(0))).flux();
+        }
+        List<Flux<DataBuffer>> parts = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            byte[] head = heads.get(i);
+            byte[] image = images.get(i).bytes();
+            int chunks = (image.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            parts.add(Mono.fromSupplier(() -> bufferFactory.wrap(head)).flux());
+            parts.add(Flux.range(0, chunks).map(c -> {
+                long start = System.nanoTime();
+                DataBuffer chunk = encodeChunk(image, c * CHUNK_SIZE, bufferFactory);
+                elapsed[0] += System.nanoTime() - start;
+                return chunk;
+            }));
+        }
+        parts.add(Mono.fromSupplier(() -> bufferFactory.wrap(SUFFIX)).flux());
+        return Flux.concat(parts)
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    private DataBuffer encodeChunk(byte[] image, int offset, DataBufferFactory bufferFactory) {
+        int length = Math.min(CHUNK_SIZE, image.length - offset);
+        DataBuffer buffer = bufferFactory.allocateBuffer(base64Length(length));
+        try (OutputStream out = Base64.getEncoder().wrap(buffer.asOutputStream())) {
+            out.write(image, offset, length);
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        }
+        return buffer;
+    }
+
+    /**
+     * The JSON before each image: the envelope up to the opening of the first data: URL string value, then for
+     * every further image the close of the previous one and the opening of its own.
+     * The last URL is the last value in the document, so the remainder is Base64 text plus SUFFIX. Without
+     * images the only head is the complete document.
+     */
+    private List<byte[]> writeHeads(ChatCompletionRequest request) {
+        List<ChatCompletionRequest.Image> images = request.getImages();
+        List<byte[]> heads = new ArrayList<>(images.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024 + request.getPrompt().length());
+        try (JsonGenerator gen = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeStringField("model", request.getModel());
+            gen.writeNumberField("max_tokens", request.getMaxTokens());
+            gen.writeNumberField("temperature", request.getTemperature());
+            if (request.isStream()) {
+                gen.writeBooleanField("stream", true);
+                // Token usage only arrives in a final chunk when asked for
+                gen.writeObjectFieldStart("stream_options");
+                gen.writeBooleanField("include_usage", true);
+                gen.writeEndObject();
+            }
+
+            // Force JSON mode: a strict schema when the request has one, any JSON object otherwise
+            gen.writeObjectFieldStart("response_format");
+            if (request.getJsonSchema() != null) {
+                gen.writeStringField("type", "json_schema");
+                gen.writeFieldName("json_schema");
+                gen.writeRawValue(request.getJsonSchema());
+            } else {
+                gen.writeStringField("type", "json_object");
+            }
+            gen.writeEndObject();
+
+            gen.writeArrayFieldStart("messages");
+            gen.writeStartObject();
+            gen.writeStringField("role", "user");
+            gen.writeArrayFieldStart("content");
+
+            gen.writeStartObject();
+            gen.writeStringField("type", "text");
+            gen.writeStringField("text", request.getPrompt());
+            gen.writeEndObject();
+
+            if (images.isEmpty()) {
+                gen.writeEndArray();
+                gen.writeEndObject();
+                gen.writeEndArray();
+                gen.writeEndObject();
+            } else {
+                writeImageOpening(gen, images, 0);
+            }
+            gen.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        heads.add(out.toByteArray());
+
+        for (int i = 1; i < images.size(); i++) {
+            out.reset();
+            out.writeBytes(IMAGE_SEPARATOR);
+            // A fresh generator is at root level, where values are separated by a space unless told otherwise
+            try (JsonGenerator gen = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+                gen.setRootValueSeparator(VALUE_SEPARATOR);
+                writeImageOpening(gen, images, i);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            heads.add(out.toByteArray());
+        }
+        return heads;
+    }
+
+    /**
+     * The "Image n" label (only when there are several images) and the image part up to its Base64 data
+     */
+    private void writeImageOpening(JsonGenerator gen, List<ChatCompletionRequest.Image> images, int index)
+            throws IOException {
+        if (images.size() > 1) {
+            gen.writeStartObject();
+            gen.writeStringField("type", "text");
+            gen.writeStringField("text", "Image " + (index + 1));
+            gen.writeEndObject();
+        }
+        gen.writeStartObject();
+        gen.writeStringField("type", "image_url");
+        gen.writeObjectFieldStart("image_url");
+        gen.writeFieldName("url");
+        // Open the string by hand; its Base64 content is streamed separately
+        gen.writeRaw(":\"data:" + images.get(index).mimeType() + ";base64,");
+        gen.flush();
+    }
+
+    private static long contentLength(List<byte[]> heads, List<ChatCompletionRequest.Image> images) {
+        if (images.isEmpty()) {
+            return heads.get(0).length;
+        }
+        long length = SUFFIX.length;
+        for (int i = 0; i < images.size(); i++) {
+            length += heads.get(i).length + (long) base64Length(images.get(i).bytes().length);
+        }
+        return length;
+    }
+
+    private static int base64Length(int length) {
+        return 4 * ((length + 2) / 3);
+    }
+}
@@ -0,0 +1,407 @@
+package com.seemenu.openai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seemenu.model.DishInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Binds completions straight to DishInfo with a streaming parser, without building a JSON tree
+ * The response envelope is scanned once for the fields the analyzer uses; everything else is skipped unread.
+ * Content is accepted as a bare array or an object with a "dishes" array, also when wrapped in a markdown code
+ * block. Common allergen and dietary tags come back as shared String instances instead of one copy per dish.
+ * DishStreamParser binds the dishes it cuts out of a streamed completion with readDish as well.
+ */
+@Slf4j
+public class DishResponseParser {
+
+    private static final TagTable TAGS = new TagTable(List.of(
+            // Allergens
+            "dairy", "milk", "eggs", "egg", "gluten", "wheat", "nuts", "tree nuts", "peanuts", "shellfish",
+            "crustaceans", "molluscs", "fish", "soy", "sesame", "mustard", "celery", "lupin", "sulfites", "sulphites",
+            // Dietary information
+            "vegetarian", "vegan", "gluten-free", "dairy-free", "nut-free", "pescatarian", "halal", "kosher",
+            "spicy", "keto", "low-carb"));
+
+    private final JsonFactory jsonFactory;
+
+    public DishResponseParser(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Reads the content, finish reason, error and token usage of a chat-completions response or of one streamed
+     * chunk
+     * Content is taken from the first choice's "message" (buffered) or "delta" (streamed); other choices,
+     * and all other fields, are skipped.
+     */
+    public Completion readCompletion(String json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Completion is not a JSON object");
+            }
+            Choice choice = null;
+            String error = null;
+            Usage usage = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                    choice = readFirstChoice(parser);
+                } else if ("error".equals(field) && value != JsonToken.VALUE_NULL) {
+                    error = readErrorMessage(parser, value);
+                } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                    usage = readUsage(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return choice != null
+                    ? new Completion(choice.content(), error, usage, choice.finishReason())
+                    : new Completion(null, error, usage, null);
+        }
+    }
+
+    /**
+     * Dishes in the content; empty if it is valid JSON of another shape
+     */
+    public List<DishInfo> parse(String content) throws IOException {
+        List<DishInfo> dishes = new ArrayList<>();
+
+        try (JsonParser parser = contentParser(content)) {
+            JsonToken root = parser.nextToken();
+            // Handle both old format (array) and new format (object with "dishes" array)
+            if (root == JsonToken.START_ARRAY) {
+                readDishes(parser, dishes);
+            } else if (root == JsonToken.START_OBJECT && seekArray(parser, "dishes")) {
+                readDishes(parser, dishes);
+            } else {
+                log.warn("Response is neither an array nor an object with 'dishes' array");
+                return dishes;
+            }
+        }
+
+        log.info("Found {} dishes in response", dishes.size());
+        return dishes;
+    }
+
+    /**
+     * Dishes per image of a multi-image call: {"menus": [{"image": 1, "dishes": [...]}, ...]}
+     * Sections are placed by their 1-based "image" number, or by position when it is missing. The result has
+     * one entry per image; an image without a section is null, so the caller can tell it apart from an empty menu.
+     */
+    public List<List<DishInfo>> parseSections(String content, int images) throws IOException {
+        List<List<DishInfo>> sections = new ArrayList<>(Collections.nCopies(images, null));
+
+        try (JsonParser parser = contentParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT || !seekArray(parser, "menus")) {
+                log.warn("Response has no 'menus' array");
+                return sections;
+            }
+            int position = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                position++;
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                int image = position;
+                List<DishInfo> dishes = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("image".equals(field) && value.isNumeric()) {
+                        image = parser.getIntValue();
+                    } else if ("dishes".equals(field) && value == JsonToken.START_ARRAY) {
+                        dishes = new ArrayList<>();
+                        readDishes(parser, dishes);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (dishes != null && image >= 1 && image <= images) {
+                    sections.set(image - 1, dishes);
+                }
+            }
+        }
+
+        log.info("Found dishes for {} of {} images in response", sections.stream().filter(Objects::nonNull).count(),
+                images);
+        return sections;
+    }
+
+    /**
+     * Binds one dish object; the parser must be on its START_OBJECT and is left on its END_OBJECT
+     * Null and non-scalar values are treated as absent; unknown fields are skipped.
+     */
+    public DishInfo readDish(JsonParser parser) throws IOException {
+        DishInfo dish = new DishInfo();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            // Field names are canonicalized by the parser, so this allocates nothing
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "name" -> dish.setName(text(parser, value));
+                case "description" -> dish.setDescription(text(parser, value));
+                case "price" -> dish.setPrice(text(parser, value));
+                case "ingredients" -> dish.setIngredients(list(parser, value, false));
+                case "allergens" -> dish.setAllergens(list(parser, value, true));
+                case "dietaryInfo" -> dish.setDietaryInfo(list(parser, value, true));
+                default -> parser.skipChildren();
+            }
+        }
+        log.debug("Parsed dish: {}", dish.getName());
+        return dish;
+    }
+
+    /**
+     * A parser positioned after any leading whitespace and markdown code fence
+     * A trailing fence needs no handling: reading stops at the end of the root value.
+     */
+    private JsonParser contentParser(String content) throws IOException {
+        int start = 0;
+        while (start < content.length() && Character.isWhitespace(content.charAt(start))) {
+            start++;
+        }
+        if (content.startsWith("```json", start)) {
+            start += 7;
+        } else if (content.startsWith("```", start)) {
+            start += 3;
+        }
+        if (start == 0) {
+            return jsonFactory.createParser(content);
+        }
+        StringReader reader = new StringReader(content);
+        reader.skip(start);
+        return jsonFactory.createParser(reader);
+    }
+
+    private boolean seekArray(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (name.equals(field) && value == JsonToken.START_ARRAY) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private void readDishes(JsonParser parser, List<DishInfo> dishes) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                dishes.add(readDish(parser));
+            } else {
+                // Lenient like the rest: an entry that is not an object still counts as a (blank) dish
+                parser.skipChildren();
+                dishes.add(new DishInfo());
+            }
+        }
+    }
+
+    private Choice readFirstChoice(JsonParser parser) throws IOException {
+        Choice choice = null;
+        boolean first = true;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (first && token == JsonToken.START_OBJECT) {
+                choice = readChoice(parser);
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+        return choice;
+    }
+
+    private Choice readChoice(JsonParser parser) throws IOException {
+        String content = null;
+        String finishReason = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (("message".equals(field) || "delta".equals(field)) && value == JsonToken.START_OBJECT) {
+                content = readContent(parser);
+            } else if ("finish_reason".equals(field) && value == JsonToken.VALUE_STRING) {
+                finishReason = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new Choice(content, finishReason);
+    }
+
+    private String readContent(JsonParser parser) throws IOException {
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value == JsonToken.VALUE_STRING) {
+                content = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return content;
+    }
+
+    private String readErrorMessage(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return "";
+        }
+        String message = "";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken fieldValue = parser.nextToken();
+            if ("message".equals(field) && fieldValue.isScalarValue()) {
+                message = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return message;
+    }
+
+    private Usage readUsage(JsonParser parser) throws IOException {
+        long promptTokens = 0;
+        long completionTokens = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("prompt_tokens".equals(field)) {
+                promptTokens = parser.getValueAsLong();
+            } else if ("completion_tokens".equals(field)) {
+                completionTokens = parser.getValueAsLong();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new Usage(promptTokens, completionTokens);
+    }
+
+    private static String text(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!value.isScalarValue()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getText();
+    }
+
+    private static List<String> list(JsonParser parser, JsonToken value, boolean tags) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        List<String> items = new ArrayList<>(4);
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.VALUE_NULL || !token.isScalarValue()) {
+                parser.skipChildren();
+            } else {
+                items.add(tags ? tag(parser) : parser.getText());
+            }
+        }
+        return items;
+    }
+
+    /**
+     * The shared instance of a common tag, matched on the parser's buffer so no String is built for it
+     */
+    private static String tag(JsonParser parser) throws IOException {
+        String known = parser.hasTextCharacters()
+                ? TAGS.lookup(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())
+                : TAGS.lookup(parser.getText());
+        return known != null ? known : parser.getText();
+    }
+
+    /**
+     * Content, error message (null if none), token usage (null if not reported) and finish reason (null until
+     * the last chunk of a stream) of a completion
+     */
+    public record Completion(String content, String error, Usage usage, String finishReason) {
+
+        /**
+         * Whether the model stopped because it reached max_tokens, leaving the content unfinished
+         */
+        public boolean truncated() {
+            return "length".equals(finishReason);
+        }
+    }
+
+    private record Choice(String content, String finishReason) {
+    }
+
+    public record Usage(long promptTokens, long completionTokens) {
+    }
+
+    /**
+     * Known tags grouped by length; lowercase and capitalized spellings match, other spellings are kept as sent
+     */
+    private static final class TagTable {
+
+        private final String[][] byLength;
+        private final Map<String, String> byValue = new HashMap<>();
+
+        TagTable(List<String> tags) {
+            List<String> spellings = new ArrayList<>();
+            for (String tag : tags) {
+                spellings.add(tag);
+                spellings.add(Character.toUpperCase(tag.charAt(0)) + tag.substring(1));
+            }
+            int maxLength = spellings.stream().mapToInt(String::length).max().orElse(0);
+            List<List<String>> grouped = new ArrayList<>();
+            for (int i = 0; i <= maxLength; i++) {
+                grouped.add(new ArrayList<>());
+            }
+            for (String spelling : spellings) {
+                grouped.get(spelling.length()).add(spelling);
+                byValue.put(spelling, spelling);
+            }
+            byLength = grouped.stream().map(group -> group.toArray(String[]::new)).toArray(String[][]::new);
+        }
+
+        String lookup(char[] chars, int offset, int length) {
+            if (length >= byLength.length) {
+                return null;
+            }
+            for (String tag : byLength[length]) {
+                if (matches(tag, chars, offset)) {
+                    return tag;
+                }
+            }
+            return null;
+        }
+
+        String lookup(String value) {
+            return byValue.get(value);
+        }
+
+        private static boolean matches(String tag, char[] chars, int offset) {
+            for (int i = 0; i < tag.length(); i++) {
+                if (tag.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.seemenu.openai;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.seemenu.model.DishInfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incrementally parses a streamed completion and yields each dish as soon as its JSON object closes
+ * Accepts both a bare array and an object with a "dishes" array, like the buffered parser, which binds the dishes.
+ * One instance per completion; not thread-safe.
+ */
+public class DishStreamParser {
+
+    private final DishResponseParser dishParser;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private int depth;               // number of currently open objects/arrays
+    private int dishesArrayDepth;    // depth of the dishes array once entered, 0 before
+    private String rootFieldName;    // last field name seen directly in the root object
+    private TokenBuffer currentDish; // tokens of the dish being read, null between dishes
+    private int dishDepth;
+
+    public DishStreamParser(ObjectMapper objectMapper, DishResponseParser dishParser) throws IOException {
+        this.dishParser = dishParser;
+        this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Feeds the next fragment of completion text; returns dishes completed by it
+     */
+    public List<DishInfo> feed(String fragment) throws IOException {
+        byte[] bytes = fragment.getBytes(StandardCharsets.UTF_8);
+        feeder.feedInput(bytes, 0, bytes.length);
+
+        List<DishInfo> completed = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            DishInfo dish = handle(token);
+            if (dish != null) {
+                completed.add(dish);
+            }
+        }
+        return completed;
+    }
+
+    private DishInfo handle(JsonToken token) throws IOException {
+        if (token.isStructStart()) {
+            depth++;
+        }
+
+        if (currentDish != null) {
+            currentDish.copyCurrentEvent(parser);
+            if (token == JsonToken.END_OBJECT && depth == dishDepth) {
+                depth--;
+                JsonParser dishTokens = currentDish.asParser();
+                dishTokens.nextToken();
+                currentDish = null;
+                return dishParser.readDish(dishTokens);
+            }
+        } else if (token == JsonToken.START_ARRAY && dishesArrayDepth == 0
+                && (depth == 1 || (depth == 2 && "dishes".equals(rootFieldName)))) {
+            dishesArrayDepth = depth;
+        } else if (token == JsonToken.START_OBJECT && dishesArrayDepth > 0 && depth == dishesArrayDepth + 1) {
+            currentDish = new TokenBuffer(parser, null);
+            currentDish.copyCurrentEvent(parser);
+            dishDepth = depth;
+        } else if (token == JsonToken.FIELD_NAME && depth == 1) {
+            rootFieldName = parser.currentName();
+        } else if (token == JsonToken.END_ARRAY && depth == dishesArrayDepth) {
+            dishesArrayDepth = -1; // only the first dishes array is read
+        }
+
+        if (token.isStructEnd()) {
+            depth--;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,110 @@
+package com.seemenu.openai;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * JSON schemas of the model's answers, for a strict structured-output response_format
+ * Each constant is the complete json_schema object (name, strict, schema), serialized once and written into
+ * requests as it is (see ChatCompletionRequestWriter). Strict mode wants every property required and no others
+ * allowed, so values a menu may not print (description, price) are nullable rather than optional.
+ */
+public final class MenuSchemas {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    /**
+     * {"dishes": [...]} with every DishInfo field
+     */
+    public static final String ANALYSIS = schema("menu", dishes(analyzedDish()));
+
+    /**
+     * {"dishes": [...]} with name, description and price only
+     */
+    public static final String LISTING = schema("menu_listing", dishes(listedDish()));
+
+    /**
+     * {"dishes": [...]} with name and the fields the knowledge index fills
+     */
+    public static final String ENRICHMENT = schema("dish_enrichment", dishes(object(
+            "name", type("string"),
+            "ingredients", strings(),
+            "allergens", strings(),
+            "dietaryInfo", strings())));
+
+    /**
+     * {"menus": [{"image": n, "dishes": [...]}]} for several menus in one call
+     */
+    public static final String BATCH = schema("menus", object(
+            "menus", NODES.objectNode()
+                    .put("type", "array")
+                    .set("items", object(
+                            "image", type("integer"),
+                            "dishes", array(analyzedDish())))));
+
+    private MenuSchemas() {
+    }
+
+    private static ObjectNode listedDish() {
+        return object(
+                "name", type("string"),
+                "description", nullable("string"),
+                "price", nullable("string"));
+    }
+
+    private static ObjectNode analyzedDish() {
+        return object(
+                "name", type("string"),
+                "description", nullable("string"),
+                "price", nullable("string"),
+                "ingredients", strings(),
+                "allergens", strings(),
+                "dietaryInfo", strings());
+    }
+
+    private static String schema(String name, ObjectNode schema) {
+        return NODES.objectNode()
+                .put("name", name)
+                .put("strict", true)
+                .set("schema", schema)
+                .toString();
+    }
+
+    private static ObjectNode dishes(ObjectNode dish) {
+        return object("dishes", array(dish));
+    }
+
+    /**
+     * A closed object with the given name/schema pairs as its properties, all required
+     */
+    private static ObjectNode object(Object... properties) {
+        ObjectNode node = NODES.objectNode().put("type", "object");
+        ObjectNode fields = node.putObject("properties");
+        ArrayNode required = node.putArray("required");
+        for (int i = 0; i < properties.length; i += 2) {
+            fields.set((String) properties[i], (ObjectNode) properties[i + 1]);
+            required.add((String) properties[i]);
+        }
+        node.put("additionalProperties", false);
+        return node;
+    }
+
+    private static ObjectNode array(ObjectNode items) {
+        return NODES.objectNode().put("type", "array").set("items", items);
+    }
+
+    private static ObjectNode strings() {
+        return array(type("string"));
+    }
+
+    private static ObjectNode type(String type) {
+        return NODES.objectNode().put("type", type);
+    }
+
+    private static ObjectNode nullable(String type) {
+        ObjectNode node = NODES.objectNode();
+        node.putArray("type").add(type).add("null");
+        return node;
+    }
+}
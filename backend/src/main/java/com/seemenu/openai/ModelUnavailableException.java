@@ -0,0 +1,29 @@
+package com.seemenu.openai;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * The model cannot take the call right now: the upstream answered 429/5xx, or the local limiter shed it
+ * Unlike other model errors this is not reported as an empty analysis; clients get a 503 with Retry-After.
+ */
+@Getter
+public class ModelUnavailableException extends RuntimeException {
+
+    /**
+     * Upstream HTTP status, or 0 when the call was rejected locally without reaching the model
+     */
+    private final int status;
+    private final Duration retryAfter;
+
+    public ModelUnavailableException(String message, int status, Duration retryAfter) {
+        super(message);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    public boolean isUpstream() {
+        return status != 0;
+    }
+}
@@ -0,0 +1,97 @@
+package com.seemenu.openai;
+
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads how long the upstream asks us to wait from its rate-limit response headers
+ */
+public final class RateLimitHeaders {
+
+    // OpenAI reset durations look like "1s", "6m0s", "20ms" or "1h2m3.5s"
+    private static final Pattern RESET_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private RateLimitHeaders() {
+    }
+
+    /**
+     * The longest wait requested by Retry-After (or retry-after-ms) and the x-ratelimit-reset-* headers
+     */
+    public static Optional<Duration> retryAfter(HttpHeaders headers) {
+        // retry-after-ms is the precise form of Retry-After, which is rounded to whole seconds
+        Duration wait = parseMillis(headers.getFirst("retry-after-ms"));
+        if (wait == null) {
+            wait = parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER));
+        }
+        // Only the exhausted budget matters; the other one may be resetting much later without blocking us
+        if ("0".equals(headers.getFirst("x-ratelimit-remaining-requests"))) {
+            wait = longest(wait, parseReset(headers.getFirst("x-ratelimit-reset-requests")));
+        }
+        if ("0".equals(headers.getFirst("x-ratelimit-remaining-tokens"))) {
+            wait = longest(wait, parseReset(headers.getFirst("x-ratelimit-reset-tokens")));
+        }
+        return Optional.ofNullable(wait);
+    }
+
+    private static Duration parseMillis(String value) {
+        try {
+            return value != null ? Duration.ofMillis((long) Double.parseDouble(value.trim())) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Retry-After is either delay-seconds or an HTTP-date
+     */
+    private static Duration parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                Duration until = Duration.between(ZonedDateTime.now(),
+                        ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return until.isNegative() ? Duration.ZERO : until;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private static Duration parseReset(String value) {
+        if (value == null) {
+            return null;
+        }
+        Matcher matcher = RESET_PART.matcher(value.trim());
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+        }
+        return matched ? Duration.ofMillis((long) Math.ceil(millis)) : null;
+    }
+
+    private static Duration longest(Duration current, Duration candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || candidate.compareTo(current) > 0 ? candidate : current;
+    }
+}
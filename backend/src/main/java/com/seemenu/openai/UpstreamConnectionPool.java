@@ -0,0 +1,249 @@
+package com.seemenu.openai;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.Http2SslContextSpec;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.tcp.SslProvider;
+
+import java.lang.management.ManagementFactory;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * The HTTP connection pool shared by all model backends
+ * One Reactor Netty pool (per remote address) with bounded connections and pending acquires, idle and lifetime
+ * eviction, and explicit connect/response timeouts. HTTPS backends negotiate HTTP/2 through ALPN, so concurrent
+ * calls multiplex over a few connections, and share one TLS context, so reconnects resume the TLS session.
+ * Connections are pre-opened in the background at startup and after a SnapStart restore, and closed before the
+ * checkpoint. A process that is about to be checkpointed (the lambda profile, or a JVM started with a CRaC
+ * checkpoint) skips the startup prewarm: those connections would only be closed again.
+ */
+@Component
+@Slf4j
+public class UpstreamConnectionPool implements ConnectionProvider.MeterRegistrar, MeterBinder {
+
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+    private final Set<String> baseUrls = ConcurrentHashMap.newKeySet();
+
+    private ConnectionProvider connectionProvider;
+    private SslProvider sslProvider;
+
+    @Value("${openai.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${openai.http.pending-acquire-max-count:256}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${openai.http.pending-acquire-timeout:10s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${openai.http.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${openai.http.max-life-time:5m}")
+    private Duration maxLifeTime;
+
+    @Value("${openai.http.evict-in-background:30s}")
+    private Duration evictInBackground;
+
+    @Value("${openai.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${openai.http.response-timeout:60s}")
+    private Duration responseTimeout;
+
+    @Value("${openai.http.http2:true}")
+    private boolean http2;
+
+    @Value("${openai.http.compression:true}")
+    private boolean compression;
+
+    @Value("${openai.http.prewarm.enabled:true}")
+    private boolean prewarmEnabled;
+
+    @Value("${openai.http.prewarm.connections:2}")
+    private int prewarmConnections;
+
+    @PostConstruct
+    void init() {
+        connectionProvider = ConnectionProvider.builder("openai")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                // A Lambda frozen between invocations comes back to connections the server may have dropped
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInBackground)
+                .metrics(true, () -> this)
+                .build();
+        // One context for all connections, so its session cache lets reconnects skip the full handshake
+        sslProvider = SslProvider.builder()
+                .sslContext(Http2SslContextSpec.forClient())
+                .handshakeTimeout(connectTimeout)
+                .build();
+    }
+
+    /**
+     * A client for one backend, drawing on the shared pool
+     */
+    public HttpClient httpClient(String baseUrl) {
+        baseUrls.add(baseUrl);
+        HttpClient client = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(responseTimeout)
+                .compress(compression);
+        if (!"https".equalsIgnoreCase(URI.create(baseUrl).getScheme())) {
+            return client.protocol(HttpProtocol.HTTP11);
+        }
+        client = client.secure(sslProvider);
+        return http2 ? client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11) : client.protocol(HttpProtocol.HTTP11);
+    }
+
+    /**
+     * Opens connections to every backend ahead of the first model call
+     * The requests carry no API key and their responses are ignored; only the connections are kept.
+     */
+    public Mono<Void> prewarm() {
+        if (!prewarmEnabled) {
+            return Mono.empty();
+        }
+        long start = System.nanoTime();
+        return Flux.fromIterable(baseUrls)
+                .flatMap(baseUrl -> Flux.range(0, prewarmConnections)
+                        .flatMap(i -> httpClient(baseUrl)
+                                .get()
+                                .uri(baseUrl + "/models")
+                                // Drain the (401) body so the connection goes back to the pool open
+                                .responseSingle((response, body) -> body.then(Mono.just(response.status())))
+                                .timeout(connectTimeout.multipliedBy(2))
+                                .doOnError(e -> log.debug("Could not pre-open connection to {}: {}",
+                                        baseUrl, e.getMessage()))
+                                .onErrorResume(e -> Mono.empty())))
+                .count()
+                .doOnNext(opened -> log.info("Pre-opened {} model connection(s) in {} ms",
+                        opened, (System.nanoTime() - start) / 1_000_000))
+                .then();
+    }
+
+    /**
+     * Closes every pooled connection; the pool reconnects on the next call
+     * Used before a SnapStart checkpoint, so no socket is frozen into the snapshot.
+     */
+    public void closeAll() {
+        pools.values().forEach(pool -> connectionProvider.disposeWhen(pool.remoteAddress()));
+    }
+
+    /**
+     * Loads the event loops, DNS resolver and TLS classes without opening a connection
+     * Waits, for at most connect-timeout, since it is meant for a checkpoint that should hold these classes.
+     */
+    public void warmUp() {
+        HttpClient.create(connectionProvider).secure(sslProvider).warmup()
+                .timeout(connectTimeout, Mono.empty())
+                .block();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void prewarmOnStartup(ApplicationReadyEvent event) {
+        if (checkpointPending(event.getApplicationContext().getEnvironment())) {
+            log.debug("Checkpoint pending, leaving model connections to be opened after restore");
+            return;
+        }
+        // In the background: startup does not wait for the upstream, and the first call opens its own connection
+        prewarm().subscribe();
+    }
+
+    private static boolean checkpointPending(Environment environment) {
+        return environment.acceptsProfiles(Profiles.of("lambda"))
+                || environment.containsProperty("spring.context.checkpoint")
+                || ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .anyMatch(argument -> argument.startsWith("-XX:CRaCCheckpointTo"));
+    }
+
+    @PreDestroy
+    void dispose() {
+        connectionProvider.dispose();
+    }
+
+    /**
+     * Connections currently serving a call
+     */
+    public int getActive() {
+        return sum(ConnectionPoolMetrics::acquiredSize);
+    }
+
+    /**
+     * Open connections waiting for a call
+     */
+    public int getIdle() {
+        return sum(ConnectionPoolMetrics::idleSize);
+    }
+
+    /**
+     * Calls waiting for a connection because the pool is at max-connections
+     */
+    public int getPending() {
+        return sum(ConnectionPoolMetrics::pendingAcquireSize);
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("seemenu.http.pool.active", this, UpstreamConnectionPool::getActive)
+                .description("Model connections serving a call")
+                .register(registry);
+        Gauge.builder("seemenu.http.pool.idle", this, UpstreamConnectionPool::getIdle)
+                .description("Open model connections waiting for a call")
+                .register(registry);
+        Gauge.builder("seemenu.http.pool.pending", this, UpstreamConnectionPool::getPending)
+                .description("Calls waiting for a model connection")
+                .register(registry);
+        Gauge.builder("seemenu.http.pool.max", this, UpstreamConnectionPool::getMaxConnections)
+                .description("Configured maximum model connections")
+                .register(registry);
+    }
+
+    private int sum(ToIntFunction<ConnectionPoolMetrics> size) {
+        return pools.values().stream().mapToInt(pool -> size.applyAsInt(pool.metrics())).sum();
+    }
+
+    @Override
+    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress,
+                                ConnectionPoolMetrics metrics) {
+        pools.put(id + remoteAddress, new Pool(remoteAddress, metrics));
+    }
+
+    @Override
+    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+        pools.remove(id + remoteAddress);
+    }
+
+    private record Pool(SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+    }
+}
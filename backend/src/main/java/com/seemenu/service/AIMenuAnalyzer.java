@@ -1,178 +1,655 @@
 package com.seemenu.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seemenu.knowledge.DishKnowledge;
+import com.seemenu.knowledge.DishKnowledgeIndex;
+import com.seemenu.knowledge.DishNames;
+import com.seemenu.metrics.PipelineMetrics;
 import com.seemenu.model.DishInfo;
-import lombok.RequiredArgsConstructor;
+import com.seemenu.openai.AdaptiveConcurrencyLimiter;
+import com.seemenu.openai.ChatCompletionRequest;
+import com.seemenu.openai.ChatCompletionRequestWriter;
+import com.seemenu.openai.DishResponseParser;
+import com.seemenu.openai.DishStreamParser;
+import com.seemenu.openai.MenuSchemas;
+import com.seemenu.openai.ModelUnavailableException;
+import com.seemenu.openai.RateLimitHeaders;
+import com.seemenu.service.CompletionPlanner.Kind;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Service;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.*;
-
-@Service
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * MenuAnalyzer backed by an OpenAI-compatible chat-completions endpoint and one vision model
+ * One instance per configured backend, each with its own client and concurrency limit (see OpenAIConfig).
+ * Once the dish knowledge index is ready, buffered analyses only extract names and prices from the image and
+ * enrich them from the index; dishes it does not know go to the model in one text-only call. Each call asks for
+ * as many tokens as its dishes should take (see CompletionPlanner); a menu cut off at that limit keeps the dishes
+ * it got and is continued from the last of them.
+ */
 @Slf4j
-@RequiredArgsConstructor
-public class AIMenuAnalyzer {
+public class AIMenuAnalyzer implements MenuAnalyzer, MeterBinder {
 
+    private final String name;
+    private final String model;
     private final WebClient openAiWebClient;
+    private final ChatCompletionRequestWriter requestWriter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Duration timeout;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final PipelineMetrics metrics;
+    private final DishKnowledgeIndex knowledge;
+    private final DishMerger dishMerger;
+    private final CompletionPlanner planner;
+    private final boolean structuredOutputs;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DishResponseParser responseParser = new DishResponseParser(objectMapper);
+
+    // One dish in the answer, spelled out in prompts when structured outputs are off
+    private static final String DISH_SHAPE = "{\"name\":\"\",\"description\":null,\"price\":null,"
+            + "\"ingredients\":[],\"allergens\":[],\"dietaryInfo\":[]}";
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SERVER_SENT_EVENTS =
+            new ParameterizedTypeReference<>() {
+            };
+
+    @Builder
+    private AIMenuAnalyzer(String name, String model, WebClient openAiWebClient,
+                           ChatCompletionRequestWriter requestWriter, AdaptiveConcurrencyLimiter concurrencyLimiter,
+                           Duration timeout, int maxAttempts, Duration initialBackoff, Duration maxBackoff,
+                           PipelineMetrics metrics, DishKnowledgeIndex knowledge, DishMerger dishMerger,
+                           CompletionPlanner planner, boolean structuredOutputs) {
+        this.name = name;
+        this.model = model;
+        this.openAiWebClient = openAiWebClient;
+        this.requestWriter = requestWriter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.timeout = timeout;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.metrics = metrics;
+        this.knowledge = knowledge;
+        this.dishMerger = dishMerger;
+        this.planner = planner;
+        this.structuredOutputs = structuredOutputs;
+    }
 
-    @Value("${openai.model}")
-    private String model;
+    @Override
+    public String name() {
+        return name;
+    }
 
-    public List<DishInfo> analyzeMenuFromBase64(String base64Image) {
-        log.info("Analyzing menu with AI model: {}", model);
+    @Override
+    public Mono<List<DishInfo>> analyzeMenu(MenuImage image) {
+        if (knowledge != null && knowledge.isReady()) {
+            // Names, descriptions and prices only; the enrichment fields are left null
+            log.info("Listing menu dishes with AI model: {} ({})", model, name);
+            return extract(image, Kind.LISTING).flatMap(this::enrich);
+        }
+        log.info("Analyzing menu with AI model: {} ({})", model, name);
+        return extract(image, Kind.ANALYSIS);
+    }
 
-        String prompt = buildAnalysisPrompt();
+    /**
+     * The dishes of one menu, in as many calls as it takes
+     * A completion cut off at max_tokens keeps its complete dishes and is continued from the last of them, up to
+     * max-continuations times; a continuation that fails or adds nothing ends the menu with what it has.
+     */
+    private Mono<List<DishInfo>> extract(MenuImage image, Kind kind) {
+        int maxTokens = planner.maxTokens(kind, image.textLines());
+        ChatCompletionRequest request = buildRequest(List.of(toImage(image)), buildMenuPrompt(kind, List.of()),
+                schema(kind), maxTokens, false);
+        return call(request)
+                .flatMap(answer -> continueAfter(image, kind, new Extraction(answer), maxTokens, 1))
+                .map(extraction -> finish(image, kind, extraction));
+    }
 
-        try {
-            // Build request body for OpenAI Vision API
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            requestBody.put("max_tokens", 2000);
-            requestBody.put("temperature", 0.3);
-
-            // Force JSON mode for structured output (ensures valid JSON)
-            Map<String, String> responseFormat = new HashMap<>();
-            responseFormat.put("type", "json_object");
-            requestBody.put("response_format", responseFormat);
-
-            // Build messages array
-            List<Map<String, Object>> messages = new ArrayList<>();
-
-            Map<String, Object> userMessage = new HashMap<>();
-            userMessage.put("role", "user");
-
-            // Content is an array with text and image
-            List<Map<String, Object>> content = new ArrayList<>();
-
-            // Text content
-            Map<String, Object> textContent = new HashMap<>();
-            textContent.put("type", "text");
-            textContent.put("text", prompt);
-            content.add(textContent);
-
-            // Image content
-            Map<String, Object> imageContent = new HashMap<>();
-            imageContent.put("type", "image_url");
-            Map<String, String> imageUrl = new HashMap<>();
-            imageUrl.put("url", "data:image/jpeg;base64," + base64Image);
-            imageContent.put("image_url", imageUrl);
-            content.add(imageContent);
-
-            userMessage.put("content", content);
-            messages.add(userMessage);
-
-            requestBody.put("messages", messages);
-
-            // Call OpenAI API
-            log.info("Calling OpenAI API...");
-            String responseJson = openAiWebClient.post()
+    private Mono<Extraction> continueAfter(MenuImage image, Kind kind, Extraction extraction, int maxTokens,
+                                           int round) {
+        if (!extraction.truncated || round > planner.maxContinuations()) {
+            return Mono.just(extraction);
+        }
+        int budget = continuationTokens(image, kind, extraction, maxTokens);
+        metrics.recordContinuation(name);
+        log.info("Continuing menu after {} dishes with max_tokens={} ({}/{})", extraction.dishes.size(), budget,
+                round, planner.maxContinuations());
+
+        ChatCompletionRequest request = buildRequest(List.of(toImage(image)),
+                buildMenuPrompt(kind, extraction.dishes), schema(kind), budget, false);
+        extraction.nextCall();
+        return call(request)
+                .flatMap(answer -> extraction.add(answer) > 0
+                        ? continueAfter(image, kind, extraction, budget, round + 1)
+                        : Mono.just(extraction))
+                .onErrorResume(e -> {
+                    log.warn("Could not continue menu after {} dishes: {}", extraction.dishes.size(), e.getMessage());
+                    return Mono.just(extraction);
+                });
+    }
+
+    /**
+     * Fills ingredients, allergens and dietary info from the knowledge index, asking the model about the rest
+     * If that call fails for any reason but model capacity, the unknown dishes are returned without enrichment;
+     * an answer cut off at max_tokens enriches the dishes it got to.
+     */
+    private Mono<List<DishInfo>> enrich(List<DishInfo> dishes) {
+        List<DishInfo> unknown = new ArrayList<>();
+        for (DishInfo dish : dishes) {
+            knowledge.lookup(dish.getName()).ifPresentOrElse(known -> known.applyTo(dish), () -> unknown.add(dish));
+        }
+        log.info("Enriched {} of {} dishes from the knowledge index", dishes.size() - unknown.size(), dishes.size());
+        if (unknown.isEmpty()) {
+            return Mono.just(dishes);
+        }
+
+        ChatCompletionRequest request = buildRequest(List.of(), buildEnrichmentPrompt(unknown),
+                schema(Kind.ENRICHMENT), planner.maxTokensForDishes(Kind.ENRICHMENT, unknown.size()), false);
+        return call(request)
+                .map(enriched -> {
+                    if (!enriched.truncated()) {
+                        planner.observeTokens(Kind.ENRICHMENT, enriched.dishes().size(), enriched.completionTokens());
+                    }
+                    recordTokensPerDish(Kind.ENRICHMENT, enriched.completionTokens(), enriched.dishes().size());
+                    Map<String, DishInfo> byName = new HashMap<>();
+                    enriched.dishes().forEach(dish -> byName.putIfAbsent(DishNames.normalize(dish.getName()), dish));
+                    for (DishInfo dish : unknown) {
+                        DishInfo answer = byName.get(DishNames.normalize(dish.getName()));
+                        if (answer != null) {
+                            DishKnowledge.of(answer).applyTo(dish);
+                        }
+                    }
+                    return dishes;
+                })
+                .onErrorResume(e -> !(e instanceof ModelUnavailableException), e -> {
+                    log.warn("Could not enrich {} unknown dishes: {}", unknown.size(), e.getMessage());
+                    return Mono.just(dishes);
+                });
+    }
+
+    /**
+     * Analyzes several menus in one call, one result section per image
+     * The prompt is sent once for all of them. Each entry of the result is the dishes of the image at that
+     * position, or null when the model left that image out; parse failures, and an answer cut off at max_tokens,
+     * leave every entry null.
+     */
+    public Mono<List<List<DishInfo>>> analyzeMenus(List<MenuImage> images) {
+        log.info("Analyzing {} menus in one call with AI model: {} ({})", images.size(), model, name);
+
+        ChatCompletionRequest request = buildRequest(images.stream().map(AIMenuAnalyzer::toImage).toList(),
+                buildBatchPrompt(images.size()), MenuSchemas.BATCH, planner.maxTokens(Kind.ANALYSIS, images),
+                false);
+        return complete(request)
+                .flatMap(responseJson -> Mono.fromCallable(
+                        () -> metrics.timeStage("parse", () -> sections(parseCompletion(responseJson), request,
+                                images))));
+    }
+
+    /**
+     * One buffered call and its dishes; a completion cut off at max_tokens keeps the dishes it finished
+     */
+    private Mono<Answer> call(ChatCompletionRequest request) {
+        return complete(request)
+                .flatMap(responseJson -> Mono.fromCallable(
+                        () -> metrics.timeStage("parse", () -> answer(parseCompletion(responseJson), request))));
+    }
+
+    /**
+     * One buffered call through the limiter and retry policy; cancelling the returned Mono aborts the HTTP exchange
+     */
+    private Mono<String> complete(ChatCompletionRequest request) {
+        metrics.recordPayload("request", requestWriter.contentLength(request));
+
+        log.info("Calling OpenAI API...");
+        Mono<String> call = Mono.defer(() -> {
+            long start = System.nanoTime();
+            return openAiWebClient.post()
                     .uri("/chat/completions")
-                    .bodyValue(requestBody)
+                    .body(requestWriter.inserter(request, this::recordEncoding))
                     .retrieve()
-                    .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(),
-                            response -> response.bodyToMono(String.class)
-                                    .map(errorBody -> {
-                                        log.error("OpenAI API error response: {}", errorBody);
-                                        return new RuntimeException("OpenAI API error: " + errorBody);
-                                    }))
+                    .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(), this::toError)
                     .bodyToMono(String.class)
-                    .block();
+                    .timeout(timeout)
+                    .doOnNext(responseJson -> {
+                        metrics.recordUpstream(name, "total", System.nanoTime() - start);
+                        metrics.recordPayload("response", responseJson.length());
+                    });
+        });
+
+        return concurrencyLimiter.execute(call)
+                .retryWhen(retryPolicy())
+                .doOnError(metrics::recordFailure);
+    }
+
+    /**
+     * Streams dishes as the model generates them, each emitted as soon as its JSON object closes
+     * A stream cut off at max_tokens is followed by continuation streams, as in analyzeMenu. Errors of the first
+     * call are propagated so the caller can tell the client the stream ended early; a failed continuation just
+     * ends the stream.
+     */
+    @Override
+    public Flux<DishInfo> streamMenu(MenuImage image) {
+        log.info("Streaming menu analysis with AI model: {} ({})", model, name);
+
+        return Flux.defer(() -> {
+            Extraction extraction = new Extraction();
+            int maxTokens = planner.maxTokens(Kind.ANALYSIS, image.textLines());
+            ChatCompletionRequest request = buildRequest(List.of(toImage(image)),
+                    buildMenuPrompt(Kind.ANALYSIS, List.of()), schema(Kind.ANALYSIS), maxTokens, true);
+            return stream(request, extraction)
+                    .concatWith(Flux.defer(() -> continueStream(image, extraction, maxTokens, 1)))
+                    .doOnComplete(() -> finish(image, Kind.ANALYSIS, extraction));
+        });
+    }
+
+    private Flux<DishInfo> continueStream(MenuImage image, Extraction extraction, int maxTokens, int round) {
+        if (!extraction.truncated || round > planner.maxContinuations()) {
+            return Flux.empty();
+        }
+        int budget = continuationTokens(image, Kind.ANALYSIS, extraction, maxTokens);
+        metrics.recordContinuation(name);
+        log.info("Continuing menu stream after {} dishes with max_tokens={} ({}/{})", extraction.dishes.size(),
+                budget, round, planner.maxContinuations());
+
+        int before = extraction.dishes.size();
+        extraction.nextCall();
+        ChatCompletionRequest request = buildRequest(List.of(toImage(image)),
+                buildMenuPrompt(Kind.ANALYSIS, extraction.dishes), schema(Kind.ANALYSIS), budget, true);
+        return stream(request, extraction)
+                .concatWith(Flux.defer(() -> extraction.dishes.size() > before
+                        ? continueStream(image, extraction, budget, round + 1)
+                        : Flux.empty()))
+                .onErrorResume(e -> {
+                    log.warn("Could not continue menu stream after {} dishes: {}", extraction.dishes.size(),
+                            e.getMessage());
+                    return Flux.empty();
+                });
+    }
+
+    /**
+     * One streamed call through the limiter and retry policy, emitting the dishes the menu has not had yet
+     */
+    private Flux<DishInfo> stream(ChatCompletionRequest request, Extraction extraction) {
+        metrics.recordPayload("request", requestWriter.contentLength(request));
+
+        Flux<DishInfo> dishes = Flux.defer(() -> {
+            DishStreamParser parser;
+            try {
+                parser = new DishStreamParser(objectMapper, responseParser);
+            } catch (IOException e) {
+                return Flux.error(e);
+            }
+
+            long start = System.nanoTime();
+            return concurrencyLimiter.execute(openAiWebClient.post()
+                    .uri("/chat/completions")
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .body(requestWriter.inserter(request, this::recordEncoding))
+                    .retrieve()
+                    .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(), this::toError)
+                    .bodyToFlux(SERVER_SENT_EVENTS)
+                    .timeout(timeout)
+                    .takeWhile(event -> !"[DONE]".equals(event.data()))
+                    .concatMapIterable(event -> feedChunk(parser, event.data(), extraction))
+                    .doOnComplete(() -> metrics.recordUpstream(name, "total", System.nanoTime() - start)));
+        });
+
+        // Status errors arrive before any dish, so a retry never repeats dishes already emitted
+        return dishes
+                .retryWhen(retryPolicy())
+                // What a continuation repeats of the call before is dropped, as on the buffered path
+                .filter(extraction::accept)
+                .doOnComplete(() -> {
+                    if (extraction.truncated) {
+                        metrics.recordTruncated(name);
+                        log.warn("Stream cut off at max_tokens={} after {} dishes", request.getMaxTokens(),
+                                extraction.dishes.size());
+                    }
+                })
+                .doOnError(e -> {
+                    metrics.recordFailure(e);
+                    log.error("Error streaming menu analysis: {}", e.getMessage());
+                });
+    }
 
-            log.info("Received raw response from OpenAI");
-            log.debug("Full OpenAI response: {}", responseJson);
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        concurrencyLimiter.bindTo(registry);
+    }
 
-            // Parse response
-            JsonNode responseNode = objectMapper.readTree(responseJson);
+    /**
+     * Runs request writing and both response parsers against canned data, without calling the model
+     * Used before a SnapStart/CRaC checkpoint so the snapshot already has these classes loaded and initialized.
+     */
+    @Override
+    public void warmUp() throws IOException {
+        byte[] image = new byte[3 * 1024];
+        ChatCompletionRequest request = buildRequest(List.of(new ChatCompletionRequest.Image(image, "image/jpeg")),
+                buildMenuPrompt(Kind.ANALYSIS, List.of()), schema(Kind.ANALYSIS), planner.maxTokens(Kind.ANALYSIS, 0),
+                true);
+        requestWriter.write(request, DefaultDataBufferFactory.sharedInstance)
+                .doOnNext(DataBufferUtils::release)
+                .blockLast();
+
+        String content = "{\"dishes\":[{\"name\":\"Kung Pao Chicken\",\"description\":\"Diced chicken with peanuts\","
+                + "\"price\":\"$12.99\",\"ingredients\":[\"chicken\",\"peanuts\"],\"allergens\":[\"nuts\"],"
+                + "\"dietaryInfo\":[]}]}";
+        String completion = objectMapper.createObjectNode()
+                .set("choices", objectMapper.createArrayNode().add(objectMapper.createObjectNode()
+                        .set("message", objectMapper.createObjectNode().put("content", content))))
+                .toString();
+        answer(parseCompletion(completion), request);
+
+        DishStreamParser parser = new DishStreamParser(objectMapper, responseParser);
+        String chunk = objectMapper.createObjectNode()
+                .set("choices", objectMapper.createArrayNode().add(objectMapper.createObjectNode()
+                        .set("delta", objectMapper.createObjectNode().put("content", content))))
+                .toString();
+        feedChunk(parser, chunk, new Extraction());
+    }
 
-            // Check for errors
-            if (responseNode.has("error")) {
-                String errorMsg = responseNode.path("error").path("message").asText();
-                log.error("OpenAI API error: {}", errorMsg);
-                throw new RuntimeException("OpenAI API error: " + errorMsg);
+    private void recordEncoding(long nanos) {
+        metrics.recordStage("request_encode", nanos);
+    }
+
+    /**
+     * 429 and 5xx are worth retrying (and slow the limiter down); other errors are final
+     */
+    private Mono<? extends Throwable> toError(ClientResponse response) {
+        HttpStatusCode status = response.statusCode();
+        return response.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .map(errorBody -> {
+                    if (status.value() == HttpStatus.TOO_MANY_REQUESTS.value() || status.is5xxServerError()) {
+                        log.warn("OpenAI API error response ({}): {}", status.value(), errorBody);
+                        return new ModelUnavailableException("OpenAI API error: " + errorBody, status.value(),
+                                RateLimitHeaders.retryAfter(response.headers().asHttpHeaders()).orElse(Duration.ZERO));
+                    }
+                    log.error("OpenAI API error response ({}): {}", status.value(), errorBody);
+                    return new RuntimeException("OpenAI API error: " + errorBody);
+                });
+    }
+
+    /**
+     * Jittered exponential backoff for upstream 429/5xx, never sooner than the upstream asked for
+     * Gives up at once when the upstream asks for a longer wait than max-backoff; the caller then fails fast.
+     */
+    private Retry retryPolicy() {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable failure = signal.failure();
+            if (!(failure instanceof ModelUnavailableException unavailable) || !unavailable.isUpstream()
+                    || signal.totalRetries() + 1 >= maxAttempts
+                    || unavailable.getRetryAfter().compareTo(maxBackoff) > 0) {
+                return Mono.error(failure);
             }
 
-            String aiResponse = responseNode
-                    .path("choices")
-                    .get(0)
-                    .path("message")
-                    .path("content")
-                    .asText();
+            long backoff = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << signal.totalRetries());
+            // Equal jitter: at least half the backoff, so retries from many requests spread out but still back off
+            long jittered = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            Duration delay = Duration.ofMillis(Math.max(jittered, unavailable.getRetryAfter().toMillis()));
+            log.warn("OpenAI API returned {}, retrying in {} ms (attempt {}/{})",
+                    unavailable.getStatus(), delay.toMillis(), signal.totalRetries() + 2, maxAttempts);
+            return Mono.delay(delay);
+        }));
+    }
+
+    private ChatCompletionRequest buildRequest(List<ChatCompletionRequest.Image> images, String prompt,
+                                               String schema, int maxTokens, boolean stream) {
+        return ChatCompletionRequest.builder()
+                .model(model)
+                .maxTokens(maxTokens)
+                .temperature(0.3)
+                .prompt(prompt)
+                .images(images)
+                .stream(stream)
+                .jsonSchema(structuredOutputs ? schema : null)
+                .build();
+    }
 
-            log.info("AI response content: {}", aiResponse);
+    private static ChatCompletionRequest.Image toImage(MenuImage image) {
+        return new ChatCompletionRequest.Image(image.bytes(), image.mimeType());
+    }
+
+    private static String schema(Kind kind) {
+        return switch (kind) {
+            case ANALYSIS -> MenuSchemas.ANALYSIS;
+            case LISTING -> MenuSchemas.LISTING;
+            case ENRICHMENT -> MenuSchemas.ENRICHMENT;
+        };
+    }
+
+    /**
+     * max_tokens for continuing a menu; twice the last budget when it did not fit a single dish
+     */
+    private int continuationTokens(MenuImage image, Kind kind, Extraction extraction, int maxTokens) {
+        if (extraction.dishes.isEmpty()) {
+            return Math.min(maxTokens * 2, CompletionPlanner.MAX_TOKENS_PER_CALL);
+        }
+        return planner.continuationTokens(kind, image.textLines(), extraction.dishes.size(), maxTokens);
+    }
+
+    /**
+     * Records a menu's tokens per dish and, when it was read to the end, teaches the planner from it
+     * Completion tokens are only learned from menus answered in one call; continuations repeat the prompt's
+     * overhead without saying much about a dish.
+     */
+    private List<DishInfo> finish(MenuImage image, Kind kind, Extraction extraction) {
+        recordTokensPerDish(kind, extraction.completionTokens, extraction.dishes.size());
+        if (!extraction.truncated) {
+            planner.observeLines(image.textLines(), extraction.dishes.size());
+            if (extraction.calls == 1) {
+                planner.observeTokens(kind, extraction.dishes.size(), extraction.completionTokens);
+            }
+        }
+        return extraction.dishes;
+    }
 
-            return parseAIResponse(aiResponse);
+    private void recordTokensPerDish(Kind kind, long completionTokens, int dishes) {
+        if (completionTokens > 0 && dishes > 0) {
+            metrics.recordTokensPerDish(name, kind.tag(), (double) completionTokens / dishes);
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("Error analyzing menu with AI: {}", e.getMessage(), e);
+    /**
+     * Extracts the content delta from one streamed chunk and feeds it to the incremental parser
+     * Usage and finish reason go to the menu's extraction.
+     */
+    private List<DishInfo> feedChunk(DishStreamParser parser, String chunkJson, Extraction extraction) {
+        if (chunkJson == null || chunkJson.isBlank()) {
             return Collections.emptyList();
         }
+        try {
+            DishResponseParser.Completion chunk = responseParser.readCompletion(chunkJson);
+            // With stream_options.include_usage the last chunk has no choices, only usage
+            metrics.recordTokens(name, chunk.usage());
+            extraction.record(chunk);
+            String content = chunk.content();
+            return content == null || content.isEmpty() ? Collections.emptyList() : parser.feed(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed completion chunk", e);
+        }
     }
 
-    private String buildAnalysisPrompt() {
-        return """
-                Analyze this restaurant menu image and extract detailed information about each dish.
-
-                For each dish, provide:
-                1. Name of the dish
-                2. Description (if available)
-                3. Price
-                4. List of ingredients (if mentioned or can be inferred)
-                5. Common allergens (dairy, gluten, nuts, shellfish, etc.)
-                6. Dietary information (vegetarian, vegan, gluten-free, etc.)
-
-                Return your response as a JSON object with a "dishes" array containing this structure:
-                {
-                  "dishes": [
-                    {
-                      "name": "Dish Name",
-                      "description": "Brief description",
-                      "price": "$XX.XX",
-                      "ingredients": ["ingredient1", "ingredient2"],
-                      "allergens": ["allergen1", "allergen2"],
-                      "dietaryInfo": ["vegetarian", "gluten-free"]
-                    }
-                  ]
-                }
+    /**
+     * The content, usage and finish reason of a buffered completion, after recording its token usage
+     */
+    private DishResponseParser.Completion parseCompletion(String responseJson) throws IOException {
+        log.info("Received raw response from OpenAI");
+        log.debug("Full OpenAI response: {}", responseJson);
 
-                IMPORTANT: Return valid JSON only, no markdown code blocks or additional text.
-                """;
+        // Only the fields used below are read; the content is parsed by the caller
+        DishResponseParser.Completion completion = responseParser.readCompletion(responseJson);
+
+        // Check for errors
+        if (completion.error() != null) {
+            log.error("OpenAI API error: {}", completion.error());
+            throw new RuntimeException("OpenAI API error: " + completion.error());
+        }
+
+        metrics.recordTokens(name, completion.usage());
+        log.debug("AI response content: {}", completion.content());
+        return completion;
     }
 
-    private List<DishInfo> parseAIResponse(String response) {
-        List<DishInfo> dishes = new ArrayList<>();
+    /**
+     * The dishes of a buffered completion, or the complete ones at its start when it was cut off at max_tokens
+     */
+    private Answer answer(DishResponseParser.Completion completion, ChatCompletionRequest request) {
+        String content = completion.content() != null ? completion.content() : "";
+        long tokens = completion.usage() != null ? completion.usage().completionTokens() : 0;
+        if (!completion.truncated()) {
+            return new Answer(parseAIResponse(content), false, tokens);
+        }
+        metrics.recordTruncated(name);
+        List<DishInfo> dishes = salvage(content);
+        log.warn("Completion cut off at max_tokens={}; kept {} complete dishes", request.getMaxTokens(),
+                dishes.size());
+        return new Answer(dishes, true, tokens);
+    }
 
+    /**
+     * The dishes whose JSON objects closed before the content ends; the one being written is dropped
+     */
+    private List<DishInfo> salvage(String content) {
         try {
-            log.info("Parsing AI response...");
-            // Try to extract JSON from response
-            String jsonString = extractJSON(response);
-            log.info("Extracted JSON: {}", jsonString);
-
-            JsonNode rootNode = objectMapper.readTree(jsonString);
-
-            // Handle both old format (array) and new format (object with "dishes" array)
-            JsonNode dishesNode;
-            if (rootNode.isArray()) {
-                dishesNode = rootNode;
-            } else if (rootNode.has("dishes") && rootNode.get("dishes").isArray()) {
-                dishesNode = rootNode.get("dishes");
-            } else {
-                log.warn("Response is neither an array nor an object with 'dishes' array: {}", rootNode);
-                return dishes;
+            return new DishStreamParser(objectMapper, responseParser).feed(content);
+        } catch (IOException e) {
+            metrics.recordFailure("parse");
+            log.error("Error salvaging cut-off AI response: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * The sections of a multi-menu completion, all null when it was cut off: each menu is then analyzed alone
+     */
+    private List<List<DishInfo>> sections(DishResponseParser.Completion completion, ChatCompletionRequest request,
+                                          List<MenuImage> images) {
+        if (completion.truncated()) {
+            metrics.recordTruncated(name);
+            log.warn("Multi-menu completion cut off at max_tokens={}", request.getMaxTokens());
+            return new ArrayList<>(Collections.nCopies(images.size(), null));
+        }
+        List<List<DishInfo>> sections = parseSections(
+                completion.content() != null ? completion.content() : "", images.size());
+        int dishes = 0;
+        for (int i = 0; i < sections.size(); i++) {
+            if (sections.get(i) != null) {
+                dishes += sections.get(i).size();
+                planner.observeLines(images.get(i).textLines(), sections.get(i).size());
             }
+        }
+        long tokens = completion.usage() != null ? completion.usage().completionTokens() : 0;
+        planner.observeTokens(Kind.ANALYSIS, dishes, tokens);
+        recordTokensPerDish(Kind.ANALYSIS, tokens, dishes);
+        return sections;
+    }
 
-            log.info("Found {} dishes in response", dishesNode.size());
-            for (JsonNode dishNode : dishesNode) {
-                DishInfo dish = parseDishNode(dishNode);
-                dishes.add(dish);
-                log.debug("Parsed dish: {}", dish.getName());
+    /**
+     * Asks for a menu's dishes, or for those after the ones already extracted when continuing a cut-off answer
+     * The answer's shape is given by its schema; without structured outputs it is spelled out in one line.
+     */
+    private String buildMenuPrompt(Kind kind, List<DishInfo> extracted) {
+        StringBuilder prompt = new StringBuilder(kind == Kind.LISTING
+                ? """
+                List every dish on this restaurant menu image, in reading order. Copy name, description and price \
+                as printed, using null when absent."""
+                : """
+                Extract every dish on this restaurant menu image, in reading order. Copy name, description and \
+                price as printed, using null when absent. Add ingredients (stated or typical), common allergens \
+                (dairy, eggs, gluten, nuts, fish, shellfish, soy, sesame) and dietary info (vegetarian, vegan, \
+                gluten-free, spicy).""");
+        if (!extracted.isEmpty()) {
+            prompt.append("\nThe first %d dishes, up to and including \"%s\", are already extracted; extract only "
+                    .formatted(extracted.size(), extracted.get(extracted.size() - 1).getName()))
+                    .append("the dishes after it.");
+        }
+        if (!structuredOutputs) {
+            prompt.append(kind == Kind.LISTING
+                    ? "\nAnswer with JSON only: {\"dishes\":[{\"name\":\"\",\"description\":null,\"price\":null}]}"
+                    : "\nAnswer with JSON only: {\"dishes\":[" + DISH_SHAPE + "]}");
+        }
+        return prompt.toString();
+    }
+
+    /**
+     * Asks about dishes by name and description alone; names are echoed back to match the answers up
+     */
+    private String buildEnrichmentPrompt(List<DishInfo> dishes) {
+        StringBuilder prompt = new StringBuilder("""
+                For each restaurant dish below, give its ingredients (stated or typical), common allergens (dairy, \
+                eggs, gluten, nuts, fish, shellfish, soy, sesame) and dietary info (vegetarian, vegan, gluten-free, \
+                spicy). Repeat each name exactly as given.
+                """);
+        for (DishInfo dish : dishes) {
+            prompt.append("- ").append(dish.getName());
+            if (dish.getDescription() != null && !dish.getDescription().isBlank()) {
+                prompt.append(": ").append(dish.getDescription());
             }
+            prompt.append('\n');
+        }
+        if (!structuredOutputs) {
+            prompt.append("Answer with JSON only: {\"dishes\":[{\"name\":\"\",\"ingredients\":[],\"allergens\":[],"
+                    + "\"dietaryInfo\":[]}]}");
+        }
+        return prompt.toString();
+    }
+
+    /**
+     * The menu prompt, asking for one section per numbered image instead of one dish list
+     * Kept as short as the single-menu prompt: it is the only part of the input a batch saves on.
+     */
+    private String buildBatchPrompt(int images) {
+        String prompt = """
+                These %d images are separate restaurant menus, each labeled "Image n". For each image in order, \
+                extract every dish in reading order. Copy name, description and price as printed, using null when \
+                absent. Add ingredients (stated or typical), common allergens (dairy, eggs, gluten, nuts, fish, \
+                shellfish, soy, sesame) and dietary info (vegetarian, vegan, gluten-free, spicy). Give an image \
+                without dishes an empty dishes list.""".formatted(images);
+        return structuredOutputs ? prompt
+                : prompt + "\nAnswer with JSON only: {\"menus\":[{\"image\":1,\"dishes\":[" + DISH_SHAPE + "]}]}";
+    }
+
+    private List<List<DishInfo>> parseSections(String response, int images) {
+        try {
+            return responseParser.parseSections(response, images);
+        } catch (IOException e) {
+            metrics.recordFailure("parse");
+            log.error("Error parsing multi-menu AI response: {}", e.getMessage());
+            log.error("Response was: {}", response);
+            return new ArrayList<>(Collections.nCopies(images, null));
+        }
+    }
+
+    private List<DishInfo> parseAIResponse(String response) {
+        List<DishInfo> dishes = new ArrayList<>();
 
-        } catch (JsonProcessingException e) {
+        try {
+            log.info("Parsing AI response...");
+            dishes = responseParser.parse(response);
+        } catch (IOException e) {
+            metrics.recordFailure("parse");
             log.error("Error parsing AI response: {}", e.getMessage());
             log.error("Response was: {}", response);
         }
@@ -181,48 +658,83 @@ public class AIMenuAnalyzer {
         return dishes;
     }
 
-    private String extractJSON(String response) {
-        // Remove markdown code blocks if present
-        String cleaned = response.trim();
-        if (cleaned.startsWith("```json")) {
-            cleaned = cleaned.substring(7);
-        } else if (cleaned.startsWith("```")) {
-            cleaned = cleaned.substring(3);
-        }
-        if (cleaned.endsWith("```")) {
-            cleaned = cleaned.substring(0, cleaned.length() - 3);
-        }
-        return cleaned.trim();
+    /**
+     * The dishes of one buffered call, whether it was cut off at max_tokens, and the completion tokens it took
+     */
+    private record Answer(List<DishInfo> dishes, boolean truncated, long completionTokens) {
     }
 
-    private DishInfo parseDishNode(JsonNode node) {
-        DishInfo dish = new DishInfo();
-
-        if (node.has("name")) {
-            dish.setName(node.get("name").asText());
+    /**
+     * One menu's dishes over its calls so far, and what those calls cost
+     * A continuation may start over from a dish the previous call already had, so its dishes are checked against
+     * that call's by DishMerger.key. Dishes within one call are all kept: a menu may list the same dish twice.
+     * Used by one subscription at a time: calls are made one after the other.
+     */
+    private final class Extraction {
+
+        private final List<DishInfo> dishes = new ArrayList<>();
+        // Keys of the previous call's dishes; empty during the first call
+        private Set<String> previousCall = Set.of();
+        private Set<String> currentCall = new HashSet<>();
+        private long completionTokens;
+        private boolean truncated;
+        private int calls;
+
+        Extraction() {
         }
-        if (node.has("description")) {
-            dish.setDescription(node.get("description").asText());
-        }
-        if (node.has("price")) {
-            dish.setPrice(node.get("price").asText());
+
+        Extraction(Answer first) {
+            add(first);
         }
-        if (node.has("ingredients") && node.get("ingredients").isArray()) {
-            List<String> ingredients = new ArrayList<>();
-            node.get("ingredients").forEach(item -> ingredients.add(item.asText()));
-            dish.setIngredients(ingredients);
+
+        /**
+         * Starts a continuation call: what it repeats of the call before is not taken again
+         */
+        void nextCall() {
+            previousCall = currentCall;
+            currentCall = new HashSet<>();
         }
-        if (node.has("allergens") && node.get("allergens").isArray()) {
-            List<String> allergens = new ArrayList<>();
-            node.get("allergens").forEach(item -> allergens.add(item.asText()));
-            dish.setAllergens(allergens);
+
+        /**
+         * Adds a buffered call's dishes; returns how many were new
+         */
+        int add(Answer answer) {
+            calls++;
+            completionTokens += answer.completionTokens();
+            truncated = answer.truncated();
+            int added = 0;
+            for (DishInfo dish : answer.dishes()) {
+                if (accept(dish)) {
+                    added++;
+                }
+            }
+            return added;
         }
-        if (node.has("dietaryInfo") && node.get("dietaryInfo").isArray()) {
-            List<String> dietaryInfo = new ArrayList<>();
-            node.get("dietaryInfo").forEach(item -> dietaryInfo.add(item.asText()));
-            dish.setDietaryInfo(dietaryInfo);
+
+        /**
+         * Takes a dish unless the previous call already had it
+         */
+        boolean accept(DishInfo dish) {
+            String key = dishMerger.key(dish);
+            currentCall.add(key);
+            if (previousCall.contains(key)) {
+                return false;
+            }
+            dishes.add(dish);
+            return true;
         }
 
-        return dish;
+        /**
+         * Notes a streamed chunk's usage, and its finish reason, which ends a call
+         */
+        void record(DishResponseParser.Completion chunk) {
+            if (chunk.usage() != null) {
+                completionTokens += chunk.usage().completionTokens();
+            }
+            if (chunk.finishReason() != null) {
+                calls++;
+                truncated = chunk.truncated();
+            }
+        }
     }
 }
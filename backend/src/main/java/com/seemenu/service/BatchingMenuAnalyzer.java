@@ -0,0 +1,189 @@
+package com.seemenu.service;
+
+import com.seemenu.model.DishInfo;
+import com.seemenu.openai.ModelUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micro-batches small menus arriving close together into one multi-image call to a backend
+ * A batch is sent once it holds max-size images, or window after its first image arrived. The prompt and the
+ * per-call overhead are then paid once per batch instead of once per menu, and a batch takes one concurrency
+ * permit. The answer is split back per image; an image the model left out, or every image of a call that failed
+ * for another reason than model capacity, is analyzed on its own. Images over max-image-size (high-resolution
+ * pages and tiles, which need the model's full attention) and streams bypass the batcher.
+ * Cancelling one caller does not cancel the batched call, which other callers may be waiting for.
+ */
+@Slf4j
+public class BatchingMenuAnalyzer implements MenuAnalyzer, MeterBinder {
+
+    private final AIMenuAnalyzer delegate;
+    private final int maxSize;
+    private final Duration window;
+    private final long maxImageSize;
+
+    private final Object lock = new Object();
+    private List<Pending> open = new ArrayList<>(); // guarded by lock
+    private Disposable timer; // guarded by lock
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedMenus = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    @Builder
+    private BatchingMenuAnalyzer(AIMenuAnalyzer delegate, int maxSize, Duration window, long maxImageSize) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.window = window;
+        this.maxImageSize = maxImageSize;
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public Mono<List<DishInfo>> analyzeMenu(MenuImage image) {
+        if (maxSize < 2 || image.bytes().length > maxImageSize) {
+            return delegate.analyzeMenu(image);
+        }
+        return Mono.defer(() -> {
+            Pending pending = new Pending(image);
+            List<Pending> full = add(pending);
+            if (full != null) {
+                dispatch(full);
+            }
+            return pending.result.asMono();
+        });
+    }
+
+    @Override
+    public Flux<DishInfo> streamMenu(MenuImage image) {
+        return delegate.streamMenu(image);
+    }
+
+    @Override
+    public void warmUp() throws IOException {
+        delegate.warmUp();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("seemenu.batching.calls", batches, AtomicLong::get)
+                .description("Model calls carrying several menus")
+                .tag("backend", name())
+                .register(registry);
+        FunctionCounter.builder("seemenu.batching.menus", batchedMenus, AtomicLong::get)
+                .description("Menus sent in multi-menu calls")
+                .tag("backend", name())
+                .register(registry);
+        FunctionCounter.builder("seemenu.batching.fallbacks", fallbacks, AtomicLong::get)
+                .description("Menus of a multi-menu call analyzed again on their own")
+                .tag("backend", name())
+                .register(registry);
+        delegate.bindTo(registry);
+    }
+
+    /**
+     * Adds the menu to the open batch; returns the batch if that filled it up
+     */
+    private List<Pending> add(Pending pending) {
+        synchronized (lock) {
+            open.add(pending);
+            if (open.size() == 1) {
+                List<Pending> batch = open;
+                timer = Schedulers.parallel().schedule(() -> flush(batch), window.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            if (open.size() < maxSize) {
+                return null;
+            }
+            timer.dispose();
+            return take();
+        }
+    }
+
+    /**
+     * Sends the batch when its window ends, unless it already went out full
+     */
+    private void flush(List<Pending> batch) {
+        synchronized (lock) {
+            if (open != batch) {
+                return;
+            }
+            take();
+        }
+        dispatch(batch);
+    }
+
+    private List<Pending> take() {
+        List<Pending> batch = open;
+        open = new ArrayList<>();
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+        if (batch.size() == 1) {
+            analyzeAlone(batch.get(0));
+            return;
+        }
+
+        batches.incrementAndGet();
+        batchedMenus.addAndGet(batch.size());
+        log.info("Sending {} menus to {} in one call", batch.size(), name());
+        delegate.analyzeMenus(batch.stream().map(pending -> pending.image).toList())
+                .subscribe(sections -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (sections.get(i) != null) {
+                            batch.get(i).result.tryEmitValue(sections.get(i));
+                        } else {
+                            fallbacks.incrementAndGet();
+                            analyzeAlone(batch.get(i));
+                        }
+                    }
+                }, e -> {
+                    if (e instanceof ModelUnavailableException) {
+                        // Splitting the batch up would only multiply the calls the model has no capacity for
+                        batch.forEach(pending -> pending.result.tryEmitError(e));
+                        return;
+                    }
+                    log.warn("Multi-menu call to {} failed, analyzing its {} menus one by one: {}",
+                            name(), batch.size(), e.getMessage());
+                    fallbacks.addAndGet(batch.size());
+                    batch.forEach(this::analyzeAlone);
+                });
+    }
+
+    private void analyzeAlone(Pending pending) {
+        delegate.analyzeMenu(pending.image)
+                .subscribe(pending.result::tryEmitValue, pending.result::tryEmitError, pending.result::tryEmitEmpty);
+    }
+
+    /**
+     * A menu waiting in a batch and the caller's result
+     */
+    private static final class Pending {
+
+        private final MenuImage image;
+        private final Sinks.One<List<DishInfo>> result = Sinks.one();
+
+        private Pending(MenuImage image) {
+            this.image = image;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.seemenu.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sizes max_tokens for each model call from the dishes it is expected to return
+ * A menu's dishes are estimated from the lines of text counted in its image (see TextLines) at a dishes-per-line
+ * ratio, and its answer at a tokens-per-dish figure for the kind of call. Both start from configuration and then
+ * follow what complete answers actually contained. An answer cut off anyway is salvaged and continued by
+ * AIMenuAnalyzer, so an underestimate costs one more call rather than the menu.
+ */
+@Component
+@Slf4j
+public class CompletionPlanner implements MeterBinder {
+
+    // Output limit of the gpt-4o family; no call asks for more
+    public static final int MAX_TOKENS_PER_CALL = 16384;
+    // {"dishes":[ ]} and the end of the answer
+    private static final int ANSWER_OVERHEAD_TOKENS = 20;
+    private static final double LEARNING_RATE = 0.1;
+    // Answers with fewer dishes say more about their overhead than about dishes
+    private static final int MIN_LEARNING_DISHES = 3;
+
+    /**
+     * What a call asks for: whole dishes, names and prices only, or the enrichment of named dishes
+     */
+    public enum Kind {
+        ANALYSIS(110), LISTING(35), ENRICHMENT(60);
+
+        private final int initialTokensPerDish;
+
+        Kind(int initialTokensPerDish) {
+            this.initialTokensPerDish = initialTokensPerDish;
+        }
+
+        public String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    @Value("${menu.planner.enabled:true}")
+    private boolean enabled;
+
+    @Value("${menu.planner.default-max-tokens:2000}")
+    private int defaultMaxTokens;
+
+    @Value("${menu.planner.min-tokens:400}")
+    private int minTokens;
+
+    @Value("${menu.planner.lines-per-dish:2.5}")
+    private double linesPerDish;
+
+    @Value("${menu.planner.headroom:1.5}")
+    private double headroom;
+
+    @Value("${menu.planner.max-continuations:2}")
+    private int maxContinuations;
+
+    private final Map<Kind, Double> tokensPerDish = new EnumMap<>(Kind.class);
+    private double dishesPerLine;
+
+    @PostConstruct
+    void init() {
+        for (Kind kind : Kind.values()) {
+            tokensPerDish.put(kind, (double) kind.initialTokensPerDish);
+        }
+        dishesPerLine = 1 / linesPerDish;
+        if (enabled) {
+            log.info("Sizing max_tokens from text lines at {} lines per dish with {}x headroom", linesPerDish,
+                    headroom);
+        }
+    }
+
+    /**
+     * max_tokens for one menu with textLines lines of text; default-max-tokens when the count is unknown (0)
+     */
+    public int maxTokens(Kind kind, int textLines) {
+        if (!enabled || textLines <= 0) {
+            return defaultMaxTokens;
+        }
+        return maxTokensForDishes(kind, estimatedDishes(textLines));
+    }
+
+    /**
+     * max_tokens for several menus answered in one call: the sum of their own budgets
+     */
+    public int maxTokens(Kind kind, List<MenuImage> images) {
+        long total = 0;
+        for (MenuImage image : images) {
+            total += maxTokens(kind, image.textLines());
+        }
+        return (int) Math.min(total, MAX_TOKENS_PER_CALL);
+    }
+
+    /**
+     * max_tokens for an answer with a known number of dishes, such as the enrichment of named dishes
+     */
+    public int maxTokensForDishes(Kind kind, int dishes) {
+        if (!enabled) {
+            return defaultMaxTokens;
+        }
+        double tokens = (dishes * tokensPerDish(kind) + ANSWER_OVERHEAD_TOKENS) * headroom;
+        return (int) Math.max(minTokens, Math.min(Math.ceil(tokens), MAX_TOKENS_PER_CALL));
+    }
+
+    /**
+     * max_tokens for the call continuing a menu cut off after salvaged dishes, given the budget that was too small
+     * Asks for the dishes still expected, or half as many again as were salvaged when the estimate was passed.
+     */
+    public int continuationTokens(Kind kind, int textLines, int salvaged, int previousMaxTokens) {
+        if (!enabled || textLines <= 0) {
+            return previousMaxTokens;
+        }
+        int remaining = Math.max(estimatedDishes(textLines) - salvaged, (salvaged + 1) / 2);
+        return maxTokensForDishes(kind, remaining);
+    }
+
+    public int maxContinuations() {
+        return maxContinuations;
+    }
+
+    /**
+     * Dishes expected on a menu with textLines lines of text; at least one
+     */
+    public synchronized int estimatedDishes(int textLines) {
+        return Math.max(1, (int) Math.ceil(textLines * dishesPerLine));
+    }
+
+    /**
+     * Learns from an answer that was not cut off: how many completion tokens its dishes took
+     */
+    public synchronized void observeTokens(Kind kind, int dishes, long completionTokens) {
+        if (dishes < MIN_LEARNING_DISHES || completionTokens <= 0) {
+            return;
+        }
+        double observed = (double) Math.max(0, completionTokens - ANSWER_OVERHEAD_TOKENS) / dishes;
+        tokensPerDish.merge(kind, observed, (current, next) -> current + LEARNING_RATE * (next - current));
+    }
+
+    /**
+     * Learns from a menu read to the end: how many dishes its lines of text held
+     */
+    public synchronized void observeLines(int textLines, int dishes) {
+        if (textLines <= 0 || dishes < MIN_LEARNING_DISHES) {
+            return;
+        }
+        dishesPerLine += LEARNING_RATE * ((double) dishes / textLines - dishesPerLine);
+    }
+
+    public synchronized double tokensPerDish(Kind kind) {
+        return tokensPerDish.get(kind);
+    }
+
+    public synchronized double getDishesPerLine() {
+        return dishesPerLine;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Kind kind : Kind.values()) {
+            Gauge.builder("seemenu.planner.tokens_per_dish", this, planner -> planner.tokensPerDish(kind))
+                    .description("Completion tokens per dish the planner sizes max_tokens with")
+                    .tag("kind", kind.tag())
+                    .register(registry);
+        }
+        Gauge.builder("seemenu.planner.dishes_per_line", this, CompletionPlanner::getDishesPerLine)
+                .description("Dishes per line of text the planner estimates menus with")
+                .register(registry);
+    }
+}
@@ -0,0 +1,186 @@
+package com.seemenu.service;
+
+import com.seemenu.model.DishInfo;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Merges dish lists from tiles or pages of one menu
+ * Tiles overlap, so a dish on a tile boundary is usually reported twice; duplicates are recognised by normalized
+ * name and price and folded into the copy from the first part. Only copies from different parts are folded: one
+ * part listing the same dish twice (two sizes, two sections) keeps both. The buffered and streaming paths share
+ * this rule through Merge, and the result does not depend on the order in which the parts' dishes arrive.
+ */
+@Component
+public class DishMerger {
+
+    public List<DishInfo> merge(List<List<DishInfo>> parts) {
+        Merge merge = newMerge();
+        for (int part = 0; part < parts.size(); part++) {
+            for (DishInfo dish : parts.get(part)) {
+                merge.add(part, dish);
+            }
+        }
+        return merge.dishes();
+    }
+
+    /**
+     * An empty merge for the dishes of one menu
+     */
+    public Merge newMerge() {
+        return new Merge();
+    }
+
+    /**
+     * Identity of a dish for de-duplication: normalized name plus normalized price
+     */
+    public String key(DishInfo dish) {
+        return normalize(dish.getName()) + "|" + normalize(dish.getPrice());
+    }
+
+    /**
+     * A merge fed one dish at a time, as the parts of a menu are streamed concurrently
+     * Not thread-safe; callers serialize add.
+     */
+    public final class Merge {
+
+        private final List<Entry> entries = new ArrayList<>();
+        private final Map<String, List<Entry>> byKey = new HashMap<>();
+        private final Map<String, List<Entry>> byName = new HashMap<>();
+        private final Map<Integer, Integer> seen = new HashMap<>();
+
+        private Merge() {
+        }
+
+        /**
+         * Adds the next dish of a part; returns false when it was folded into a copy another part reported
+         */
+        public boolean add(int part, DishInfo dish) {
+            int index = seen.merge(part, 1, Integer::sum) - 1;
+            Entry existing = match(part, dish);
+            if (existing == null) {
+                Entry entry = new Entry(dish, part, index);
+                entries.add(entry);
+                index(entry, dish);
+                return true;
+            }
+
+            existing.parts.add(part);
+            index(existing, dish);
+            if (part < existing.part) {
+                // The copy from the earlier part is the one kept, whichever arrived first
+                fillMissing(dish, existing.dish);
+                existing.dish = dish;
+                existing.part = part;
+                existing.index = index;
+            } else {
+                fillMissing(existing.dish, dish);
+            }
+            return false;
+        }
+
+        /**
+         * The merged dishes in part order, each part's in the order it listed them
+         */
+        public List<DishInfo> dishes() {
+            return entries.stream()
+                    .sorted(Entry.ORDER)
+                    .map(entry -> entry.dish)
+                    .toList();
+        }
+
+        private Entry match(int part, DishInfo dish) {
+            Entry sameKey = earliest(byKey.get(key(dish)), part, entry -> true);
+            if (sameKey != null) {
+                return sameKey;
+            }
+            // A dish cut off at a tile edge may have lost its price; match it by name alone
+            return earliest(byName.get(normalize(dish.getName())), part,
+                    entry -> isBlank(dish.getPrice()) || isBlank(entry.dish.getPrice()));
+        }
+
+        /**
+         * The earliest candidate that no copy from part was folded into yet
+         */
+        private Entry earliest(List<Entry> candidates, int part, Predicate<Entry> matches) {
+            if (candidates == null) {
+                return null;
+            }
+            return candidates.stream()
+                    .filter(entry -> !entry.parts.contains(part) && matches.test(entry))
+                    .min(Entry.ORDER)
+                    .orElse(null);
+        }
+
+        private void index(Entry entry, DishInfo dish) {
+            List<Entry> sameKey = byKey.computeIfAbsent(key(dish), key -> new ArrayList<>());
+            if (!sameKey.contains(entry)) {
+                sameKey.add(entry);
+            }
+            List<Entry> sameName = byName.computeIfAbsent(normalize(dish.getName()), name -> new ArrayList<>());
+            if (!sameName.contains(entry)) {
+                sameName.add(entry);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private static final Comparator<Entry> ORDER =
+                Comparator.<Entry>comparingInt(entry -> entry.part).thenComparingInt(entry -> entry.index);
+
+        private DishInfo dish;
+        private int part;
+        private int index;
+        private final Set<Integer> parts = new HashSet<>();
+
+        private Entry(DishInfo dish, int part, int index) {
+            this.dish = dish;
+            this.part = part;
+            this.index = index;
+            parts.add(part);
+        }
+    }
+
+    private String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    private void fillMissing(DishInfo target, DishInfo source) {
+        if (isBlank(target.getDescription())) {
+            target.setDescription(source.getDescription());
+        }
+        if (isBlank(target.getPrice())) {
+            target.setPrice(source.getPrice());
+        }
+        if (isEmpty(target.getIngredients())) {
+            target.setIngredients(source.getIngredients());
+        }
+        if (isEmpty(target.getAllergens())) {
+            target.setAllergens(source.getAllergens());
+        }
+        if (isEmpty(target.getDietaryInfo())) {
+            target.setDietaryInfo(source.getDietaryInfo());
+        }
+    }
+
+    private boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private boolean isEmpty(List<String> values) {
+        return values == null || values.isEmpty();
+    }
+}
@@ -0,0 +1,145 @@
+package com.seemenu.service;
+
+import com.seemenu.model.DishInfo;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of menu analyses, keyed by the upload's content hash
+ * Identical uploads arriving while one is being analyzed (a shared QR code or link) attach to that analysis
+ * instead of calling the model again. Every caller gets the same result or error; the upstream analysis is
+ * cancelled only once all of its callers have cancelled.
+ */
+@Component
+@Slf4j
+public class InFlightAnalyses implements MeterBinder {
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    @Value("${menu.coalescing.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Runs the analysis for this key, or joins the one already in flight
+     */
+    public Mono<List<DishInfo>> join(String key, Supplier<Mono<List<DishInfo>>> analysis) {
+        if (!enabled) {
+            return Mono.defer(analysis);
+        }
+
+        return Mono.defer(() -> {
+            Flight[] created = new Flight[1];
+            Flight flight = flights.compute(key, (k, current) -> {
+                if (current != null && current.attach()) {
+                    return current;
+                }
+                created[0] = new Flight(k);
+                return created[0];
+            });
+
+            if (flight == created[0]) {
+                started.incrementAndGet();
+                flight.start(analysis.get());
+            } else {
+                coalesced.incrementAndGet();
+                log.info("Coalesced upload {} onto in-flight analysis (coalesced={}, started={})",
+                        key, coalesced.get(), started.get());
+            }
+            return flight.result();
+        });
+    }
+
+    /**
+     * Analyses that called upstream
+     */
+    public long getStarted() {
+        return started.get();
+    }
+
+    /**
+     * Requests served by joining an analysis already in flight
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public int size() {
+        return flights.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("seemenu.analyses", started, AtomicLong::get)
+                .description("Analyses started, and uploads coalesced onto one already in flight")
+                .tag("outcome", "started")
+                .register(registry);
+        FunctionCounter.builder("seemenu.analyses", coalesced, AtomicLong::get)
+                .description("Analyses started, and uploads coalesced onto one already in flight")
+                .tag("outcome", "coalesced")
+                .register(registry);
+        Gauge.builder("seemenu.analyses.in_flight", this, InFlightAnalyses::size)
+                .description("Distinct analyses in flight")
+                .register(registry);
+    }
+
+    /**
+     * One upstream analysis and the callers waiting for it
+     */
+    private final class Flight {
+
+        private final String key;
+        private final Sinks.One<List<DishInfo>> sink = Sinks.one();
+        private final AtomicInteger callers = new AtomicInteger(1);
+        private volatile Disposable upstream;
+
+        private Flight(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Adds a caller; fails once every earlier caller has cancelled and the flight is being torn down
+         */
+        private boolean attach() {
+            return callers.getAndUpdate(n -> n == 0 ? 0 : n + 1) > 0;
+        }
+
+        private void start(Mono<List<DishInfo>> analysis) {
+            upstream = analysis
+                    .doFinally(signal -> flights.remove(key, this))
+                    .subscribe(sink::tryEmitValue, sink::tryEmitError, sink::tryEmitEmpty);
+        }
+
+        private Mono<List<DishInfo>> result() {
+            return sink.asMono().doOnCancel(this::detach);
+        }
+
+        private void detach() {
+            if (callers.decrementAndGet() == 0) {
+                flights.remove(key, this);
+                Disposable running = upstream;
+                if (running != null) {
+                    running.dispose();
+                }
+                log.debug("Cancelled analysis {}: all callers went away", key);
+            }
+        }
+    }
+}
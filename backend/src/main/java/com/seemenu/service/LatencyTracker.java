@@ -0,0 +1,58 @@
+package com.seemenu.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Latency percentiles over the most recent successful calls and an exponentially weighted error rate
+ * Percentiles sort a copy of the window on demand; the window is small, and they are read once per request.
+ */
+public class LatencyTracker {
+
+    private static final double ERROR_RATE_WEIGHT = 0.1;
+
+    private final long[] window;
+    private int next;
+    private int count;
+    private double errorRate;
+
+    public LatencyTracker(int windowSize) {
+        this.window = new long[windowSize];
+    }
+
+    public synchronized void recordSuccess(long latencyNanos) {
+        window[next] = latencyNanos;
+        next = (next + 1) % window.length;
+        count = Math.min(count + 1, window.length);
+        errorRate *= 1 - ERROR_RATE_WEIGHT;
+    }
+
+    public synchronized void recordFailure() {
+        errorRate = errorRate * (1 - ERROR_RATE_WEIGHT) + ERROR_RATE_WEIGHT;
+    }
+
+    /**
+     * Latency at the given quantile (0.5 = median), or empty before the first successful call
+     */
+    public Optional<Duration> percentile(double quantile) {
+        long[] samples;
+        synchronized (this) {
+            if (count == 0) {
+                return Optional.empty();
+            }
+            samples = Arrays.copyOf(window, count);
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(quantile * samples.length) - 1;
+        return Optional.of(Duration.ofNanos(samples[Math.max(0, Math.min(samples.length - 1, index))]));
+    }
+
+    public synchronized int samples() {
+        return count;
+    }
+
+    public synchronized double errorRate() {
+        return errorRate;
+    }
+}
@@ -0,0 +1,33 @@
+package com.seemenu.service;
+
+import com.seemenu.model.DishInfo;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Extracts dishes from a menu image using a vision model backend
+ * Implementations signal failures as errors; deciding what the user sees on failure is left to the caller.
+ */
+public interface MenuAnalyzer {
+
+    /**
+     * Name used in logs and latency statistics
+     */
+    String name();
+
+    Mono<List<DishInfo>> analyzeMenu(MenuImage image);
+
+    /**
+     * Emits dishes one by one as the model produces them
+     */
+    Flux<DishInfo> streamMenu(MenuImage image);
+
+    /**
+     * Exercises the request and response code paths without calling the model (see SnapStartPrimer)
+     */
+    default void warmUp() throws IOException {
+    }
+}
@@ -0,0 +1,300 @@
+package com.seemenu.service;
+
+import com.seemenu.model.DishInfo;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Routes menu analyses across the configured model backends by observed latency and error rate
+ * Each call goes to the backend with the best recent median latency (penalized by its error rate). If it has not
+ * answered by its hedge-percentile latency, the same request is also sent to the next-best backend and whichever
+ * answers first wins; the other call is cancelled. A failed call fails over to the next-best backend at once.
+ * Hedges are budgeted to max-ratio of requests, so a slow upstream cannot double the load on it. With a single
+ * backend there is nothing to hedge or fail over to, and each call is made once.
+ * This is the application's MenuAnalyzer; the per-backend analyzers are not beans themselves. When every backend
+ * tried has failed, the last error reaches the caller as it is.
+ */
+@Slf4j
+public class MenuAnalyzerRouter implements MenuAnalyzer, MeterBinder {
+
+    private static final int LATENCY_WINDOW = 256;
+    private static final double ERROR_PENALTY = 4.0;
+    private static final double MAX_HEDGE_TOKENS = 10.0;
+
+    private final List<Route> routes;
+
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+    private final Object hedgeBudgetLock = new Object();
+    private double hedgeTokens = MAX_HEDGE_TOKENS;
+
+    @Value("${menu.analyzer.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${menu.analyzer.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${menu.analyzer.hedge.min-delay:2s}")
+    private Duration minHedgeDelay;
+
+    @Value("${menu.analyzer.hedge.initial-delay:20s}")
+    private Duration initialHedgeDelay;
+
+    @Value("${menu.analyzer.hedge.max-ratio:0.1}")
+    private double maxHedgeRatio;
+
+    @Value("${menu.analyzer.min-samples:20}")
+    private int minSamples;
+
+    public MenuAnalyzerRouter(List<? extends MenuAnalyzer> backends) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("At least one menu analyzer backend is required");
+        }
+        this.routes = backends.stream().map(Route::new).toList();
+    }
+
+    @Override
+    public String name() {
+        return "router";
+    }
+
+    @Override
+    public Mono<List<DishInfo>> analyzeMenu(MenuImage image) {
+        return Mono.defer(() -> {
+                    List<Route> ranked = ranked();
+                    Route primary = ranked.get(0);
+                    Optional<Route> secondary = secondary(ranked, primary);
+                    if (!hedgeEnabled || secondary.isEmpty()) {
+                        return primary.analyze(image);
+                    }
+                    return hedged(primary, secondary.get(), image);
+                });
+    }
+
+    /**
+     * Streams are routed but not hedged: dishes already sent to the client cannot be taken back
+     */
+    @Override
+    public Flux<DishInfo> streamMenu(MenuImage image) {
+        return Flux.defer(() -> ranked().get(0).stream(image));
+    }
+
+    @Override
+    public void warmUp() throws IOException {
+        for (Route route : routes) {
+            route.analyzer.warmUp();
+        }
+    }
+
+    /**
+     * Latency and error statistics per backend, in configuration order
+     */
+    public List<BackendStats> stats() {
+        return routes.stream()
+                .map(route -> new BackendStats(route.analyzer.name(),
+                        route.tracker.percentile(0.5).orElse(Duration.ZERO),
+                        route.tracker.percentile(0.99).orElse(Duration.ZERO),
+                        route.tracker.errorRate(),
+                        route.tracker.samples()))
+                .toList();
+    }
+
+    /**
+     * Hedged requests sent because the first backend was slow
+     */
+    public long getHedged() {
+        return hedged.get();
+    }
+
+    /**
+     * Hedged requests that answered before the original request
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * Requests retried on another backend because the first one failed
+     */
+    public long getFailovers() {
+        return failovers.get();
+    }
+
+    /**
+     * Hedging counters and per-backend latency, plus whatever each backend binds itself (its limiter)
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("seemenu.router.hedged", hedged, AtomicLong::get)
+                .description("Requests also sent to a second backend because the first was slow")
+                .register(registry);
+        FunctionCounter.builder("seemenu.router.hedge_wins", hedgeWins, AtomicLong::get)
+                .description("Hedged requests answered first by the second backend")
+                .register(registry);
+        FunctionCounter.builder("seemenu.router.failovers", failovers, AtomicLong::get)
+                .description("Requests retried on another backend because the first failed")
+                .register(registry);
+
+        for (Route route : routes) {
+            String backend = route.analyzer.name();
+            for (double quantile : new double[]{0.5, 0.99}) {
+                Gauge.builder("seemenu.router.latency", route.tracker,
+                                tracker -> tracker.percentile(quantile).map(d -> d.toNanos() / 1e9).orElse(Double.NaN))
+                        .description("Recent model call latency the router ranks backends by")
+                        .baseUnit("seconds")
+                        .tags("backend", backend, "quantile", String.valueOf(quantile))
+                        .register(registry);
+            }
+            Gauge.builder("seemenu.router.error_rate", route.tracker, LatencyTracker::errorRate)
+                    .description("Recent failure rate of model calls")
+                    .tag("backend", backend)
+                    .register(registry);
+            if (route.analyzer instanceof MeterBinder binder) {
+                binder.bindTo(registry);
+            }
+        }
+    }
+
+    private Mono<List<DishInfo>> hedged(Route primary, Route secondary, MenuImage image) {
+        addHedgeToken();
+        Duration delay = hedgeDelay(primary);
+        Sinks.Empty<Void> primaryFailed = Sinks.empty();
+        AtomicReference<Throwable> lastError = new AtomicReference<>();
+        AtomicReference<String> trigger = new AtomicReference<>();
+
+        Mono<List<DishInfo>> first = primary.analyze(image)
+                .doOnError(e -> {
+                    lastError.set(e);
+                    primaryFailed.tryEmitEmpty();
+                });
+
+        Mono<Void> slow = Mono.delay(delay).then(Mono.defer(() -> {
+            if (!takeHedgeToken()) {
+                return Mono.never(); // over budget: only a failure can start the second call
+            }
+            return Mono.fromRunnable(() -> trigger.compareAndSet(null, "hedge"));
+        }));
+        Mono<Void> failed = primaryFailed.asMono().doOnSuccess(v -> trigger.compareAndSet(null, "failover"));
+
+        Mono<List<DishInfo>> second = Mono.firstWithSignal(slow, failed)
+                .then(Mono.defer(() -> {
+                    if ("hedge".equals(trigger.get())) {
+                        hedged.incrementAndGet();
+                        log.info("No answer from {} after {} ms, hedging to {}",
+                                primary.analyzer.name(), delay.toMillis(), secondary.analyzer.name());
+                    } else {
+                        failovers.incrementAndGet();
+                        log.warn("{} failed, failing over to {}", primary.analyzer.name(), secondary.analyzer.name());
+                    }
+                    return secondary.analyze(image);
+                }))
+                .doOnNext(dishes -> {
+                    if ("hedge".equals(trigger.get())) {
+                        hedgeWins.incrementAndGet();
+                    }
+                })
+                .doOnError(lastError::set);
+
+        // The first answer cancels the other call; when both fail, report the last real error
+        return Mono.firstWithValue(first, second)
+                .onErrorMap(NoSuchElementException.class, e -> lastError.get() != null ? lastError.get() : e);
+    }
+
+    /**
+     * The best-ranked backend other than primary, if any
+     * A hedge or failover to the primary itself would be a second paid call to the same upstream, through the limiter
+     * and retry policy that have just given up on it (a long Retry-After is a fast 503, not a reason to ask again).
+     * Backends are told apart by name, which is also what their limiters are keyed by.
+     */
+    private static Optional<Route> secondary(List<Route> ranked, Route primary) {
+        return ranked.stream()
+                .filter(route -> !route.analyzer.name().equals(primary.analyzer.name()))
+                .findFirst();
+    }
+
+    private Duration hedgeDelay(Route route) {
+        Duration observed = route.tracker.samples() >= minSamples
+                ? route.tracker.percentile(hedgePercentile).orElse(initialHedgeDelay)
+                : initialHedgeDelay;
+        return observed.compareTo(minHedgeDelay) < 0 ? minHedgeDelay : observed;
+    }
+
+    private List<Route> ranked() {
+        // Stable sort: equal scores keep configuration order, so the first backend is the default
+        return routes.stream().sorted(Comparator.comparingDouble(this::score)).toList();
+    }
+
+    /**
+     * Expected latency in ms; backends without enough samples are assumed to be as slow as the initial hedge delay
+     */
+    private double score(Route route) {
+        double median = route.tracker.samples() >= minSamples
+                ? route.tracker.percentile(0.5).orElse(initialHedgeDelay).toMillis()
+                : initialHedgeDelay.toMillis();
+        return median * (1 + ERROR_PENALTY * route.tracker.errorRate());
+    }
+
+    private void addHedgeToken() {
+        synchronized (hedgeBudgetLock) {
+            hedgeTokens = Math.min(MAX_HEDGE_TOKENS, hedgeTokens + maxHedgeRatio);
+        }
+    }
+
+    private boolean takeHedgeToken() {
+        synchronized (hedgeBudgetLock) {
+            if (hedgeTokens < 1) {
+                return false;
+            }
+            hedgeTokens--;
+            return true;
+        }
+    }
+
+    public record BackendStats(String name, Duration p50, Duration p99, double errorRate, int samples) {
+    }
+
+    /**
+     * A backend and what has been observed about it
+     */
+    private static final class Route {
+
+        private final MenuAnalyzer analyzer;
+        private final LatencyTracker tracker = new LatencyTracker(LATENCY_WINDOW);
+
+        private Route(MenuAnalyzer analyzer) {
+            this.analyzer = analyzer;
+        }
+
+        private Mono<List<DishInfo>> analyze(MenuImage image) {
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                // A call cancelled because the other one won records nothing
+                return analyzer.analyzeMenu(image)
+                        .doOnNext(dishes -> tracker.recordSuccess(System.nanoTime() - start))
+                        .doOnError(e -> tracker.recordFailure());
+            });
+        }
+
+        private Flux<DishInfo> stream(MenuImage image) {
+            return analyzer.streamMenu(image)
+                    .doOnError(e -> tracker.recordFailure());
+        }
+    }
+}
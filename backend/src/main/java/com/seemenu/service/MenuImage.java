@@ -0,0 +1,14 @@
+package com.seemenu.service;
+
+import com.seemenu.image.PreparedImage;
+
+/**
+ * A menu image as handed to a MenuAnalyzer: the bytes to send, their MIME type and the lines of text counted in it
+ * The line count sizes the model's answer (see CompletionPlanner); 0 when unknown.
+ */
+public record MenuImage(byte[] bytes, String mimeType, int textLines) {
+
+    public static MenuImage of(PreparedImage image) {
+        return new MenuImage(image.getBytes(), image.getMimeType(), image.getTextLines());
+    }
+}
@@ -1,52 +1,269 @@
 package com.seemenu.service;
 
+import com.seemenu.cache.MenuResultCache;
+import com.seemenu.cache.NearDuplicateIndex;
+import com.seemenu.cache.PerceptualHasher;
 import com.seemenu.dto.MenuAnalysisResponse;
+import com.seemenu.image.ImagePreprocessor;
+import com.seemenu.image.MenuTiler;
+import com.seemenu.image.PreparedImage;
+import com.seemenu.knowledge.DishKnowledgeIndex;
+import com.seemenu.metrics.PipelineMetrics;
+import com.seemenu.model.BinaryMultipartFile;
 import com.seemenu.model.DishInfo;
+import com.seemenu.openai.ModelUnavailableException;
+import com.seemenu.upload.UploadRejectedException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
-import java.util.Base64;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class MenuService {
 
-    private final AIMenuAnalyzer aiMenuAnalyzer;
+    private final MenuAnalyzer menuAnalyzer;
+    private final MenuResultCache menuResultCache;
+    private final PerceptualHasher perceptualHasher;
+    private final NearDuplicateIndex nearDuplicateIndex;
+    private final ImagePreprocessor imagePreprocessor;
+    private final MenuTiler menuTiler;
+    private final DishMerger dishMerger;
+    private final InFlightAnalyses inFlightAnalyses;
+    private final DishKnowledgeIndex dishKnowledgeIndex;
+    private final PipelineMetrics metrics;
 
-    public MenuAnalysisResponse analyzeMenu(MultipartFile file) {
+    @Value("${menu.tiling.parallelism:4}")
+    private int partParallelism;
+
+    public Mono<MenuAnalysisResponse> analyzeMenu(MultipartFile file) {
         log.info("Processing menu image: {}", file.getOriginalFilename());
 
-        try {
-            // Convert image to base64
-            byte[] imageBytes = file.getBytes();
-            String base64Image = Base64.getEncoder().encodeToString(imageBytes);
+        // Hashing, cache lookups and image decoding block, so they run off the request/event-loop threads
+        return analyze(Mono.fromCallable(() -> BinaryMultipartFile.contentOf(file))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(content -> {
+                    String cacheKey = menuResultCache.keyFor(content);
+                    return analyzeOnce(cacheKey, () -> lookup(cacheKey, content));
+                }));
+    }
+
+    /**
+     * Analyzes several photos (pages) of one menu as a single result
+     */
+    public Mono<MenuAnalysisResponse> analyzeMenuPages(List<MultipartFile> pages) {
+        log.info("Processing {} menu pages", pages.size());
+
+        return analyze(Mono.fromCallable(() -> readPages(pages))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(pageContents -> {
+                    String cacheKey = menuResultCache.keyFor(pageContents);
+                    return analyzeOnce(cacheKey, () -> lookupPages(cacheKey, pageContents));
+                }));
+    }
+
+    private Mono<MenuAnalysisResponse> analyze(Mono<List<DishInfo>> analysis) {
+        return analysis
+                .map(this::buildResponse)
+                // Model capacity errors reach the controller, which answers 503 with Retry-After; rejected images
+                // get their own status
+                .onErrorResume(e -> !answeredByController(e), e -> {
+                    metrics.recordFailure("internal");
+                    log.error("Error processing menu image", e);
+                    return Mono.just(MenuAnalysisResponse.builder()
+                            .success(false)
+                            .message("Error processing menu: " + e.getMessage())
+                            .build());
+                });
+    }
+
+    private static boolean answeredByController(Throwable e) {
+        return e instanceof ModelUnavailableException || e instanceof UploadRejectedException;
+    }
 
-            // Analyze with AI
-            List<DishInfo> dishes = aiMenuAnalyzer.analyzeMenuFromBase64(base64Image);
+    /**
+     * Concurrent identical uploads share one lookup and one set of model calls
+     */
+    private Mono<List<DishInfo>> analyzeOnce(String cacheKey, Callable<Lookup> lookupStage) {
+        return inFlightAnalyses.join(cacheKey, () -> Mono.fromCallable(lookupStage)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(lookup -> lookup.cachedDishes() != null
+                        ? Mono.just(lookup.cachedDishes())
+                        : analyzeParts(lookup.parts())
+                                .publishOn(Schedulers.boundedElastic()) // cache writes may touch disk
+                                .doOnNext(dishes -> {
+                                    metrics.recordDishes(dishes.size());
+                                    storeResult(lookup, dishes);
+                                })));
+    }
 
-            if (dishes.isEmpty()) {
-                return MenuAnalysisResponse.builder()
-                        .success(false)
-                        .message("Could not extract dish information from the menu. Please ensure the image is clear and contains a menu.")
-                        .build();
+    /**
+     * Analyzes tiles/pages concurrently; wall-clock time follows the slowest part, not the whole menu
+     * A part that fails fails the whole menu (and cancels the other parts): a merge without it would be cached,
+     * indexed and learned from as if it were the complete menu.
+     */
+    private Mono<List<DishInfo>> analyzeParts(List<PreparedImage> parts) {
+        if (parts.size() == 1) {
+            return analyzePart(parts.get(0));
+        }
+        return Flux.fromIterable(parts)
+                .flatMapSequential(this::analyzePart, partParallelism)
+                .collectList()
+                .map(dishMerger::merge);
+    }
+
+    private Mono<List<DishInfo>> analyzePart(PreparedImage part) {
+        // An analyzer that completes without a value would otherwise drop the part from the merge silently
+        return menuAnalyzer.analyzeMenu(MenuImage.of(part))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("No analysis returned for a menu part")));
+    }
+
+    /**
+     * Emits dishes one by one as the model produces them; cached results are replayed immediately
+     */
+    public Flux<DishInfo> streamMenu(MultipartFile file) {
+        log.info("Streaming menu image: {}", file.getOriginalFilename());
+
+        return Mono.fromCallable(() -> {
+                    ByteBuffer content = BinaryMultipartFile.contentOf(file);
+                    return lookup(menuResultCache.keyFor(content), content);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(lookup -> {
+                    if (lookup.cachedDishes() != null) {
+                        return Flux.fromIterable(lookup.cachedDishes());
+                    }
+
+                    List<PreparedImage> parts = lookup.parts();
+                    DishMerger.Merge merge = dishMerger.newMerge();
+                    Mono<DishInfo> store = Mono.<DishInfo>fromRunnable(() -> {
+                                List<DishInfo> dishes = merge.dishes();
+                                metrics.recordDishes(dishes.size());
+                                storeResult(lookup, dishes);
+                            })
+                            .subscribeOn(Schedulers.boundedElastic());
+                    // Tiles are streamed concurrently and merged as their dishes arrive, by the rule the buffered
+                    // path merges them with; flatMap serializes the dishes, so the merge needs no lock
+                    return Flux.range(0, parts.size())
+                            .flatMap(part -> menuAnalyzer.streamMenu(MenuImage.of(parts.get(part)))
+                                    .map(dish -> Tuples.of(part, dish)), partParallelism)
+                            .filter(partDish -> merge.add(partDish.getT1(), partDish.getT2()))
+                            .map(Tuple2::getT2)
+                            .concatWith(store);
+                });
+    }
+
+    /**
+     * Cache lookups and preprocessing shared by the buffered and streaming paths
+     * The upload is hashed and decoded in place; a spilled upload stays in its memory-mapped file throughout.
+     */
+    private Lookup lookup(String cacheKey, ByteBuffer content) throws Exception {
+        // Identical uploads are served from the cache without calling the model
+        Optional<List<DishInfo>> cached = metrics.timeStage("cache_lookup", () -> menuResultCache.get(cacheKey));
+        if (cached.isPresent()) {
+            return new Lookup(cacheKey, List.of(), OptionalLong.empty(), cached.get());
+        }
+
+        // Decode once, at full resolution up to max-decode-edge; tiles are cut before downscaling
+        BufferedImage upright = metrics.timeStage("decode", () -> imagePreprocessor.decode(content));
+
+        // Re-photographed copies of a known menu reuse its analysis
+        OptionalLong perceptualHash = upright != null
+                ? OptionalLong.of(perceptualHasher.hash(upright))
+                : OptionalLong.empty();
+        if (perceptualHash.isPresent()) {
+            Optional<List<DishInfo>> similar = metrics.timeStage("cache_lookup",
+                    () -> nearDuplicateIndex.findSimilar(perceptualHash.getAsLong()).flatMap(menuResultCache::get));
+            if (similar.isPresent()) {
+                return new Lookup(cacheKey, List.of(), perceptualHash, similar.get());
             }
+        }
 
-            return MenuAnalysisResponse.builder()
-                    .success(true)
-                    .message("Menu analyzed successfully! Found " + dishes.size() + " dish(es).")
-                    .dishes(dishes)
-                    .build();
+        return new Lookup(cacheKey, metrics.timeStage("preprocess", () -> prepareParts(content, upright)),
+                perceptualHash, null);
+    }
+
+    private List<ByteBuffer> readPages(List<MultipartFile> pages) throws IOException {
+        List<ByteBuffer> pageContents = new ArrayList<>();
+        for (MultipartFile page : pages) {
+            pageContents.add(BinaryMultipartFile.contentOf(page));
+        }
+        return pageContents;
+    }
+
+    private Lookup lookupPages(String cacheKey, List<ByteBuffer> pageContents) throws Exception {
+        Optional<List<DishInfo>> cached = metrics.timeStage("cache_lookup", () -> menuResultCache.get(cacheKey));
+        if (cached.isPresent()) {
+            return new Lookup(cacheKey, List.of(), OptionalLong.empty(), cached.get());
+        }
+
+        List<PreparedImage> parts = new ArrayList<>();
+        for (ByteBuffer content : pageContents) {
+            BufferedImage upright = metrics.timeStage("decode", () -> imagePreprocessor.decode(content));
+            parts.addAll(metrics.timeStage("preprocess", () -> prepareParts(content, upright)));
+        }
+        return new Lookup(cacheKey, parts, OptionalLong.empty(), null);
+    }
 
-        } catch (Exception e) {
-            log.error("Error processing menu image", e);
+    /**
+     * Decode, fix orientation and shrink to what the model can actually use, splitting large menus into tiles
+     */
+    private List<PreparedImage> prepareParts(ByteBuffer content, BufferedImage upright) throws IOException {
+        List<BufferedImage> tiles = upright != null ? menuTiler.split(upright) : List.of();
+        if (tiles.size() <= 1) {
+            return List.of(imagePreprocessor.prepare(content, upright));
+        }
+
+        List<PreparedImage> parts = new ArrayList<>();
+        for (BufferedImage tile : tiles) {
+            parts.add(imagePreprocessor.prepare(tile));
+        }
+        return parts;
+    }
+
+    private void storeResult(Lookup lookup, List<DishInfo> dishes) {
+        menuResultCache.put(lookup.cacheKey(), List.copyOf(dishes));
+        if (lookup.perceptualHash().isPresent() && !dishes.isEmpty()) {
+            nearDuplicateIndex.add(lookup.perceptualHash().getAsLong(), lookup.cacheKey());
+        }
+        dishKnowledgeIndex.learn(dishes);
+    }
+
+    private MenuAnalysisResponse buildResponse(List<DishInfo> dishes) {
+        if (dishes.isEmpty()) {
             return MenuAnalysisResponse.builder()
                     .success(false)
-                    .message("Error processing menu: " + e.getMessage())
+                    .message("Could not extract dish information from the menu. Please ensure the image is clear and contains a menu.")
                     .build();
         }
+
+        return MenuAnalysisResponse.builder()
+                .success(true)
+                .message("Menu analyzed successfully! Found " + dishes.size() + " dish(es).")
+                .dishes(dishes)
+                .build();
+    }
+
+    /**
+     * Outcome of the pre-model stage; cachedDishes is set when the model call can be skipped
+     */
+    private record Lookup(String cacheKey, List<PreparedImage> parts, OptionalLong perceptualHash,
+                          List<DishInfo> cachedDishes) {
     }
 }
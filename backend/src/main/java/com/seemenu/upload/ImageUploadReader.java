@@ -0,0 +1,239 @@
+package com.seemenu.upload;
+
+import com.seemenu.image.ImageType;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads binary upload bodies chunk by chunk, with heap use per upload bounded by spill-threshold
+ * Uploads over max-size (by Content-Length, or once that many bytes have arrived) and bodies that do not start
+ * with a known image signature are rejected as soon as that is known, without reading the rest. Bodies larger
+ * than spill-threshold are written to an unlinked file under spill-directory and memory-mapped, so they take
+ * page cache rather than heap and disappear with the mapping.
+ */
+@Component
+@Slf4j
+public class ImageUploadReader implements MeterBinder {
+
+    private static final int CHUNK_BYTES = 64 * 1024;
+    // Network buffers waiting while a chunk is written to the spill file
+    private static final int PREFETCH = 4;
+
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong tooLarge = new AtomicLong();
+    private final AtomicLong notImage = new AtomicLong();
+
+    @Value("${menu.upload.max-size:10MB}")
+    private DataSize maxSize;
+
+    @Value("${menu.upload.spill-threshold:1MB}")
+    private DataSize spillThreshold;
+
+    @Value("${menu.upload.spill-directory:/tmp/seemenu-uploads}")
+    private Path spillDirectory;
+
+    /**
+     * Reads a WebFlux request body; contentLength is -1 when the request is chunked
+     * Each network buffer is released as soon as it has been copied, so at most PREFETCH of them are held.
+     */
+    public Mono<UploadBody> read(Flux<DataBuffer> body, long contentLength) {
+        return Mono.defer(() -> {
+            Sink sink = new Sink(contentLength);
+            return body
+                    // Spill writes block; the event loop only hands buffers over
+                    .publishOn(Schedulers.boundedElastic(), PREFETCH)
+                    .doOnNext(buffer -> {
+                        try (DataBuffer.ByteBufferIterator chunks = buffer.readableByteBuffers()) {
+                            while (chunks.hasNext()) {
+                                sink.write(chunks.next());
+                            }
+                        } catch (IOException e) {
+                            throw new IllegalStateException("Could not write upload spill file", e);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .then(Mono.fromCallable(sink::finish))
+                    .doOnError(e -> sink.discard())
+                    .doOnCancel(sink::discard);
+        });
+    }
+
+    /**
+     * Reads a servlet request body; contentLength is -1 when unknown
+     */
+    public UploadBody read(InputStream body, long contentLength) throws IOException {
+        Sink sink = new Sink(contentLength);
+        try {
+            byte[] chunk = new byte[CHUNK_BYTES];
+            int read;
+            while ((read = body.read(chunk)) != -1) {
+                sink.write(ByteBuffer.wrap(chunk, 0, read));
+            }
+            return sink.finish();
+        } catch (IOException | RuntimeException e) {
+            sink.discard();
+            throw e;
+        }
+    }
+
+    public long getSpilled() {
+        return spilled.get();
+    }
+
+    public long getTooLarge() {
+        return tooLarge.get();
+    }
+
+    public long getNotImage() {
+        return notImage.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("seemenu.upload.spilled", this, ImageUploadReader::getSpilled)
+                .description("Uploads larger than the spill threshold, memory-mapped from a file instead of the heap")
+                .register(registry);
+        FunctionCounter.builder("seemenu.upload.rejected", this, ImageUploadReader::getTooLarge)
+                .description("Uploads rejected while their body was read")
+                .tag("reason", "too_large")
+                .register(registry);
+        FunctionCounter.builder("seemenu.upload.rejected", this, ImageUploadReader::getNotImage)
+                .description("Uploads rejected while their body was read")
+                .tag("reason", "not_image")
+                .register(registry);
+    }
+
+    private UploadRejectedException rejectTooLarge() {
+        tooLarge.incrementAndGet();
+        return new UploadRejectedException(HttpStatus.PAYLOAD_TOO_LARGE,
+                "Upload exceeds the maximum size of " + maxSize.toMegabytes() + "MB");
+    }
+
+    /**
+     * One upload being read: bytes go to a heap array until spill-threshold, then to the spill file
+     * Synchronized because a cancelled request discards it from another thread while a chunk may be written.
+     */
+    private final class Sink {
+
+        private final long maxBytes = maxSize.toBytes();
+        private final int threshold = (int) Math.min(spillThreshold.toBytes(), maxBytes);
+        private final byte[] head = new byte[ImageType.SIGNATURE_BYTES];
+        // Known from Content-Length to end up in the spill file: nothing is buffered on the heap first
+        private final boolean large;
+        private byte[] heap;
+        private FileChannel spill;
+        private int size;
+        private boolean typeChecked;
+
+        Sink(long contentLength) {
+            if (contentLength > maxBytes) {
+                throw rejectTooLarge();
+            }
+            large = contentLength > threshold;
+            long expected = contentLength > 0 ? contentLength : CHUNK_BYTES;
+            heap = new byte[large ? 0 : (int) Math.min(expected, threshold)];
+        }
+
+        synchronized void write(ByteBuffer chunk) throws IOException {
+            int length = chunk.remaining();
+            if (size + (long) length > maxBytes) {
+                throw rejectTooLarge();
+            }
+            if (size < ImageType.SIGNATURE_BYTES) {
+                chunk.get(chunk.position(), head, size, Math.min(ImageType.SIGNATURE_BYTES - size, length));
+                if (size + length >= ImageType.SIGNATURE_BYTES) {
+                    checkType(head);
+                }
+            }
+
+            if (spill == null && (large || size + length > threshold)) {
+                startSpill();
+            }
+            if (spill != null) {
+                while (chunk.hasRemaining()) {
+                    spill.write(chunk);
+                }
+            } else {
+                if (size + length > heap.length) {
+                    heap = Arrays.copyOf(heap, Math.min(Math.max(heap.length * 2, size + length), threshold));
+                }
+                chunk.get(heap, size, length);
+            }
+            size += length;
+        }
+
+        synchronized UploadBody finish() throws IOException {
+            if (size == 0) {
+                throw new UploadRejectedException(HttpStatus.BAD_REQUEST, "Upload is empty");
+            }
+            if (!typeChecked) {
+                checkType(Arrays.copyOf(head, size));
+            }
+            if (spill == null) {
+                return new UploadBody(ByteBuffer.wrap(heap, 0, size), false);
+            }
+            // The mapping stays valid after the channel is closed and the file deleted
+            ByteBuffer mapped = spill.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            spill.close();
+            spill = null;
+            return new UploadBody(mapped, true);
+        }
+
+        synchronized void discard() {
+            heap = null;
+            if (spill != null) {
+                try {
+                    spill.close();
+                } catch (IOException e) {
+                    log.warn("Could not delete upload spill file: {}", e.getMessage());
+                }
+                spill = null;
+            }
+        }
+
+        private void checkType(byte[] leading) {
+            typeChecked = true;
+            if (ImageType.detect(leading) == ImageType.UNKNOWN) {
+                notImage.incrementAndGet();
+                throw new UploadRejectedException(HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                        "Upload is not a JPEG, PNG, GIF, WebP or HEIC image");
+            }
+        }
+
+        private void startSpill() throws IOException {
+            Files.createDirectories(spillDirectory);
+            Path file = Files.createTempFile(spillDirectory, "upload-", ".bin");
+            spill = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            ByteBuffer buffered = ByteBuffer.wrap(heap, 0, size);
+            while (buffered.hasRemaining()) {
+                spill.write(buffered);
+            }
+            heap = null;
+            spilled.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.seemenu.upload;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.reactive.BindingContext;
+import org.springframework.web.reactive.result.method.HandlerMethodArgumentResolver;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Binds UploadBody controller arguments on the WebFlux stack, reading the body as it arrives
+ */
+@RequiredArgsConstructor
+public class ReactiveUploadBodyResolver implements HandlerMethodArgumentResolver {
+
+    private final ImageUploadReader reader;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.getParameterType() == UploadBody.class;
+    }
+
+    @Override
+    public Mono<Object> resolveArgument(MethodParameter parameter, BindingContext bindingContext,
+                                        ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        return reader.read(request.getBody(), request.getHeaders().getContentLength()).cast(Object.class);
+    }
+}
@@ -0,0 +1,32 @@
+package com.seemenu.upload;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import java.io.IOException;
+
+/**
+ * Binds UploadBody controller arguments on the servlet stack (Lambda), with the same limits as on WebFlux
+ */
+@RequiredArgsConstructor
+public class ServletUploadBodyResolver implements HandlerMethodArgumentResolver {
+
+    private final ImageUploadReader reader;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.getParameterType() == UploadBody.class;
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) throws IOException {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        return reader.read(request.getInputStream(), request.getContentLengthLong());
+    }
+}
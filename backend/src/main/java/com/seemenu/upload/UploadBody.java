@@ -0,0 +1,56 @@
+package com.seemenu.upload;
+
+import com.seemenu.image.ImageType;
+import com.seemenu.model.BinaryMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A binary upload body as received: on the heap, or memory-mapped from a spill file under /tmp
+ * Controllers take it instead of byte[]; ImageUploadReader has already checked its size and leading image type.
+ * Files handed out share its content (see BinaryMultipartFile.contentOf); bytes are only copied onto the heap when
+ * a file's getBytes is called.
+ */
+public final class UploadBody {
+
+    private final ByteBuffer content;
+    private final boolean spilled;
+
+    UploadBody(ByteBuffer content, boolean spilled) {
+        this.content = content;
+        this.spilled = spilled;
+    }
+
+    public int size() {
+        return content.remaining();
+    }
+
+    /**
+     * Whether the body was larger than the spill threshold and lives in a memory-mapped file
+     */
+    public boolean isSpilled() {
+        return spilled;
+    }
+
+    /**
+     * The image type of the bytes starting at offset
+     */
+    public ImageType typeAt(int offset) {
+        return ImageType.detect(content.slice(content.position() + offset, size() - offset));
+    }
+
+    /**
+     * The whole body as one file
+     */
+    public MultipartFile asFile(String contentType, String filename) {
+        return new BinaryMultipartFile(content.duplicate(), contentType, filename);
+    }
+
+    /**
+     * length bytes from offset as one file, for bodies holding several images
+     */
+    public MultipartFile slice(int offset, int length, String contentType, String filename) {
+        return new BinaryMultipartFile(content.slice(content.position() + offset, length), contentType, filename);
+    }
+}
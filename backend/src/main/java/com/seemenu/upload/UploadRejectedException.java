@@ -0,0 +1,20 @@
+package com.seemenu.upload;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * An upload refused while its body was being read (too large, empty, or not an image) or decoded (more pixels
+ * than menu.image.max-pixels)
+ * The controllers answer it with the status and their usual body.
+ */
+@Getter
+public class UploadRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public UploadRejectedException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+}
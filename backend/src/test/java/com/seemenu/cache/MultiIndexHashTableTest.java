@@ -0,0 +1,91 @@
+package com.seemenu.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultiIndexHashTableTest {
+
+    private static final int MAX_DISTANCE = 8;
+
+    private final MultiIndexHashTable<String> table = new MultiIndexHashTable<>();
+
+    @Test
+    void findsTheSameHashAtDistanceZero() {
+        table.add(0x1234_5678_9ABC_DEF0L, "menu");
+
+        assertThat(table.findNearest(0x1234_5678_9ABC_DEF0L, MAX_DISTANCE))
+                .contains(new MultiIndexHashTable.Match<>("menu", 0));
+    }
+
+    @Test
+    void findsAHashWhoseBitsDifferInEveryChunk() {
+        // Two bits in each 16-bit chunk: no chunk matches exactly, but each is within MAX_DISTANCE / 4 bits
+        long stored = 0x0F0F_F0F0_3C3C_C3C3L;
+        long query = stored ^ 0x0003_0003_0003_0003L;
+        table.add(stored, "menu");
+
+        assertThat(table.findNearest(query, MAX_DISTANCE)).contains(new MultiIndexHashTable.Match<>("menu", 8));
+    }
+
+    @Test
+    void missesAHashJustBeyondTheDistance() {
+        long stored = 0x0F0F_F0F0_3C3C_C3C3L;
+        table.add(stored, "menu");
+
+        assertThat(table.findNearest(stored ^ 0x0007_0003_0003_0003L, MAX_DISTANCE)).isEmpty();
+    }
+
+    @Test
+    void keepsTheLatestValueForTheSameHash() {
+        table.add(42L, "old");
+        table.add(42L, "new");
+
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.findNearest(42L, MAX_DISTANCE)).map(MultiIndexHashTable.Match::value).contains("new");
+    }
+
+    @Test
+    void findsWhatAFullScanFinds() {
+        SplittableRandom random = new SplittableRandom(7);
+        List<Long> stored = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long hash = random.nextLong();
+            stored.add(hash);
+            table.add(hash, Long.toHexString(hash));
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            long query = stored.get(random.nextInt(stored.size()));
+            for (int flips = random.nextInt(2 * MAX_DISTANCE); flips > 0; flips--) {
+                query ^= 1L << random.nextInt(64);
+            }
+            int nearest = nearestByScan(stored, query);
+
+            Optional<MultiIndexHashTable.Match<String>> match = table.findNearest(query, MAX_DISTANCE);
+            if (nearest <= MAX_DISTANCE) {
+                assertThat(match).map(MultiIndexHashTable.Match::distance).contains(nearest);
+            } else {
+                assertThat(match).isEmpty();
+            }
+        }
+    }
+
+    @Test
+    void clearForgetsEveryHash() {
+        table.add(42L, "menu");
+        table.clear();
+
+        assertThat(table.size()).isZero();
+        assertThat(table.findNearest(42L, MAX_DISTANCE)).isEmpty();
+    }
+
+    private static int nearestByScan(List<Long> stored, long query) {
+        return stored.stream().mapToInt(hash -> PerceptualHasher.distance(hash, query)).min().orElse(Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,92 @@
+package com.seemenu.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextLinesTest {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    @Test
+    void countsEachLineOfText() {
+        BufferedImage menu = blank();
+        for (int line = 0; line < 20; line++) {
+            drawText(menu, 20 + line * 28, 14);
+        }
+
+        assertThat(TextLines.count(menu)).isEqualTo(20);
+    }
+
+    @Test
+    void doesNotCountDescendersSplitOffTheirLine() {
+        BufferedImage menu = blank();
+        for (int line = 0; line < 10; line++) {
+            int top = 20 + line * 40;
+            drawText(menu, top, 14);
+            // Descenders and accents a blank row below the line, under half its height
+            drawText(menu, top + 15, 3);
+        }
+
+        assertThat(TextLines.count(menu)).isEqualTo(10);
+    }
+
+    @Test
+    void findsNoLinesInABlankImage() {
+        assertThat(TextLines.count(blank())).isZero();
+    }
+
+    @Test
+    void findsNoLinesInTexture() {
+        BufferedImage noise = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                noise.setRGB(x, y, random.nextBoolean() ? 0xFFFFFF : 0);
+            }
+        }
+
+        assertThat(TextLines.count(noise)).isZero();
+    }
+
+    @Test
+    void readsImagesOfOtherPixelTypes() {
+        BufferedImage menu = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = menu.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.dispose();
+        for (int line = 0; line < 5; line++) {
+            drawText(menu, 40 + line * 50, 14);
+        }
+
+        assertThat(TextLines.count(menu)).isEqualTo(5);
+    }
+
+    private static BufferedImage blank() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Dark glyph-like strokes across most of the width, height rows from top
+     */
+    private static void drawText(BufferedImage image, int top, int height) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLACK);
+        for (int x = 40; x < WIDTH - 120; x += 6) {
+            g.fillRect(x, top, 3, height);
+        }
+        g.dispose();
+    }
+}
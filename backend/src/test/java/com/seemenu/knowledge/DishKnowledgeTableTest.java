@@ -0,0 +1,109 @@
+package com.seemenu.knowledge;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DishKnowledgeTableTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Path file = directory.resolve("dishes.idx");
+        List<DishKnowledge> written = List.of(
+                new DishKnowledge("Pizza Margherita", List.of("tomato", "mozzarella"), List.of("dairy", "gluten"),
+                        List.of("vegetarian")),
+                new DishKnowledge("Pad Thai", List.of("rice noodles", "peanuts"), List.of("peanuts"), List.of()),
+                new DishKnowledge("Crème brûlée", List.of("cream", "sugar"), List.of("dairy", "eggs"), List.of()));
+        DishKnowledgeTable.write(file, written);
+
+        DishKnowledgeTable table = DishKnowledgeTable.open(file);
+        assertThat(table.size()).isEqualTo(3);
+        assertThat(table.entries()).containsExactlyInAnyOrderElementsOf(written);
+    }
+
+    @Test
+    void findsADishByItsWordsInAnyOrder() throws IOException {
+        DishKnowledgeTable table = table(List.of(
+                new DishKnowledge("Pizza Margherita", List.of("tomato"), List.of("dairy"), List.of()),
+                new DishKnowledge("Spicy Peanut Noodles", List.of("peanuts"), List.of("peanuts"), List.of())));
+
+        assertThat(table.find(DishNames.key("margherita, PIZZA"))).extracting(DishKnowledge::name)
+                .isEqualTo("Pizza Margherita");
+        assertThat(table.find(DishNames.key("Spicy Sesame Noodles"))).isNull();
+        assertThat(table.find(DishNames.key("Pizza"))).isNull();
+        assertThat(table.find("")).isNull();
+    }
+
+    @Test
+    void findsEveryEntryOfALargeTable() throws IOException {
+        List<DishKnowledge> written = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            written.add(new DishKnowledge("Dish " + i, List.of("ingredient " + i), List.of(), List.of()));
+        }
+        DishKnowledgeTable table = table(written);
+
+        for (DishKnowledge dish : written) {
+            assertThat(table.find(DishNames.key(dish.name()))).isEqualTo(dish);
+        }
+        assertThat(table.find(DishNames.key("Dish 5000"))).isNull();
+    }
+
+    @Test
+    void skipsAnEntryTooLongForTheFormat() throws IOException {
+        DishKnowledgeTable table = table(List.of(
+                new DishKnowledge("Pho", List.of("x".repeat(70_000)), List.of(), List.of()),
+                new DishKnowledge("Pad Thai", List.of("rice noodles"), List.of(), List.of())));
+
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.find(DishNames.key("Pho"))).isNull();
+    }
+
+    @Test
+    void keepsAnOpenTableReadableWhenTheFileIsReplaced() throws IOException {
+        Path file = directory.resolve("dishes.idx");
+        DishKnowledge pho = new DishKnowledge("Pho", List.of("rice noodles"), List.of(), List.of());
+        DishKnowledgeTable.write(file, List.of(pho));
+        DishKnowledgeTable before = DishKnowledgeTable.open(file);
+
+        DishKnowledgeTable.write(file, List.of());
+
+        assertThat(before.find(DishNames.key("Pho"))).isEqualTo(pho);
+        assertThat(DishKnowledgeTable.open(file).size()).isZero();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).containsExactly(file);
+        }
+    }
+
+    @Test
+    void rejectsFilesThatAreNotATable() throws IOException {
+        Path other = Files.write(directory.resolve("other.idx"), "not a table at all".getBytes());
+        assertThatThrownBy(() -> DishKnowledgeTable.open(other)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Not a dish knowledge table");
+
+        Path file = directory.resolve("dishes.idx");
+        DishKnowledgeTable.write(file, List.of(new DishKnowledge("Pho", List.of("noodles"), List.of(), List.of())));
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = Files.write(directory.resolve("truncated.idx"), Arrays.copyOf(bytes, bytes.length - 1));
+        assertThatThrownBy(() -> DishKnowledgeTable.open(truncated)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Truncated");
+    }
+
+    private DishKnowledgeTable table(List<DishKnowledge> knowledge) throws IOException {
+        Path file = directory.resolve("dishes.idx");
+        DishKnowledgeTable.write(file, knowledge);
+        return DishKnowledgeTable.open(file);
+    }
+}
@@ -0,0 +1,125 @@
+package com.seemenu.openai;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void cutsTheLimitOncePerEpisodeOfUpstreamErrors() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 2);
+        List<Sinks.One<String>> calls = start(limiter, 3);
+
+        ModelUnavailableException rateLimited = new ModelUnavailableException("429", 429, Duration.ofSeconds(1));
+        // All three calls were issued before the first cut and report the same congestion
+        calls.forEach(call -> call.tryEmitError(rateLimited));
+
+        assertThat(limiter.getLimit()).isEqualTo(4);
+        assertThat(limiter.getDropped()).isEqualTo(3);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void neverCutsBelowTheMinimum() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1);
+        ModelUnavailableException unavailable = new ModelUnavailableException("503", 503, Duration.ofSeconds(1));
+        for (int i = 0; i < 5; i++) {
+            start(limiter, 1).get(0).tryEmitError(unavailable);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(1);
+    }
+
+    @Test
+    void growsAdditivelyWhileTheLimitIsInUse() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 2);
+        for (int round = 0; round < 4; round++) {
+            start(limiter, 4).forEach(call -> call.tryEmitValue("dishes"));
+        }
+
+        // Only calls that started with at least half the limit in use add 1 / limit: about one per window
+        assertThat(limiter.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void doesNotGrowWhileMostlyIdle() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 2);
+        for (int i = 0; i < 50; i++) {
+            start(limiter, 1).get(0).tryEmitValue("dishes");
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void errorsOtherThanCongestionLeaveTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 2);
+        start(limiter, 1).get(0).tryEmitError(new IllegalStateException("bad answer"));
+
+        assertThat(limiter.getLimit()).isEqualTo(4);
+        assertThat(limiter.getDropped()).isZero();
+    }
+
+    @Test
+    void queuesCallsOverTheLimitAndRejectsWhenTheQueueIsFull() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1);
+        Sinks.One<String> running = Sinks.one();
+        Sinks.One<String> waiting = Sinks.one();
+        AtomicReference<String> waitingResult = new AtomicReference<>();
+        AtomicReference<Throwable> rejected = new AtomicReference<>();
+
+        limiter.execute(running.asMono()).subscribe();
+        limiter.execute(waiting.asMono()).subscribe(waitingResult::set);
+        limiter.execute(Mono.just("never")).subscribe(result -> { }, rejected::set);
+
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+        assertThat(limiter.getQueued()).isEqualTo(1);
+        assertThat(rejected.get()).isInstanceOf(ModelUnavailableException.class);
+        assertThat(limiter.getRejected()).isEqualTo(1);
+
+        running.tryEmitValue("first");
+        assertThat(limiter.getQueued()).isZero();
+        waiting.tryEmitValue("second");
+        assertThat(waitingResult).hasValue("second");
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    /**
+     * A limiter starting at initialLimit with room for maxQueue waiting calls
+     */
+    private static AdaptiveConcurrencyLimiter limiter(int initialLimit, int maxQueue) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test");
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", initialLimit);
+        ReflectionTestUtils.setField(limiter, "minLimit", 1);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 64);
+        ReflectionTestUtils.setField(limiter, "backoffRatio", 0.5);
+        ReflectionTestUtils.setField(limiter, "latencyThreshold", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(limiter, "maxQueue", maxQueue);
+        ReflectionTestUtils.setField(limiter, "maxWait", Duration.ofSeconds(10));
+        limiter.init();
+        return limiter;
+    }
+
+    /**
+     * Starts calls that hold their permits until their sinks are completed
+     */
+    private static List<Sinks.One<String>> start(AdaptiveConcurrencyLimiter limiter, int count) {
+        List<Sinks.One<String>> calls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Sinks.One<String> call = Sinks.one();
+            limiter.execute(call.asMono()).subscribe(result -> { }, error -> { });
+            calls.add(call);
+        }
+        return calls;
+    }
+}
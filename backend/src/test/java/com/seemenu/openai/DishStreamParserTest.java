@@ -0,0 +1,66 @@
+package com.seemenu.openai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seemenu.model.DishInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DishStreamParserTest {
+
+    private static final String DISHES = "{\"dishes\":["
+            + "{\"name\":\"Pad Thai\",\"price\":\"$12\",\"ingredients\":[\"rice noodles\",\"peanuts\"],"
+            + "\"allergens\":[\"peanuts\"],\"dietaryInfo\":[]},"
+            + "{\"name\":\"Crème \\\"brûlée\\\" {classic}\",\"price\":\"€7\",\"description\":\"[torched] sugar\"},"
+            + "{\"name\":\"Tom Yum\",\"nested\":{\"dishes\":[{\"name\":\"not a dish\"}]},\"price\":\"$9\"}"
+            + "],\"notes\":[{\"name\":\"not a dish either\"}]}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DishResponseParser dishParser = new DishResponseParser(objectMapper);
+
+    @Test
+    void yieldsTheSameDishesAsTheBufferedParserHoweverTheTextIsSplit() throws IOException {
+        List<DishInfo> buffered = dishParser.parse(DISHES);
+        assertThat(buffered).extracting(DishInfo::getName)
+                .containsExactly("Pad Thai", "Crème \"brûlée\" {classic}", "Tom Yum");
+
+        for (int chunk = 1; chunk <= DISHES.length(); chunk++) {
+            assertThat(feedInChunks(DISHES, chunk)).as("chunks of %d chars", chunk).isEqualTo(buffered);
+        }
+    }
+
+    @Test
+    void yieldsADishAsSoonAsItsObjectCloses() throws IOException {
+        DishStreamParser parser = new DishStreamParser(objectMapper, dishParser);
+        int firstDishEnd = DISHES.indexOf("]},") + 2;
+
+        assertThat(parser.feed(DISHES.substring(0, firstDishEnd - 1))).isEmpty();
+        assertThat(parser.feed(DISHES.substring(firstDishEnd - 1, firstDishEnd)))
+                .extracting(DishInfo::getName).containsExactly("Pad Thai");
+    }
+
+    @Test
+    void acceptsABareArray() throws IOException {
+        String bare = "[{\"name\":\"Pho\",\"price\":\"$11\"},{\"name\":\"Banh Mi\",\"price\":\"$8\"}]";
+
+        assertThat(feedInChunks(bare, 5)).extracting(DishInfo::getName).containsExactly("Pho", "Banh Mi");
+    }
+
+    @Test
+    void readsNothingFromAnObjectWithoutDishes() throws IOException {
+        assertThat(feedInChunks("{\"error\":\"no menu\",\"items\":[{\"name\":\"Pho\"}]}", 4)).isEmpty();
+    }
+
+    private List<DishInfo> feedInChunks(String content, int chunk) throws IOException {
+        DishStreamParser parser = new DishStreamParser(objectMapper, dishParser);
+        List<DishInfo> dishes = new ArrayList<>();
+        for (int from = 0; from < content.length(); from += chunk) {
+            dishes.addAll(parser.feed(content.substring(from, Math.min(content.length(), from + chunk))));
+        }
+        return dishes;
+    }
+}
@@ -0,0 +1,127 @@
+package com.seemenu.service;
+
+import com.seemenu.model.DishInfo;
+import com.seemenu.openai.ModelUnavailableException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchingMenuAnalyzerTest {
+
+    private final AIMenuAnalyzer delegate = mock(AIMenuAnalyzer.class);
+    private final MenuImage first = menu(1);
+    private final MenuImage second = menu(2);
+
+    @Test
+    void splitsTheAnswerBackPerMenu() throws Exception {
+        when(delegate.analyzeMenus(List.of(first, second)))
+                .thenReturn(Mono.just(List.of(dishes("Pad Thai"), dishes("Pho", "Banh Mi"))));
+
+        List<CompletableFuture<List<DishInfo>>> results = analyze(batcher(2, Duration.ofMinutes(1)), first, second);
+
+        assertThat(names(results.get(0))).containsExactly("Pad Thai");
+        assertThat(names(results.get(1))).containsExactly("Pho", "Banh Mi");
+        verify(delegate, never()).analyzeMenu(any());
+    }
+
+    @Test
+    void analyzesAMenuLeftOutOfTheAnswerOnItsOwn() throws Exception {
+        when(delegate.analyzeMenus(List.of(first, second)))
+                .thenReturn(Mono.just(Arrays.asList(dishes("Pad Thai"), null)));
+        when(delegate.analyzeMenu(second)).thenReturn(Mono.just(dishes("Pho")));
+
+        List<CompletableFuture<List<DishInfo>>> results = analyze(batcher(2, Duration.ofMinutes(1)), first, second);
+
+        assertThat(names(results.get(0))).containsExactly("Pad Thai");
+        assertThat(names(results.get(1))).containsExactly("Pho");
+        verify(delegate, never()).analyzeMenu(first);
+    }
+
+    @Test
+    void analyzesEveryMenuOnItsOwnWhenTheCallFails() throws Exception {
+        when(delegate.analyzeMenus(List.of(first, second)))
+                .thenReturn(Mono.error(new IllegalStateException("unreadable answer")));
+        when(delegate.analyzeMenu(first)).thenReturn(Mono.just(dishes("Pad Thai")));
+        when(delegate.analyzeMenu(second)).thenReturn(Mono.just(dishes("Pho")));
+
+        List<CompletableFuture<List<DishInfo>>> results = analyze(batcher(2, Duration.ofMinutes(1)), first, second);
+
+        assertThat(names(results.get(0))).containsExactly("Pad Thai");
+        assertThat(names(results.get(1))).containsExactly("Pho");
+    }
+
+    @Test
+    void passesACapacityErrorToEveryMenuWithoutMoreCalls() {
+        ModelUnavailableException busy = new ModelUnavailableException("busy", 429, Duration.ofSeconds(1));
+        when(delegate.analyzeMenus(List.of(first, second))).thenReturn(Mono.error(busy));
+
+        List<CompletableFuture<List<DishInfo>>> results = analyze(batcher(2, Duration.ofMinutes(1)), first, second);
+
+        for (CompletableFuture<List<DishInfo>> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasCause(busy);
+        }
+        verify(delegate, never()).analyzeMenu(any());
+    }
+
+    @Test
+    void sendsALoneMenuOnItsOwnWhenTheWindowEnds() throws Exception {
+        when(delegate.analyzeMenu(first)).thenReturn(Mono.just(dishes("Pad Thai")));
+
+        List<CompletableFuture<List<DishInfo>>> results = analyze(batcher(4, Duration.ofMillis(20)), first);
+
+        assertThat(names(results.get(0))).containsExactly("Pad Thai");
+        verify(delegate, never()).analyzeMenus(any());
+    }
+
+    @Test
+    void letsLargeImagesBypassTheBatch() throws Exception {
+        MenuImage large = new MenuImage(new byte[2048], "image/jpeg", 40);
+        when(delegate.analyzeMenu(large)).thenReturn(Mono.just(dishes("Pad Thai")));
+
+        List<CompletableFuture<List<DishInfo>>> results = analyze(batcher(2, Duration.ofMinutes(1)), large);
+
+        assertThat(names(results.get(0))).containsExactly("Pad Thai");
+        verify(delegate, never()).analyzeMenus(any());
+    }
+
+    private BatchingMenuAnalyzer batcher(int maxSize, Duration window) {
+        return BatchingMenuAnalyzer.builder()
+                .delegate(delegate)
+                .maxSize(maxSize)
+                .window(window)
+                .maxImageSize(1024)
+                .build();
+    }
+
+    private static List<CompletableFuture<List<DishInfo>>> analyze(BatchingMenuAnalyzer batcher, MenuImage... menus) {
+        return Arrays.stream(menus).map(menu -> batcher.analyzeMenu(menu).toFuture()).toList();
+    }
+
+    private static List<String> names(CompletableFuture<List<DishInfo>> result)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        return result.get(5, TimeUnit.SECONDS).stream().map(DishInfo::getName).toList();
+    }
+
+    private static List<DishInfo> dishes(String... names) {
+        return Arrays.stream(names).map(name -> DishInfo.builder().name(name).build()).toList();
+    }
+
+    private static MenuImage menu(int id) {
+        return new MenuImage(new byte[]{(byte) id}, "image/jpeg", 10);
+    }
+}
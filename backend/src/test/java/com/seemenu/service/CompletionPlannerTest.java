@@ -0,0 +1,92 @@
+package com.seemenu.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class CompletionPlannerTest {
+
+    private final CompletionPlanner planner = planner(true);
+
+    @Test
+    void sizesAMenuFromItsLinesOfText() {
+        // 25 lines at 2.5 lines per dish: 10 dishes of 110 tokens plus the overhead, with 1.5x headroom
+        assertThat(planner.estimatedDishes(25)).isEqualTo(10);
+        assertThat(planner.maxTokens(CompletionPlanner.Kind.ANALYSIS, 25)).isEqualTo(1680);
+        assertThat(planner.maxTokens(CompletionPlanner.Kind.LISTING, 25)).isEqualTo(555);
+    }
+
+    @Test
+    void fallsBackToTheDefaultWhenTheLinesAreUnknown() {
+        assertThat(planner.maxTokens(CompletionPlanner.Kind.ANALYSIS, 0)).isEqualTo(2000);
+        assertThat(planner(false).maxTokens(CompletionPlanner.Kind.ANALYSIS, 25)).isEqualTo(2000);
+    }
+
+    @Test
+    void staysBetweenTheMinimumAndTheModelsOutputLimit() {
+        assertThat(planner.maxTokens(CompletionPlanner.Kind.ANALYSIS, 1)).isEqualTo(400);
+        assertThat(planner.maxTokens(CompletionPlanner.Kind.ANALYSIS, 10_000))
+                .isEqualTo(CompletionPlanner.MAX_TOKENS_PER_CALL);
+    }
+
+    @Test
+    void givesABatchTheSumOfItsMenusBudgetsUpToTheLimit() {
+        List<MenuImage> menus = List.of(menu(25), menu(0));
+        assertThat(planner.maxTokens(CompletionPlanner.Kind.ANALYSIS, menus)).isEqualTo(1680 + 2000);
+
+        assertThat(planner.maxTokens(CompletionPlanner.Kind.ANALYSIS, Collections.nCopies(20, menu(25))))
+                .isEqualTo(CompletionPlanner.MAX_TOKENS_PER_CALL);
+    }
+
+    @Test
+    void continuesWithTheDishesStillExpected() {
+        // 10 expected, 4 salvaged: 6 to go
+        assertThat(planner.continuationTokens(CompletionPlanner.Kind.ANALYSIS, 25, 4, 1680)).isEqualTo(1020);
+        // Past the estimate, half as many again as were salvaged
+        assertThat(planner.continuationTokens(CompletionPlanner.Kind.ANALYSIS, 25, 12, 1680)).isEqualTo(1020);
+        assertThat(planner.continuationTokens(CompletionPlanner.Kind.ANALYSIS, 0, 4, 1680)).isEqualTo(1680);
+    }
+
+    @Test
+    void learnsTokensPerDishFromCompleteAnswers() {
+        // 10 dishes in 620 tokens is 60 per dish; the estimate moves a tenth of the way there
+        planner.observeTokens(CompletionPlanner.Kind.ANALYSIS, 10, 620);
+        assertThat(planner.tokensPerDish(CompletionPlanner.Kind.ANALYSIS)).isCloseTo(105, within(1e-9));
+        assertThat(planner.tokensPerDish(CompletionPlanner.Kind.LISTING)).isEqualTo(35);
+
+        // Too few dishes to say anything about dishes
+        planner.observeTokens(CompletionPlanner.Kind.ANALYSIS, 2, 5000);
+        assertThat(planner.tokensPerDish(CompletionPlanner.Kind.ANALYSIS)).isCloseTo(105, within(1e-9));
+    }
+
+    @Test
+    void learnsDishesPerLineFromMenusReadToTheEnd() {
+        planner.observeLines(20, 20);
+        assertThat(planner.getDishesPerLine()).isCloseTo(0.4 + 0.1 * (1.0 - 0.4), within(1e-9));
+
+        planner.observeLines(0, 20);
+        planner.observeLines(20, 1);
+        assertThat(planner.getDishesPerLine()).isCloseTo(0.46, within(1e-9));
+    }
+
+    private static CompletionPlanner planner(boolean enabled) {
+        CompletionPlanner planner = new CompletionPlanner();
+        ReflectionTestUtils.setField(planner, "enabled", enabled);
+        ReflectionTestUtils.setField(planner, "defaultMaxTokens", 2000);
+        ReflectionTestUtils.setField(planner, "minTokens", 400);
+        ReflectionTestUtils.setField(planner, "linesPerDish", 2.5);
+        ReflectionTestUtils.setField(planner, "headroom", 1.5);
+        ReflectionTestUtils.setField(planner, "maxContinuations", 2);
+        planner.init();
+        return planner;
+    }
+
+    private static MenuImage menu(int textLines) {
+        return new MenuImage(new byte[0], "image/jpeg", textLines);
+    }
+}
@@ -0,0 +1,109 @@
+package com.seemenu.service;
+
+import com.seemenu.model.DishInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DishMergerTest {
+
+    private final DishMerger merger = new DishMerger();
+
+    @Test
+    void foldsTheSameDishFromNeighbouringTiles() {
+        List<DishInfo> merged = merger.merge(List.of(
+                List.of(dish("Pad Thai", "$12", null), dish("Green Curry", "$14", null)),
+                List.of(dish("green curry", "$14", "Coconut, basil"), dish("Mango Sticky Rice", "$7", null))));
+
+        assertThat(merged).extracting(DishInfo::getName)
+                .containsExactly("Pad Thai", "Green Curry", "Mango Sticky Rice");
+        assertThat(merged.get(1).getDescription()).isEqualTo("Coconut, basil");
+    }
+
+    @Test
+    void keepsRepeatsWithinOnePart() {
+        List<DishInfo> merged = merger.merge(List.of(
+                List.of(dish("Latte", "$4", "Small"), dish("Latte", "$4", "Large")),
+                List.of(dish("Latte", "$4", null))));
+
+        assertThat(merged).extracting(DishInfo::getDescription).containsExactly("Small", "Large");
+    }
+
+    @Test
+    void matchesACopyThatLostItsPriceAtTheTileEdge() {
+        List<DishInfo> merged = merger.merge(List.of(
+                List.of(dish("Margherita", null, "Tomato, mozzarella")),
+                List.of(dish("Margherita", "$11", null))));
+
+        assertThat(merged).singleElement().satisfies(dish -> {
+            assertThat(dish.getPrice()).isEqualTo("$11");
+            assertThat(dish.getDescription()).isEqualTo("Tomato, mozzarella");
+        });
+    }
+
+    @Test
+    void streamedPartsMergeLikeBufferedOnesInAnyArrivalOrder() {
+        List<String> buffered = describe(merger.merge(parts()));
+
+        List<List<int[]>> orders = new ArrayList<>();
+        interleavings(new int[parts().size()], parts(), new ArrayList<>(), orders);
+        assertThat(orders).hasSizeGreaterThan(100);
+        for (List<int[]> order : orders) {
+            List<List<DishInfo>> parts = parts();
+            DishMerger.Merge merge = merger.newMerge();
+            List<String> emitted = new ArrayList<>();
+            for (int[] next : order) {
+                DishInfo dish = parts.get(next[0]).get(next[1]);
+                if (merge.add(next[0], dish)) {
+                    emitted.add(dish.getName());
+                }
+            }
+            assertThat(describe(merge.dishes())).isEqualTo(buffered);
+            assertThat(emitted).hasSameSizeAs(buffered);
+        }
+    }
+
+    /**
+     * Three overlapping tiles, with a repeat inside a tile and a copy that lost its price; fresh instances each call,
+     * since merging fills in missing fields
+     */
+    private static List<List<DishInfo>> parts() {
+        return List.of(
+                List.of(dish("Latte", "$4", "Small"), dish("Latte", "$4", "Large"), dish("Soup", "$6", null)),
+                List.of(dish("Soup", "$6", "Of the day"), dish("Margherita", null, null), dish("Latte", "$4", null)),
+                List.of(dish("Margherita", "$11", "Tomato"), dish("Tiramisu", "$7", null)));
+    }
+
+    /**
+     * Every order in which the parts' dishes can arrive when each part keeps its own order
+     */
+    private static void interleavings(int[] taken, List<List<DishInfo>> parts, List<int[]> order,
+                                      List<List<int[]>> orders) {
+        boolean done = true;
+        for (int part = 0; part < parts.size(); part++) {
+            if (taken[part] < parts.get(part).size()) {
+                done = false;
+                order.add(new int[]{part, taken[part]++});
+                interleavings(taken, parts, order, orders);
+                taken[part]--;
+                order.remove(order.size() - 1);
+            }
+        }
+        if (done) {
+            orders.add(List.copyOf(order));
+        }
+    }
+
+    private static List<String> describe(List<DishInfo> dishes) {
+        return dishes.stream()
+                .map(dish -> dish.getName() + "|" + dish.getPrice() + "|" + dish.getDescription())
+                .toList();
+    }
+
+    private static DishInfo dish(String name, String price, String description) {
+        return DishInfo.builder().name(name).price(price).description(description).build();
+    }
+}
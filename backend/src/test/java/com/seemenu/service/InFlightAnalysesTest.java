@@ -0,0 +1,100 @@
+package com.seemenu.service;
+
+import com.seemenu.model.DishInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InFlightAnalysesTest {
+
+    private final InFlightAnalyses analyses = new InFlightAnalyses();
+    private final Sinks.One<List<DishInfo>> upstream = Sinks.one();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    @BeforeEach
+    void enable() {
+        ReflectionTestUtils.setField(analyses, "enabled", true);
+    }
+
+    @Test
+    void identicalUploadsShareOneAnalysis() {
+        AtomicReference<List<DishInfo>> first = new AtomicReference<>();
+        AtomicReference<List<DishInfo>> second = new AtomicReference<>();
+        analyses.join("menu", this::analysis).subscribe(first::set);
+        analyses.join("menu", this::analysis).subscribe(second::set);
+
+        List<DishInfo> dishes = List.of(DishInfo.builder().name("Pad Thai").build());
+        upstream.tryEmitValue(dishes);
+
+        assertThat(calls).hasValue(1);
+        assertThat(first).hasValue(dishes);
+        assertThat(second).hasValue(dishes);
+        assertThat(analyses.getStarted()).isEqualTo(1);
+        assertThat(analyses.getCoalesced()).isEqualTo(1);
+        assertThat(analyses.size()).isZero();
+    }
+
+    @Test
+    void everyCallerGetsTheError() {
+        AtomicReference<Throwable> first = new AtomicReference<>();
+        AtomicReference<Throwable> second = new AtomicReference<>();
+        analyses.join("menu", this::analysis).subscribe(dishes -> { }, first::set);
+        analyses.join("menu", this::analysis).subscribe(dishes -> { }, second::set);
+
+        IllegalStateException failure = new IllegalStateException("model down");
+        upstream.tryEmitError(failure);
+
+        assertThat(first).hasValue(failure);
+        assertThat(second).hasValue(failure);
+        assertThat(analyses.size()).isZero();
+    }
+
+    @Test
+    void cancelsTheAnalysisOnlyOnceEveryCallerHasCancelled() {
+        Disposable first = analyses.join("menu", this::analysis).subscribe();
+        Disposable second = analyses.join("menu", this::analysis).subscribe();
+
+        first.dispose();
+        assertThat(cancelled).isFalse();
+        assertThat(analyses.size()).isEqualTo(1);
+
+        second.dispose();
+        assertThat(cancelled).isTrue();
+        assertThat(analyses.size()).isZero();
+    }
+
+    @Test
+    void startsAFreshAnalysisAfterTheLastCallerLeft() {
+        analyses.join("menu", this::analysis).subscribe().dispose();
+        analyses.join("menu", this::analysis).subscribe();
+
+        assertThat(calls).hasValue(2);
+        assertThat(analyses.getStarted()).isEqualTo(2);
+        assertThat(analyses.getCoalesced()).isZero();
+    }
+
+    @Test
+    void differentUploadsDoNotShare() {
+        analyses.join("menu", this::analysis).subscribe();
+        analyses.join("other menu", this::analysis).subscribe();
+
+        assertThat(calls).hasValue(2);
+        assertThat(analyses.size()).isEqualTo(2);
+    }
+
+    private Mono<List<DishInfo>> analysis() {
+        calls.incrementAndGet();
+        return upstream.asMono().doOnCancel(() -> cancelled.set(true));
+    }
+}